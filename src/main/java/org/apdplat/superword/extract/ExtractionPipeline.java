@@ -0,0 +1,299 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.extract;
+
+import org.apdplat.superword.model.SynonymAntonym;
+import org.apdplat.superword.model.SynonymDiscrimination;
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.tools.WordClassifier;
+import org.apdplat.superword.tools.ZipProcessor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 原始网页提取流水线
+ * 原始网页文件的每一行是"词杨尚川网页"，各个提取器分别处理时同一份文件要读取和解析多次，
+ * 流水线只读取一次，每个网页也只用Jsoup解析一次，
+ * 所有注册的提取器依次处理同一个Document，各自累加到自己的结果中，
+ * 全部处理完后并发保存各个提取器的结果
+ * @author 杨尚川
+ */
+public class ExtractionPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionPipeline.class);
+
+    private final List<Extractor<?>> extractors = new ArrayList<>();
+    private final ZipProcessor zipProcessor;
+
+    /**
+     * 处理一个已经解析好的网页
+     */
+    @FunctionalInterface
+    public interface DocumentParser<A> {
+        /**
+         * @param word 词
+         * @param html 原始网页
+         * @param document 解析好的网页，所有提取器共用，不要修改
+         * @param data 当前线程的提取结果
+         */
+        void parse(String word, String html, Document document, A data);
+    }
+
+    public ExtractionPipeline(){
+        this(ZipProcessor.getDefault());
+    }
+
+    public ExtractionPipeline(ZipProcessor zipProcessor){
+        this.zipProcessor = zipProcessor;
+    }
+
+    /**
+     * 注册一个提取器
+     * @param name 名称，用于日志
+     * @param supplier 创建一个线程的提取结果
+     * @param parser 从网页中提取
+     * @param combiner 合并两个线程的提取结果
+     * @param output 保存最终的提取结果
+     * @return 流水线本身
+     */
+    public <A> ExtractionPipeline register(String name, Supplier<A> supplier, DocumentParser<A> parser,
+                                           BinaryOperator<A> combiner, Consumer<A> output){
+        extractors.add(new Extractor<>(name, supplier, parser, combiner, output));
+        return this;
+    }
+
+    /**
+     * 读取原始网页，运行所有的提取器并保存结果
+     * @param path ZIP文件、目录或者文件
+     */
+    public void run(String path){
+        long start = System.currentTimeMillis();
+        LOGGER.info("开始运行提取流水线：" + path + "，提取器：" + extractors.stream().map(e -> e.name).collect(Collectors.toList()));
+        extractors.forEach(Extractor::reset);
+        AtomicLong count = new AtomicLong();
+        Object[] results = parse(path, count);
+        LOGGER.info("提取完毕，网页数：" + count.get() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        extractors.forEach(extractor -> LOGGER.info(extractor.name + " 提取耗时：" + extractor.nanos.sum() / 1000000 + " 毫秒"));
+        save(results);
+        LOGGER.info("提取流水线运行完毕，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    private Object[] parse(String path, AtomicLong count){
+        Collector<String, Object[], Object[]> collector = collector(count);
+        if(path.endsWith(".zip")){
+            return zipProcessor.lines(path, collector);
+        }
+        Object[] results = collector.supplier().get();
+        try (Stream<Path> files = Files.walk(Paths.get(path))) {
+            for(Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())){
+                LOGGER.info("处理文件：" + file);
+                try (BufferedReader reader = Files.newBufferedReader(file)) {
+                    results = collector.combiner().apply(results, zipProcessor.lines(reader, collector));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("解析文本出错", e);
+        }
+        return results;
+    }
+
+    /**
+     * 每个线程的中间结果是所有提取器的结果组成的数组
+     */
+    private Collector<String, Object[], Object[]> collector(AtomicLong count){
+        return Collector.of(
+                () -> {
+                    Object[] results = new Object[extractors.size()];
+                    for(int i=0; i<results.length; i++){
+                        results[i] = extractors.get(i).supplier.get();
+                    }
+                    return results;
+                },
+                (results, line) -> {
+                    String[] attr = line.split("杨尚川");
+                    if(attr == null || attr.length != 2){
+                        LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+                        return;
+                    }
+                    String word = attr[0];
+                    String html = attr[1];
+                    LOGGER.info(count.incrementAndGet() + "、解析单词：" + word);
+                    //只解析一次
+                    Document document = Jsoup.parse(html);
+                    for(int i=0; i<results.length; i++){
+                        extractors.get(i).parse(word, html, document, results[i]);
+                    }
+                },
+                (a, b) -> {
+                    for(int i=0; i<a.length; i++){
+                        a[i] = extractors.get(i).combine(a[i], b[i]);
+                    }
+                    return a;
+                });
+    }
+
+    /**
+     * 各个提取器的结果互不相关，并发保存
+     */
+    private void save(Object[] results){
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, extractors.size()));
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[extractors.size()];
+        for(int i=0; i<futures.length; i++){
+            Extractor<?> extractor = extractors.get(i);
+            Object result = results[i];
+            futures[i] = CompletableFuture.runAsync(() -> extractor.save(result), executorService);
+        }
+        CompletableFuture.allOf(futures).join();
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Extractor<A> {
+        private final String name;
+        private final Supplier<A> supplier;
+        private final DocumentParser<A> parser;
+        private final BinaryOperator<A> combiner;
+        private final Consumer<A> output;
+        private final LongAdder nanos = new LongAdder();
+
+        private Extractor(String name, Supplier<A> supplier, DocumentParser<A> parser,
+                          BinaryOperator<A> combiner, Consumer<A> output) {
+            this.name = name;
+            this.supplier = supplier;
+            this.parser = parser;
+            this.combiner = combiner;
+            this.output = output;
+        }
+
+        private void reset(){
+            nanos.reset();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void parse(String word, String html, Document document, Object data){
+            long start = System.nanoTime();
+            try {
+                parser.parse(word, html, document, (A) data);
+            } catch (Exception e) {
+                //一个提取器出错不影响其他提取器
+                LOGGER.error(name + " 提取出错：" + word, e);
+            }
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object combine(Object a, Object b){
+            return combiner.apply((A) a, (A) b);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void save(Object result){
+            long start = System.currentTimeMillis();
+            try {
+                output.accept((A) result);
+                LOGGER.info(name + " 保存完毕，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+            } catch (Exception e) {
+                LOGGER.error(name + " 保存出错", e);
+            }
+        }
+    }
+
+    private static <T> Set<T> union(Set<T> a, Set<T> b){
+        a.addAll(b);
+        return a;
+    }
+
+    /**
+     * 注册所有基于原始网页的提取器
+     * @return 流水线
+     */
+    public static ExtractionPipeline all(){
+        return new ExtractionPipeline()
+                .<Set<Word>>register("definition", HashSet::new,
+                        (word, html, document, data) -> DefinitionExtractor.parseDocument(word, document, data),
+                        ExtractionPipeline::union, DefinitionExtractor::save)
+                .<Set<Word>>register("part_of_speech", HashSet::new,
+                        (word, html, document, data) -> PartOfSpeechExtractor.parseDocument(word, document, data),
+                        ExtractionPipeline::union, PartOfSpeechExtractor::save)
+                .<Set<String>>register("phrase", HashSet::new,
+                        (word, html, document, data) -> PhraseExtractor.parseDocument(word, document, data),
+                        ExtractionPipeline::union, PhraseExtractor::save)
+                .<Map<Word, Set<Word>>>register("root_affix", HashMap::new,
+                        (word, html, document, data) -> RootAffixExtractor.parseDocument(word, document, data),
+                        (a, b) -> {
+                            b.forEach((k, v) -> a.computeIfAbsent(k, key -> new HashSet<>()).addAll(v));
+                            return a;
+                        },
+                        RootAffixExtractor::save)
+                .<Set<SynonymAntonym>>register("synonym_antonym", HashSet::new,
+                        (word, html, document, data) -> SynonymAntonymExtractor.parseDocument(word, document, data),
+                        ExtractionPipeline::union,
+                        data -> {
+                            SynonymAntonymExtractor.saveSynonymAntonym(data);
+                            SynonymAntonymExtractor.saveAntonym(data);
+                        })
+                .<Set<SynonymDiscrimination>>register("synonym_discrimination", HashSet::new,
+                        (word, html, document, data) -> SynonymDiscriminationExtractor.parseDocument(word, document, data),
+                        ExtractionPipeline::union, SynonymDiscriminationExtractor::save)
+                //连字符从原始文本中提取，不需要Document
+                .<Map<String, AtomicInteger>>register("hyphen", HashMap::new,
+                        (word, html, document, data) -> HyphenExtractor.parseLine(html, data),
+                        (a, b) -> {
+                            b.forEach((k, v) -> a.computeIfAbsent(k, key -> new AtomicInteger()).addAndGet(v.get()));
+                            return a;
+                        },
+                        data -> HyphenExtractor.extract(data, "src/main/resources/hyphen_word_all.txt",
+                                "src/main/resources/hyphen_word.txt", "src/main/resources/hyphen.txt", true))
+                .<Map<String, List<String>>>register("word_classifier", HashMap::new,
+                        (word, html, document, data) -> WordClassifier.parse(word, document, data),
+                        (a, b) -> {
+                            b.forEach((k, v) -> a.computeIfAbsent(k, key -> new ArrayList<>()).addAll(v));
+                            return a;
+                        },
+                        WordClassifier::save);
+    }
+
+    public static void main(String[] args) {
+        all().run("/Users/apple/百度云同步盘/origin_html.zip");
+    }
+}
@@ -30,11 +30,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -91,33 +91,8 @@ public class HyphenExtractor {
     }
 
     public static Map<String, AtomicInteger> parseZip(String zipFile){
-        Map<String, AtomicInteger> data = new HashMap<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        Map<String, AtomicInteger> rs = parseFile(temp.toFile().getAbsolutePath());
-                        rs.keySet().forEach(k -> {
-                            data.putIfAbsent(k, new AtomicInteger());
-                            data.get(k).addAndGet(rs.get(k).get());
-                        });
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashMap::new, (Map<String, AtomicInteger> data, String line) -> parseLine(line, data), HyphenExtractor::merge));
     }
 
     public static Map<String, AtomicInteger> parseFile(String file){
@@ -129,23 +104,7 @@ public class HyphenExtractor {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("line:"+line);
-                String[] attrs = line.split("\\s+");
-                for(String attr : attrs){
-                    if(attr.contains("-")){
-                        String[] parts = attr.split("-");
-                        if(parts.length==2
-                                && parts[0].length()>1
-                                && parts[1].length()>1
-                                && WordSources.isEnglish(parts[0])
-                                && WordSources.isEnglish(parts[1])){
-                            LOGGER.debug("发现连字符："+attr);
-                            attr = attr.toLowerCase();
-                            data.putIfAbsent(attr, new AtomicInteger());
-                            data.get(attr).incrementAndGet();
-                        }
-                    }
-                }
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -153,6 +112,34 @@ public class HyphenExtractor {
         return data;
     }
 
+    public static void parseLine(String line, Map<String, AtomicInteger> data){
+        //LOGGER.debug("line:"+line);
+        String[] attrs = line.split("\\s+");
+        for(String attr : attrs){
+            if(attr.contains("-")){
+                String[] parts = attr.split("-");
+                if(parts.length==2
+                        && parts[0].length()>1
+                        && parts[1].length()>1
+                        && WordSources.isEnglish(parts[0])
+                        && WordSources.isEnglish(parts[1])){
+                    LOGGER.debug("发现连字符："+attr);
+                    attr = attr.toLowerCase();
+                    data.putIfAbsent(attr, new AtomicInteger());
+                    data.get(attr).incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static Map<String, AtomicInteger> merge(Map<String, AtomicInteger> data, Map<String, AtomicInteger> other){
+        other.keySet().forEach(k -> {
+            data.putIfAbsent(k, new AtomicInteger());
+            data.get(k).addAndGet(other.get(k).get());
+        });
+        return data;
+    }
+
     /**
      * 解析单词定义
      * @param html
@@ -225,7 +212,14 @@ public class HyphenExtractor {
     }
 
     public static void extract(String allPath, String wordPath, String htmlPath, boolean verify){
-        Map<String, AtomicInteger> data = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        extract(parse("/Users/apple/百度云同步盘/origin_html.zip"), allPath, wordPath, htmlPath, verify);
+    }
+
+    /**
+     * 合并IT文档和JDK源代码中的连字符后保存
+     * @param data 从原始网页中提取的连字符
+     */
+    public static void extract(Map<String, AtomicInteger> data, String allPath, String wordPath, String htmlPath, boolean verify){
         Map<String, AtomicInteger> wordsIT = parse("src/main/resources/it");
         wordsIT.keySet().forEach(k -> {
             data.putIfAbsent(k, new AtomicInteger());
@@ -24,16 +24,16 @@ import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.rule.PartOfSpeech;
 import org.apdplat.superword.tools.HtmlFormatter;
-import org.apdplat.superword.tools.WordClassifier;
 import org.apdplat.superword.tools.WordSources;
+import org.apdplat.superword.tools.ZipProcessor;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URL;
-import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
@@ -41,6 +41,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -85,29 +86,8 @@ public class PartOfSpeechExtractor {
     }
 
     public static Set<Word> parseZip(String zipFile){
-        Set<Word> data = new HashSet<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        data.addAll(parseFile(temp.toFile().getAbsolutePath()));
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashSet::new, (Set<Word> data, String line) -> parseLine(line, data), (a, b) -> { a.addAll(b); return a; }));
     }
 
     public static Set<Word> parseFile(String file){
@@ -119,18 +99,7 @@ public class PartOfSpeechExtractor {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("html:"+line);
-                String[] attr = line.split("杨尚川");
-                if(attr == null || attr.length != 2){
-                    LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
-                    continue;
-                }
-                String word = attr[0];
-                String html = attr[1];
-                Word w = parseWord(html, word);
-                if(w!=null && !w.getPartOfSpeeches().isEmpty()) {
-                    data.add(w);
-                }
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -138,16 +107,45 @@ public class PartOfSpeechExtractor {
         return data;
     }
 
+    public static void parseLine(String line, Set<Word> data){
+        //LOGGER.debug("html:"+line);
+        String[] attr = line.split("杨尚川");
+        if(attr == null || attr.length != 2){
+            LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+            return;
+        }
+        String word = attr[0];
+        String html = attr[1];
+        parseDocument(word, Jsoup.parse(html), data);
+    }
+
+    /**
+     * 从已经解析好的网页中提取词性
+     * @param word 词
+     * @param document 网页
+     * @param data 提取结果
+     */
+    public static void parseDocument(String word, Document document, Set<Word> data){
+        Word w = parseWord(document, word);
+        if(w!=null && !w.getPartOfSpeeches().isEmpty()) {
+            data.add(w);
+        }
+    }
+
+    public static Word parseWord(String html, String word){
+        return parseWord(Jsoup.parse(html), word);
+    }
+
     /**
      * 解析词性
-     * @param html
+     * @param document
      * @return
      */
-    public static Word parseWord(String html, String word){
+    public static Word parseWord(Document document, String word){
         LOGGER.info("解析单词："+word);
         Word w = new Word(word, "");
         try {
-            for(Element element : Jsoup.parse(html).select(PART_OF_SPEECH_CSS_PATH)){
+            for(Element element : document.select(PART_OF_SPEECH_CSS_PATH)){
                 String partOfSpeech = element.text();
                 LOGGER.debug("解析原始词性:" + partOfSpeech);
                 if(StringUtils.isNotBlank(partOfSpeech) && !partOfSpeech.contains("See also")){
@@ -203,7 +201,13 @@ public class PartOfSpeechExtractor {
         return words.stream().filter(w -> !voc.contains(w)).collect(Collectors.toSet());
     }
     private static void parseWord(){
-        Set<Word> words = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        save(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的词性
+     */
+    public static void save(Set<Word> words){
         Set<Word> inSyllabusVocabulary = inSyllabusVocabulary(words);
         compensate(inSyllabusVocabulary);
 
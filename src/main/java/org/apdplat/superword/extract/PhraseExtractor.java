@@ -23,19 +23,21 @@ package org.apdplat.superword.extract;
 import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.WordLinker;
+import org.apdplat.superword.tools.ZipProcessor;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URL;
-import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -80,29 +82,8 @@ public class PhraseExtractor {
     }
 
     public static Set<String> parseZip(String zipFile){
-        Set<String> data = new HashSet<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), PhraseExtractor.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        data.addAll(parseFile(temp.toFile().getAbsolutePath()));
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashSet::new, (Set<String> data, String line) -> parseLine(line, data), (a, b) -> { a.addAll(b); return a; }));
     }
 
     public static Set<String> parseFile(String file){
@@ -114,16 +95,7 @@ public class PhraseExtractor {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("html:"+line);
-                String[] attr = line.split("杨尚川");
-                if(attr == null || attr.length != 2){
-                    LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
-                    continue;
-                }
-                String word = attr[0];
-                String html = attr[1];
-                Set<String> set = parsePhrase(html, word);
-                data.addAll(set);
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -131,12 +103,39 @@ public class PhraseExtractor {
         return data;
     }
 
+    public static void parseLine(String line, Set<String> data){
+        //LOGGER.debug("html:"+line);
+        String[] attr = line.split("杨尚川");
+        if(attr == null || attr.length != 2){
+            LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+            return;
+        }
+        String word = attr[0];
+        String html = attr[1];
+        parseDocument(word, Jsoup.parse(html), data);
+    }
+
+    /**
+     * 从已经解析好的网页中提取词组习语
+     * @param word 词
+     * @param document 网页
+     * @param data 提取结果
+     */
+    public static void parseDocument(String word, Document document, Set<String> data){
+        Set<String> set = parsePhrase(document, word);
+        data.addAll(set);
+    }
+
+    public static Set<String> parsePhrase(String html, String word){
+        return parsePhrase(Jsoup.parse(html), word);
+    }
+
     /**
      * 解析常用词组习语
-     * @param html
+     * @param document
      * @return
      */
-    public static Set<String> parsePhrase(String html, String word){
+    public static Set<String> parsePhrase(Document document, String word){
         Set<String> phrases = new HashSet<>();
         LOGGER.info("解析单词："+word);
         if(Character.isUpperCase(word.charAt(0))){
@@ -144,7 +143,7 @@ public class PhraseExtractor {
             return phrases;
         }
         try {
-            o:for(Element element : Jsoup.parse(html).select(PHRASE_CSS_PATH)){
+            o:for(Element element : document.select(PHRASE_CSS_PATH)){
                 String phrase = element.text().trim();
                 if(StringUtils.isNotBlank(phrase)){
                     if(phrase.length() >= 50){
@@ -175,7 +174,13 @@ public class PhraseExtractor {
     }
 
     private static void parsePhrase(){
-        Set<String> parses = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        save(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的词组习语
+     */
+    public static void save(Set<String> parses){
         List<String> ps = parses
                 .stream()
                 .sorted()
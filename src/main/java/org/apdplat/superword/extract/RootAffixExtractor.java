@@ -22,8 +22,9 @@ package org.apdplat.superword.extract;
 
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
-import org.apdplat.superword.tools.WordClassifier;
+import org.apdplat.superword.tools.ZipProcessor;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +33,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.stream.Collector;
 
 /**
  * 解析词缀词根
@@ -81,33 +83,8 @@ public class RootAffixExtractor {
     }
 
     public static Map<Word, Set<Word>> parseZip(String zipFile){
-        Map<Word, Set<Word>> roots = new HashMap<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        Map<Word, Set<Word>> rs = parseFile(temp.toFile().getAbsolutePath());
-                        for(Word ra : rs.keySet()){
-                            roots.putIfAbsent(ra, new HashSet<>());
-                            roots.get(ra).addAll(rs.get(ra));
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return roots;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashMap::new, (Map<Word, Set<Word>> data, String line) -> parseLine(line, data), RootAffixExtractor::merge));
     }
 
     public static Map<Word, Set<Word>> parseFile(String file){
@@ -120,21 +97,7 @@ public class RootAffixExtractor {
             Map<String, List<String>> data = new HashMap<>();
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("html:"+line);
-                String[] attr = line.split("杨尚川");
-                if(attr == null || attr.length != 2){
-                    LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
-                    continue;
-                }
-                String word = attr[0];
-                LOGGER.info("解析单词："+word);
-                String html = attr[1];
-                Map<Word, Set<Word>> rs = parseRootAffix(html);
-                for(Word ra : rs.keySet()){
-                    roots.putIfAbsent(ra, new HashSet<>());
-                    roots.get(ra).add(new Word(word, ""));
-                    roots.get(ra).addAll(rs.get(ra));
-                }
+                parseLine(line, roots);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -142,16 +105,56 @@ public class RootAffixExtractor {
         return roots;
     }
 
+    public static void parseLine(String line, Map<Word, Set<Word>> roots){
+        //LOGGER.debug("html:"+line);
+        String[] attr = line.split("杨尚川");
+        if(attr == null || attr.length != 2){
+            LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+            return;
+        }
+        String word = attr[0];
+        LOGGER.info("解析单词："+word);
+        String html = attr[1];
+        parseDocument(word, Jsoup.parse(html), roots);
+    }
+
+    /**
+     * 从已经解析好的网页中提取词根词缀
+     * @param word 词
+     * @param document 网页
+     * @param roots 提取结果
+     */
+    public static void parseDocument(String word, Document document, Map<Word, Set<Word>> roots){
+        Map<Word, Set<Word>> rs = parseRootAffix(document);
+        for(Word ra : rs.keySet()){
+            roots.putIfAbsent(ra, new HashSet<>());
+            roots.get(ra).add(new Word(word, ""));
+            roots.get(ra).addAll(rs.get(ra));
+        }
+    }
+
+    private static Map<Word, Set<Word>> merge(Map<Word, Set<Word>> roots, Map<Word, Set<Word>> other){
+        for(Word ra : other.keySet()){
+            roots.putIfAbsent(ra, new HashSet<>());
+            roots.get(ra).addAll(other.get(ra));
+        }
+        return roots;
+    }
+
+    public static Map<Word, Set<Word>> parseRootAffix(String html){
+        return parseRootAffix(Jsoup.parse(html));
+    }
+
     /**
      * 解析词根词缀
      * 一个HTML可以包括多个词根词缀
-     * @param html
+     * @param document
      * @return
      */
-    public static Map<Word, Set<Word>> parseRootAffix(String html){
+    public static Map<Word, Set<Word>> parseRootAffix(Document document){
         Map<Word, Set<Word>> data = new HashMap<>();
         try {
-            for(Element element : Jsoup.parse(html).select(ROOT_AFFIX_CSS_PATH)){
+            for(Element element : document.select(ROOT_AFFIX_CSS_PATH)){
                 String rootAffix = element.select(WORD).get(0).text().trim();
                 String meaning = element.select(MEANING).get(0).text().replaceAll("[\n\r]", "").trim();
                 int index = meaning.indexOf("//");
@@ -173,7 +176,13 @@ public class RootAffixExtractor {
         return data;
     }
     private static void parseRootAffixes(){
-        Map<Word, Set<Word>> rootAffixes = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        save(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的词根词缀
+     */
+    public static void save(Map<Word, Set<Word>> rootAffixes){
         List<String> rs = new ArrayList<>(rootAffixes.size());
         rootAffixes.keySet().stream().sorted().forEach(r -> rs.add(r.getWord()+"杨尚川"+r.getMeaning()));
 
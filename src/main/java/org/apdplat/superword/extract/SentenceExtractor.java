@@ -25,6 +25,7 @@ import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.model.Word;
+import org.apdplat.superword.tools.CrawlScheduler;
 import org.apdplat.superword.tools.DynamicIp;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.ProxyIp;
@@ -41,8 +42,12 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 每日一句提取工具
@@ -61,73 +66,48 @@ public class SentenceExtractor {
     private static final String LANGUAGE = "zh-cn,zh;q=0.8,en-us;q=0.5,en;q=0.3";
     private static final String CONNECTION = "keep-alive";
     private static final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.10; rv:36.0) Gecko/20100101 Firefox/36.0";
-    private static final WebClient WEB_CLIENT = new WebClient(BrowserVersion.INTERNET_EXPLORER_11);
-    private static final Map<Word, AtomicInteger> WORD_FREQUENCE = new HashMap<>();
-
-    static {
-        WEB_CLIENT.getOptions().setThrowExceptionOnFailingStatusCode(false);
-        WEB_CLIENT.getOptions().setThrowExceptionOnScriptError(false);
-        WEB_CLIENT.getOptions().setJavaScriptEnabled(false);
-        WEB_CLIENT.getOptions().setCssEnabled(false);
-    }
+    private static final int THREADS = 4;
+    private static final double PERMITS_PER_SECOND = 2;
+    //WebClient不是线程安全的，每个抓取线程一个
+    private static final ThreadLocal<WebClient> WEB_CLIENT = ThreadLocal.withInitial(() -> {
+        WebClient webClient = new WebClient(BrowserVersion.INTERNET_EXPLORER_11);
+        webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        webClient.getOptions().setThrowExceptionOnScriptError(false);
+        webClient.getOptions().setJavaScriptEnabled(false);
+        webClient.getOptions().setCssEnabled(false);
+        return webClient;
+    });
+    private static final Map<Word, AtomicInteger> WORD_FREQUENCE = new ConcurrentHashMap<>();
 
     public static Map<String, String> extract(int totalPageNumber){
-        Map<String, String> sentences = new HashMap<>();
-        for (int i=1; i<=totalPageNumber; i++){
-            String url = "http://news.iciba.com/dailysentence/detail-"+i+".html";
-            String html = getContent(url);
-            int times = 0;
-            while (StringUtils.isBlank(html) && times<10){
-                times++;
-                //使用新的IP地址
-                DynamicIp.toNewIp();
-                html = getContent(url);
-            }
-            if(StringUtils.isBlank(html)){
-                LOGGER.error("页面获取失败："+url);
-                continue;
-            }
-            //LOGGER.debug("获取到的HTML：" +html);
-            while(html.contains("非常抱歉，来自您ip的请求异常频繁")){
-                //使用新的IP地址
-                DynamicIp.toNewIp();
-                html = getContent(url+i);
-            }
-            sentences.putAll(parse(html));
-            LOGGER.info("进度 "+totalPageNumber+"/"+i);
-        }
+        Map<String, String> sentences = new ConcurrentHashMap<>();
+        List<String> urls = IntStream.rangeClosed(1, totalPageNumber)
+                .mapToObj(i -> "http://news.iciba.com/dailysentence/detail-"+i+".html")
+                .collect(Collectors.toList());
+        //空页面或者IP被封锁时统一更换一次IP，最多重试10次
+        new CrawlScheduler("daily_sentence_iciba", THREADS)
+                .defaultRateLimit(PERMITS_PER_SECOND, THREADS)
+                .retry(10, 1000, 60000)
+                .ipRotation(html -> StringUtils.isBlank(html) || html.contains("非常抱歉，来自您ip的请求异常频繁"), DynamicIp::toNewIp)
+                .onFailure(url -> LOGGER.error("页面获取失败："+url))
+                .crawl(urls, SentenceExtractor::getContent, (url, html) -> sentences.putAll(parse(html)));
         LOGGER.debug("期望获取句子数：" + totalPageNumber);
         LOGGER.debug("实际获取句子数：" + sentences.size());
         return sentences;
     }
 
     public static Map<String, String> extract2(int totalPageNumber){
-        Map<String, String> sentences = new HashMap<>();
+        Map<String, String> sentences = new ConcurrentHashMap<>();
         int start = 29351;
-        int total = totalPageNumber - start;
-        for (int i=start; i<=totalPageNumber; i++){
-            String url = "http://en.dict.cn/news/view/"+i;
-            String html = getContent2(url);
-            int times = 1;
-            while (StringUtils.isBlank(html) && times<10){
-                times++;
-                //使用新的IP地址
-                ProxyIp.toNewIp();
-                html = getContent2(url);
-            }
-            if(StringUtils.isBlank(html)){
-                LOGGER.error("页面获取失败："+url);
-                continue;
-            }
-            //LOGGER.debug("获取到的HTML：" +html);
-            while(html.contains("非常抱歉，来自您ip的请求异常频繁")){
-                //使用新的IP地址
-                ProxyIp.toNewIp();
-                html = getContent2(url + i);
-            }
-            sentences.putAll(parse2(html));
-            LOGGER.info("进度 "+total+"/"+(i-start+1));
-        }
+        List<String> urls = IntStream.rangeClosed(start, totalPageNumber)
+                .mapToObj(i -> "http://en.dict.cn/news/view/"+i)
+                .collect(Collectors.toList());
+        new CrawlScheduler("daily_sentence_dict_cn", THREADS)
+                .defaultRateLimit(PERMITS_PER_SECOND, THREADS)
+                .retry(10, 1000, 60000)
+                .ipRotation(html -> StringUtils.isBlank(html) || html.contains("非常抱歉，来自您ip的请求异常频繁"), ProxyIp::toNewIp)
+                .onFailure(url -> LOGGER.error("页面获取失败："+url))
+                .crawl(urls, SentenceExtractor::getContent2, (url, html) -> sentences.putAll(parse2(html)));
         LOGGER.debug("期望获取句子数：" + totalPageNumber);
         LOGGER.debug("实际获取句子数：" + sentences.size());
         return sentences;
@@ -135,7 +115,7 @@ public class SentenceExtractor {
     public static String getContent2(String url) {
         try{
             LOGGER.debug("url:"+url);
-            HtmlPage htmlPage = WEB_CLIENT.getPage(url);
+            HtmlPage htmlPage = WEB_CLIENT.get().getPage(url);
             String html = htmlPage.asXml();
             //LOGGER.debug("html:"+html);
             return html;
@@ -171,8 +151,7 @@ public class SentenceExtractor {
                     //统计词频
                     TextAnalyzer.seg(en).forEach(w -> {
                         Word word = new Word(w, "");
-                        WORD_FREQUENCE.putIfAbsent(word, new AtomicInteger());
-                        WORD_FREQUENCE.get(word).incrementAndGet();
+                        WORD_FREQUENCE.computeIfAbsent(word, k -> new AtomicInteger()).incrementAndGet();
                     });
                 }
             }
@@ -205,8 +184,7 @@ public class SentenceExtractor {
                     //统计词频
                     TextAnalyzer.seg(en).forEach(w -> {
                         Word word = new Word(w, "");
-                        WORD_FREQUENCE.putIfAbsent(word, new AtomicInteger());
-                        WORD_FREQUENCE.get(word).incrementAndGet();
+                        WORD_FREQUENCE.computeIfAbsent(word, k -> new AtomicInteger()).incrementAndGet();
                     });
                 }
             }
@@ -24,9 +24,10 @@ import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.model.SynonymAntonym;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
-import org.apdplat.superword.tools.WordClassifier;
 import org.apdplat.superword.tools.WordSources;
+import org.apdplat.superword.tools.ZipProcessor;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ import java.net.URL;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -82,29 +84,8 @@ public class SynonymAntonymExtractor {
     }
 
     public static Set<SynonymAntonym> parseZip(String zipFile){
-        Set<SynonymAntonym> data = new HashSet<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        data.addAll(parseFile(temp.toFile().getAbsolutePath()));
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashSet::new, (Set<SynonymAntonym> data, String line) -> parseLine(line, data), (a, b) -> { a.addAll(b); return a; }));
     }
 
     public static Set<SynonymAntonym> parseFile(String file){
@@ -116,19 +97,7 @@ public class SynonymAntonymExtractor {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("html:"+line);
-                String[] attr = line.split("杨尚川");
-                if(attr == null || attr.length != 2){
-                    LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
-                    continue;
-                }
-                String word = attr[0];
-                LOGGER.info("解析单词："+word);
-                String html = attr[1];
-                SynonymAntonym sa = parseSynonymAntonym(html, word);
-                if(sa.valid()) {
-                    data.add(sa);
-                }
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -136,16 +105,46 @@ public class SynonymAntonymExtractor {
         return data;
     }
 
+    public static void parseLine(String line, Set<SynonymAntonym> data){
+        //LOGGER.debug("html:"+line);
+        String[] attr = line.split("杨尚川");
+        if(attr == null || attr.length != 2){
+            LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+            return;
+        }
+        String word = attr[0];
+        LOGGER.info("解析单词："+word);
+        String html = attr[1];
+        parseDocument(word, Jsoup.parse(html), data);
+    }
+
+    /**
+     * 从已经解析好的网页中提取同义词反义词
+     * @param word 词
+     * @param document 网页
+     * @param data 提取结果
+     */
+    public static void parseDocument(String word, Document document, Set<SynonymAntonym> data){
+        SynonymAntonym sa = parseSynonymAntonym(document, word);
+        if(sa.valid()) {
+            data.add(sa);
+        }
+    }
+
+    public static SynonymAntonym parseSynonymAntonym(String html, String word){
+        return parseSynonymAntonym(Jsoup.parse(html), word);
+    }
+
     /**
      * 解析同义词辨析
-     * @param html
+     * @param document
      * @return
      */
-    public static SynonymAntonym parseSynonymAntonym(String html, String word){
+    public static SynonymAntonym parseSynonymAntonym(Document document, String word){
         SynonymAntonym synonymAntonym = new SynonymAntonym();
         synonymAntonym.setWord(new Word(word, ""));
         try {
-            for(Element element : Jsoup.parse(html).select(SYNONYM_ANTONYM_CSS_PATH)){
+            for(Element element : document.select(SYNONYM_ANTONYM_CSS_PATH)){
                 String type = element.select(TYPE).text().trim();
                 LOGGER.debug("type:"+type);
                 Elements elements = element.select(WORDS);
@@ -178,7 +177,13 @@ public class SynonymAntonymExtractor {
         return synonymAntonyms.stream().filter(sa -> !voc.contains(sa.getWord())).collect(Collectors.toSet());
     }
     private static void parseSynonymAntonym(){
-        Set<SynonymAntonym> synonymAntonyms = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        saveSynonymAntonym(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的同义词反义词
+     */
+    public static void saveSynonymAntonym(Set<SynonymAntonym> synonymAntonyms){
         String inSyllabusVocabularyHtml = HtmlFormatter.toHtmlForSynonymAntonym(inSyllabusVocabulary(synonymAntonyms), 6);
         String notInSyllabusVocabularyHtml = HtmlFormatter.toHtmlForSynonymAntonym(notInSyllabusVocabulary(synonymAntonyms), 6);
         try{
@@ -189,7 +194,13 @@ public class SynonymAntonymExtractor {
         }
     }
     private static void parseAntonym(){
-        Set<SynonymAntonym> antonyms = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        saveAntonym(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的反义词
+     */
+    public static void saveAntonym(Set<SynonymAntonym> antonyms){
         String inSyllabusVocabularyHtml = HtmlFormatter.toHtmlForAntonym(inSyllabusVocabulary(antonyms), 6);
         String notInSyllabusVocabularyHtml = HtmlFormatter.toHtmlForAntonym(notInSyllabusVocabulary(antonyms), 6);
         try{
@@ -23,8 +23,9 @@ package org.apdplat.superword.extract;
 import org.apdplat.superword.model.SynonymDiscrimination;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
-import org.apdplat.superword.tools.WordClassifier;
+import org.apdplat.superword.tools.ZipProcessor;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.slf4j.Logger;
@@ -34,6 +35,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.stream.Collector;
 
 /**
  * 同义词辨析提取工具
@@ -79,29 +81,8 @@ public class SynonymDiscriminationExtractor {
     }
 
     public static Set<SynonymDiscrimination> parseZip(String zipFile){
-        Set<SynonymDiscrimination> data = new HashSet<>();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        data.addAll(parseFile(temp.toFile().getAbsolutePath()));
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashSet::new, (Set<SynonymDiscrimination> data, String line) -> parseLine(line, data), (a, b) -> { a.addAll(b); return a; }));
     }
 
     public static Set<SynonymDiscrimination> parseFile(String file){
@@ -113,16 +94,7 @@ public class SynonymDiscriminationExtractor {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                //LOGGER.debug("html:"+line);
-                String[] attr = line.split("杨尚川");
-                if(attr == null || attr.length != 2){
-                    LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
-                    continue;
-                }
-                String word = attr[0];
-                LOGGER.info("解析单词："+word);
-                String html = attr[1];
-                data.addAll(parseSynonymDiscrimination(html));
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -130,15 +102,42 @@ public class SynonymDiscriminationExtractor {
         return data;
     }
 
+    public static void parseLine(String line, Set<SynonymDiscrimination> data){
+        //LOGGER.debug("html:"+line);
+        String[] attr = line.split("杨尚川");
+        if(attr == null || attr.length != 2){
+            LOGGER.error("解析文本失败，文本应该以'杨尚川'分割，前面是词，后面是网页，网页内容是去除换行符之后的一整行文本："+line);
+            return;
+        }
+        String word = attr[0];
+        LOGGER.info("解析单词："+word);
+        String html = attr[1];
+        parseDocument(word, Jsoup.parse(html), data);
+    }
+
+    /**
+     * 从已经解析好的网页中提取同义词辨析
+     * @param word 词
+     * @param document 网页
+     * @param data 提取结果
+     */
+    public static void parseDocument(String word, Document document, Set<SynonymDiscrimination> data){
+        data.addAll(parseSynonymDiscrimination(document));
+    }
+
+    public static Set<SynonymDiscrimination> parseSynonymDiscrimination(String html){
+        return parseSynonymDiscrimination(Jsoup.parse(html));
+    }
+
     /**
      * 解析同义词辨析
-     * @param html
+     * @param document
      * @return
      */
-    public static Set<SynonymDiscrimination> parseSynonymDiscrimination(String html){
+    public static Set<SynonymDiscrimination> parseSynonymDiscrimination(Document document){
         Set<SynonymDiscrimination> data = new HashSet<>();
         try {
-            for(Element element : Jsoup.parse(html).select(SD_CSS_PATH)){
+            for(Element element : document.select(SD_CSS_PATH)){
                 String title = element.select(TITLE).text().trim();
                 Elements elements = element.select(DES);
                 if(elements.size() != 2){
@@ -168,7 +167,13 @@ public class SynonymDiscriminationExtractor {
         return data;
     }
     private static void parseSynonymDiscrimination(){
-        Set<SynonymDiscrimination> synonymDiscrimination = parse("/Users/apple/百度云同步盘/origin_html.zip");
+        save(parse("/Users/apple/百度云同步盘/origin_html.zip"));
+    }
+
+    /**
+     * 保存提取的同义词辨析
+     */
+    public static void save(Set<SynonymDiscrimination> synonymDiscrimination){
         String html = HtmlFormatter.toHtmlForSynonymDiscrimination(synonymDiscrimination);
         try{
             Files.write(Paths.get("src/main/resources/synonym_discrimination.txt"), html.getBytes("utf-8"));
@@ -69,7 +69,17 @@ public class QuizItem implements Comparable {
     }
 
     public static String getDefinition(String word, Dictionary dictionary) {
-        String definition = MySQLUtils.getWordDefinition(word, dictionary.name());
+        return selectDefinition(word, MySQLUtils.getWordDefinitions(Arrays.asList(word), Arrays.asList(dictionary)).get(word), dictionary);
+    }
+
+    /**
+     * 从单词的完整定义中随机选择一条适合作为选项的定义
+     * @param word 单词
+     * @param definition 单词的完整定义
+     * @param dictionary 词典
+     * @return 选中的定义，不适合作为选项时返回null
+     */
+    private static String selectDefinition(String word, String definition, Dictionary dictionary) {
         String[] attrs = definition.split("<br/>");
         if(attrs == null || attrs.length < 1){
             return null;
@@ -118,25 +128,38 @@ public class QuizItem implements Comparable {
     public static QuizItem buildQuizItem(String word, List<Word> words, Dictionary dictionary, int optionCount){
         try {
             QuizItem quizItem = new QuizItem();
-            String selectedDefinition = getDefinition(word, dictionary);
-            if(StringUtils.isBlank(selectedDefinition)){
-                return null;
-            }
-            quizItem.word = new Word(word, selectedDefinition);
-
             for(;;){
-                String candidate = words.get(new Random(System.nanoTime()).nextInt(words.size())).getWord();
-                if(word.equals(candidate)
-                        || candidate.length() < 4){
-                    continue;
+                //每次随机选择一批候选词，一次查询取回它们的定义，第一批同时取回单词本身的定义
+                List<String> candidates = new ArrayList<>();
+                while (candidates.size() < optionCount*2){
+                    String candidate = words.get(new Random(System.nanoTime()).nextInt(words.size())).getWord();
+                    if(word.equals(candidate)
+                            || candidate.length() < 4){
+                        continue;
+                    }
+                    candidates.add(candidate);
+                }
+                List<String> batch = new ArrayList<>(candidates);
+                if(quizItem.word == null){
+                    batch.add(word);
                 }
-                String definition = getDefinition(candidate, dictionary);
-                if(StringUtils.isBlank(definition)){
-                    continue;
+                Map<String, String> definitions = MySQLUtils.getWordDefinitions(batch, Arrays.asList(dictionary));
+                if(quizItem.word == null){
+                    String selectedDefinition = selectDefinition(word, definitions.get(word), dictionary);
+                    if(StringUtils.isBlank(selectedDefinition)){
+                        return null;
+                    }
+                    quizItem.word = new Word(word, selectedDefinition);
                 }
-                quizItem.otherWords.add(new Word(candidate, definition));
-                if(quizItem.otherWords.size() >= (optionCount-1)){
-                    return quizItem;
+                for(String candidate : candidates){
+                    String definition = selectDefinition(candidate, definitions.get(candidate), dictionary);
+                    if(StringUtils.isBlank(definition)){
+                        continue;
+                    }
+                    quizItem.otherWords.add(new Word(candidate, definition));
+                    if(quizItem.otherWords.size() >= (optionCount-1)){
+                        return quizItem;
+                    }
                 }
             }
         }catch (Exception e){
@@ -31,8 +31,9 @@ import java.util.Set;
 public class Word implements Comparable{
     private String word;
     private String meaning;
-    private Set<String> definitions = new HashSet<>();
-    private Set<String> partOfSpeeches = new HashSet<>();
+    //大多数单词只用到word，这两个集合在第一次添加元素时才创建
+    private Set<String> definitions = null;
+    private Set<String> partOfSpeeches = null;
 
     public Word(){}
     public Word(String word, String meaning) {
@@ -57,23 +58,34 @@ public class Word implements Comparable{
     }
 
     public Set<String> getDefinitions() {
+        if(definitions == null){
+            return Collections.emptySet();
+        }
         return Collections.unmodifiableSet(definitions);
     }
 
     public void addDefinition(String definition) {
+        if(definitions == null){
+            definitions = new HashSet<>();
+        }
         this.definitions.add(definition);
     }
 
     public void removeDefinition(String definition) {
-        this.definitions.remove(definition);
+        if(definitions != null) {
+            this.definitions.remove(definition);
+        }
     }
 
     public Set<String> getPartOfSpeeches() {
+        if(partOfSpeeches == null){
+            return Collections.emptySet();
+        }
         return Collections.unmodifiableSet(partOfSpeeches);
     }
 
     public String getFormatPartOfSpeeches() {
-        if(partOfSpeeches.isEmpty()){
+        if(partOfSpeeches == null || partOfSpeeches.isEmpty()){
             return "";
         }
         StringBuilder text = new StringBuilder();
@@ -83,11 +95,16 @@ public class Word implements Comparable{
     }
 
     public void addPartOfSpeech(String partOfSpeech) {
+        if(partOfSpeeches == null){
+            partOfSpeeches = new HashSet<>();
+        }
         this.partOfSpeeches.add(partOfSpeech);
     }
 
     public void removePartOfSpeech(String partOfSpeech) {
-        this.partOfSpeeches.remove(partOfSpeech);
+        if(partOfSpeeches != null) {
+            this.partOfSpeeches.remove(partOfSpeech);
+        }
     }
 
     @Override
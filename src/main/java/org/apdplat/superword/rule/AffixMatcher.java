@@ -0,0 +1,355 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Prefix;
+import org.apdplat.superword.model.Suffix;
+import org.apdplat.superword.model.Word;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 词根词缀匹配器
+ * 把所有的前缀、后缀和词根编译成一个Aho-Corasick自动机，
+ * 每个词只需从左到右扫描一次就能找出它包含的所有前缀、后缀和词根，
+ * 前缀只在词首匹配，后缀只在词尾匹配，词根在任意位置匹配，
+ * 匹配规则和 PrefixRule.findByPrefix、SuffixRule.findBySuffix、RootRule.findByRoot 一致
+ * @author 杨尚川
+ */
+public class AffixMatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AffixMatcher.class);
+
+    private static final byte PREFIX = 0;
+    private static final byte SUFFIX = 1;
+    private static final byte ROOT = 2;
+
+    private static AffixMatcher defaultMatcher;
+
+    //和TreeMap一样，相等的前缀、后缀或词根只保留第一个，下标即排序后的顺序
+    private final Prefix[] prefixes;
+    private final Suffix[] suffixes;
+    private final Word[] roots;
+
+    //第i个模式的类型、所属的前缀后缀或词根的下标、长度
+    private final byte[] types;
+    private final int[] keys;
+    private final int[] lengths;
+    //空模式匹配任何词，单独处理
+    private final int[] empties;
+
+    //字符 -> 列号，不在任何模式中出现的字符为-1
+    private final int[] columns;
+    private final int width;
+    //状态转移表，第s个状态读入第c列的字符后转移到 delta[s*width+c]
+    private final int[] delta;
+    //到达某个状态时匹配的所有模式，包括沿失败指针可达的状态的模式
+    private final int[][] outputs;
+
+    public AffixMatcher(Collection<Prefix> prefixes, Collection<Suffix> suffixes, Collection<Word> roots){
+        long start = System.currentTimeMillis();
+        this.prefixes = new TreeSet<>(prefixes).toArray(new Prefix[0]);
+        this.suffixes = new TreeSet<>(suffixes).toArray(new Suffix[0]);
+        this.roots = new TreeSet<>(roots).toArray(new Word[0]);
+
+        List<String> patterns = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        List<Integer> keys = new ArrayList<>();
+        for(int i=0; i<this.prefixes.length; i++){
+            patterns.add(this.prefixes[i].getPrefix().replace("-", "").toLowerCase());
+            types.add(PREFIX);
+            keys.add(i);
+        }
+        for(int i=0; i<this.suffixes.length; i++){
+            patterns.add(this.suffixes[i].getSuffix().replace("-", "").toLowerCase());
+            types.add(SUFFIX);
+            keys.add(i);
+        }
+        for(int i=0; i<this.roots.length; i++){
+            for(String root : this.roots[i].getWord().toLowerCase().split(",")){
+                patterns.add(root);
+                types.add(ROOT);
+                keys.add(i);
+            }
+        }
+        int size = patterns.size();
+        this.types = new byte[size];
+        this.keys = new int[size];
+        this.lengths = new int[size];
+        List<Integer> empties = new ArrayList<>();
+        int maxChar = 0;
+        for(int i=0; i<size; i++){
+            String pattern = patterns.get(i);
+            this.types[i] = types.get(i);
+            this.keys[i] = keys.get(i);
+            this.lengths[i] = pattern.length();
+            if(pattern.isEmpty()){
+                empties.add(i);
+            }
+            for(int j=0; j<pattern.length(); j++){
+                maxChar = Math.max(maxChar, pattern.charAt(j));
+            }
+        }
+        this.empties = empties.stream().mapToInt(Integer::intValue).toArray();
+
+        columns = new int[maxChar + 1];
+        Arrays.fill(columns, -1);
+        int width = 0;
+        for(String pattern : patterns){
+            for(int j=0; j<pattern.length(); j++){
+                char c = pattern.charAt(j);
+                if(columns[c] == -1){
+                    columns[c] = width++;
+                }
+            }
+        }
+        this.width = Math.max(width, 1);
+
+        //构建字典树，-1表示没有这条边
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> matches = new ArrayList<>();
+        trie.add(newState(this.width));
+        matches.add(new ArrayList<>());
+        for(int i=0; i<size; i++){
+            String pattern = patterns.get(i);
+            if(pattern.isEmpty()){
+                continue;
+            }
+            int state = 0;
+            for(int j=0; j<pattern.length(); j++){
+                int c = columns[pattern.charAt(j)];
+                if(trie.get(state)[c] == -1){
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState(this.width));
+                    matches.add(new ArrayList<>());
+                }
+                state = trie.get(state)[c];
+            }
+            matches.get(state).add(i);
+        }
+
+        //按广度优先的顺序计算失败指针，同时把字典树补全为确定的状态转移表
+        int states = trie.size();
+        delta = new int[states * this.width];
+        outputs = new int[states][];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for(int c=0; c<this.width; c++){
+            int next = trie.get(0)[c];
+            if(next == -1){
+                delta[c] = 0;
+            }else{
+                delta[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        outputs[0] = new int[0];
+        while (!queue.isEmpty()){
+            int state = queue.poll();
+            List<Integer> output = new ArrayList<>(matches.get(state));
+            for(int pattern : outputs[fail[state]]){
+                output.add(pattern);
+            }
+            outputs[state] = output.stream().mapToInt(Integer::intValue).toArray();
+            for(int c=0; c<this.width; c++){
+                int next = trie.get(state)[c];
+                if(next == -1){
+                    delta[state * this.width + c] = delta[fail[state] * this.width + c];
+                }else{
+                    delta[state * this.width + c] = next;
+                    fail[next] = delta[fail[state] * this.width + c];
+                    queue.add(next);
+                }
+            }
+        }
+        LOGGER.info("构建词根词缀匹配器，前缀数：" + this.prefixes.length
+                + "，后缀数：" + this.suffixes.length
+                + "，词根数：" + this.roots.length
+                + "，状态数：" + states
+                + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    private static int[] newState(int width){
+        int[] state = new int[width];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * 由root_affix.txt中的所有前缀、后缀和词根构建的匹配器
+     * @return 匹配器
+     */
+    public static synchronized AffixMatcher getDefault(){
+        if(defaultMatcher == null){
+            defaultMatcher = new AffixMatcher(PrefixRule.getAllPrefixes(), SuffixRule.getAllSuffixes(), RootRule.getAllRoots());
+        }
+        return defaultMatcher;
+    }
+
+    /**
+     * 并行地为词汇表中的每个词标注它包含的前缀、后缀和词根
+     * @param words 词汇表
+     * @param strict 是否要求去掉前缀或后缀之后剩下的部分是长度大于2的词汇表中的词，对词根无影响
+     * @return 至少包含一个前缀、后缀或词根的词 -> 匹配结果
+     */
+    public Map<Word, Match> match(Collection<Word> words, boolean strict){
+        long start = System.currentTimeMillis();
+        Set<String> vocabulary = strict ? words.stream().map(Word::getWord).filter(Objects::nonNull).collect(Collectors.toSet()) : null;
+        Map<Word, Match> result = words
+                .parallelStream()
+                .map(word -> match(word, vocabulary))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Match::getWord, match -> match));
+        LOGGER.debug("匹配词根词缀，词数：" + words.size() + "，有匹配的词数：" + result.size()
+                + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return result;
+    }
+
+    /**
+     * 为一个词标注它包含的前缀、后缀和词根
+     * @param word 词，区分大小写，首字母大写的词不匹配
+     * @param vocabulary 词汇表，为null时不检查去掉前缀或后缀之后剩下的部分
+     * @return 匹配结果，没有任何匹配时返回null
+     */
+    private Match match(Word word, Set<String> vocabulary){
+        String w = word.getWord();
+        if(w == null || w.isEmpty() || Character.isUpperCase(w.charAt(0))){
+            return null;
+        }
+        BitSet[] found = new BitSet[3];
+        for(int pattern : empties){
+            accept(pattern, w, types[pattern] == SUFFIX ? w.length() : 0, vocabulary, found);
+        }
+        int state = 0;
+        for(int i=0; i<w.length(); i++){
+            char c = w.charAt(i);
+            int column = c < columns.length ? columns[c] : -1;
+            state = column == -1 ? 0 : delta[state * width + column];
+            for(int pattern : outputs[state]){
+                accept(pattern, w, i + 1, vocabulary, found);
+            }
+        }
+        if(found[PREFIX] == null && found[SUFFIX] == null && found[ROOT] == null){
+            return null;
+        }
+        return new Match(word, toArray(found[PREFIX]), toArray(found[SUFFIX]), toArray(found[ROOT]));
+    }
+
+    /**
+     * 模式在词的end位置结束，检查是否满足该模式类型的位置要求
+     */
+    private void accept(int pattern, String w, int end, Set<String> vocabulary, BitSet[] found){
+        byte type = types[pattern];
+        int length = lengths[pattern];
+        if(type == PREFIX){
+            if(end != length){
+                return;
+            }
+            if(vocabulary != null && (w.length() - length <= 2 || !vocabulary.contains(w.substring(length)))){
+                return;
+            }
+        }else if(type == SUFFIX){
+            if(end != w.length()){
+                return;
+            }
+            if(vocabulary != null && (w.length() - length <= 2 || !vocabulary.contains(w.substring(0, w.length() - length)))){
+                return;
+            }
+        }
+        if(found[type] == null){
+            found[type] = new BitSet();
+        }
+        found[type].set(keys[pattern]);
+    }
+
+    private static int[] toArray(BitSet bits){
+        return bits == null ? new int[0] : bits.stream().toArray();
+    }
+
+    /**
+     * 一个词包含的前缀、后缀和词根，各自按字母顺序排列
+     */
+    public class Match {
+        private final Word word;
+        private final int[] prefixes;
+        private final int[] suffixes;
+        private final int[] roots;
+
+        private Match(Word word, int[] prefixes, int[] suffixes, int[] roots){
+            this.word = word;
+            this.prefixes = prefixes;
+            this.suffixes = suffixes;
+            this.roots = roots;
+        }
+
+        public Word getWord() {
+            return word;
+        }
+
+        public boolean hasPrefix(){
+            return prefixes.length > 0;
+        }
+
+        public boolean hasSuffix(){
+            return suffixes.length > 0;
+        }
+
+        public boolean hasRoot(){
+            return roots.length > 0;
+        }
+
+        public List<Prefix> getPrefixes() {
+            List<Prefix> result = new ArrayList<>(prefixes.length);
+            for(int i : prefixes){
+                result.add(AffixMatcher.this.prefixes[i]);
+            }
+            return result;
+        }
+
+        public List<Suffix> getSuffixes() {
+            List<Suffix> result = new ArrayList<>(suffixes.length);
+            for(int i : suffixes){
+                result.add(AffixMatcher.this.suffixes[i]);
+            }
+            return result;
+        }
+
+        public List<Word> getRoots() {
+            List<Word> result = new ArrayList<>(roots.length);
+            for(int i : roots){
+                result.add(AffixMatcher.this.roots[i]);
+            }
+            return result;
+        }
+
+        /**
+         * 依次为前缀、后缀和词根，前缀和后缀转换为词
+         * @return 所有匹配的前缀、后缀和词根
+         */
+        public List<Word> getAll(){
+            List<Word> result = new ArrayList<>(prefixes.length + suffixes.length + roots.length);
+            getPrefixes().forEach(prefix -> result.add(new Word(prefix.getPrefix(), prefix.getDes())));
+            getSuffixes().forEach(suffix -> result.add(new Word(suffix.getSuffix(), suffix.getDes())));
+            result.addAll(getRoots());
+            return result;
+        }
+    }
+}
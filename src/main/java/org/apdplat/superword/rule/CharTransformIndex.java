@@ -0,0 +1,282 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.CharMap;
+import org.apdplat.superword.model.Word;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 字符转换规则索引
+ * 词汇表中的词w如果包含from，并且把w中的from全部替换为to之后得到的词也在词汇表中，
+ * 则w和替换后的词之间存在一条以该规则为标签的边，
+ * 所有的边只在构建索引时计算一次，并以邻接表的形式保存，
+ * 查询一个词的所有转换关系只需要访问和这个词相连的边，
+ * 词汇表变化时只增加或删除和变化的词相连的边
+ * @author 杨尚川
+ */
+public class CharTransformIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CharTransformIndex.class);
+
+    private final List<CharMap> charMaps;
+    //词汇表
+    private final Map<String, Word> vocabulary = new HashMap<>();
+    //规则 -> 可以应用该规则的词
+    private final Map<CharMap, Set<String>> sources = new HashMap<>();
+    //词 -> 规则 -> 转换前的词，包括词本身作为转换前的词和作为转换后的词两种情况
+    private final Map<String, Map<CharMap, Set<String>>> adjacency = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CharTransformIndex(Collection<CharMap> charMaps, Collection<Word> words){
+        long start = System.currentTimeMillis();
+        this.charMaps = new ArrayList<>(new LinkedHashSet<>(charMaps));
+        words.forEach(word -> {
+            if(word.getWord() != null){
+                vocabulary.put(word.getWord(), word);
+            }
+        });
+        //只需正向计算，每条边都会从转换前的词出发被找到一次
+        vocabulary.keySet().forEach(word -> {
+            for(CharMap charMap : this.charMaps){
+                String to = transform(word, charMap);
+                if(to != null && vocabulary.containsKey(to)){
+                    addEdge(word, to, charMap);
+                }
+            }
+        });
+        LOGGER.info("构建字符转换规则索引，词数：" + vocabulary.size()
+                + "，规则数：" + this.charMaps.size()
+                + "，有边的词数：" + adjacency.size()
+                + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try{
+            return vocabulary.size();
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 和 CharTransformRule.transforms(words) 的结果一致
+     * @return 规则 -> 可以应用该规则的词，按字母顺序排列
+     */
+    public Map<CharMap, List<Word>> transforms(){
+        lock.readLock().lock();
+        try{
+            Map<CharMap, List<Word>> result = new LinkedHashMap<>();
+            charMaps.forEach(charMap -> {
+                Set<String> words = sources.get(charMap);
+                if(words != null && !words.isEmpty()){
+                    result.put(charMap, toWords(words));
+                }
+            });
+            return result;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 和 CharTransformRule.transforms(words, target) 的结果一致
+     * @param target 词
+     * @return 规则 -> 转换前的词，转换前或转换后的词为target，没有转换关系时为空
+     */
+    public Map<CharMap, List<Word>> transforms(String target){
+        lock.readLock().lock();
+        try{
+            Map<CharMap, List<Word>> result = new LinkedHashMap<>();
+            Map<CharMap, Set<String>> edges = adjacency.get(target);
+            if(edges != null){
+                charMaps.forEach(charMap -> {
+                    Set<String> words = edges.get(charMap);
+                    if(words != null && !words.isEmpty()){
+                        result.put(charMap, toWords(words));
+                    }
+                });
+            }
+            return result;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把索引同步为给定的词汇表，只处理新增和删除的词
+     * @param words 新的词汇表
+     */
+    public void update(Collection<Word> words){
+        Set<String> current = new HashSet<>();
+        words.forEach(word -> {
+            if(word.getWord() != null){
+                current.add(word.getWord());
+            }
+        });
+        lock.writeLock().lock();
+        try{
+            List<String> removed = new ArrayList<>();
+            vocabulary.keySet().forEach(word -> {
+                if(!current.contains(word)){
+                    removed.add(word);
+                }
+            });
+            removed.forEach(this::remove);
+            int added = 0;
+            for(Word word : words){
+                if(word.getWord() != null && !vocabulary.containsKey(word.getWord())){
+                    add(word);
+                    added++;
+                }
+            }
+            if(added > 0 || !removed.isEmpty()){
+                LOGGER.info("更新字符转换规则索引，新增词数：" + added + "，删除词数：" + removed.size());
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Word word){
+        String w = word.getWord();
+        vocabulary.put(w, word);
+        for(CharMap charMap : charMaps){
+            //w是转换前的词
+            String to = transform(w, charMap);
+            if(to != null && vocabulary.containsKey(to)){
+                addEdge(w, to, charMap);
+            }
+            //w是转换后的词
+            for(String from : inverse(w, charMap)){
+                if(vocabulary.containsKey(from)){
+                    addEdge(from, w, charMap);
+                }
+            }
+        }
+    }
+
+    private void remove(String word){
+        Map<CharMap, Set<String>> edges = adjacency.get(word);
+        if(edges != null){
+            new HashMap<>(edges).forEach((charMap, froms) ->
+                new ArrayList<>(froms).forEach(from -> removeEdge(from, transform(from, charMap), charMap)));
+        }
+        vocabulary.remove(word);
+    }
+
+    private void addEdge(String from, String to, CharMap charMap){
+        sources.computeIfAbsent(charMap, k -> new HashSet<>()).add(from);
+        adjacency.computeIfAbsent(from, k -> new HashMap<>()).computeIfAbsent(charMap, k -> new HashSet<>()).add(from);
+        adjacency.computeIfAbsent(to, k -> new HashMap<>()).computeIfAbsent(charMap, k -> new HashSet<>()).add(from);
+    }
+
+    private void removeEdge(String from, String to, CharMap charMap){
+        Set<String> words = sources.get(charMap);
+        if(words != null){
+            words.remove(from);
+        }
+        removeAdjacency(from, from, charMap);
+        removeAdjacency(to, from, charMap);
+    }
+
+    private void removeAdjacency(String word, String from, CharMap charMap){
+        Map<CharMap, Set<String>> edges = adjacency.get(word);
+        if(edges == null){
+            return;
+        }
+        Set<String> froms = edges.get(charMap);
+        if(froms != null){
+            froms.remove(from);
+            if(froms.isEmpty()){
+                edges.remove(charMap);
+            }
+        }
+        if(edges.isEmpty()){
+            adjacency.remove(word);
+        }
+    }
+
+    private List<Word> toWords(Set<String> words){
+        List<Word> result = new ArrayList<>(words.size());
+        words.forEach(word -> result.add(vocabulary.get(word)));
+        result.sort(Word::compareTo);
+        return result;
+    }
+
+    /**
+     * 把word中的from全部替换为to，和 word.replaceAll(from, to) 一致
+     * @return 替换后的词，word不包含from时返回null
+     */
+    static String transform(String word, CharMap charMap){
+        String from = charMap.getFrom();
+        int index = word.indexOf(from);
+        if(index < 0){
+            return null;
+        }
+        String to = charMap.getTo();
+        StringBuilder result = new StringBuilder(word.length() + to.length());
+        int last = 0;
+        while (index >= 0){
+            result.append(word, last, index).append(to);
+            last = index + from.length();
+            index = word.indexOf(from, last);
+        }
+        result.append(word, last, word.length());
+        return result.toString();
+    }
+
+    /**
+     * 所有经过transform之后得到word的词，
+     * 即把word中的部分to还原为from，再用transform验证
+     */
+    private static Set<String> inverse(String word, CharMap charMap){
+        Set<String> result = new HashSet<>();
+        if(word.contains(charMap.getTo())){
+            inverse(word, charMap, 0, new StringBuilder(), false, result);
+        }
+        return result;
+    }
+
+    private static void inverse(String word, CharMap charMap, int index, StringBuilder prefix, boolean restored, Set<String> result){
+        if(index == word.length()){
+            if(restored){
+                String candidate = prefix.toString();
+                if(word.equals(transform(candidate, charMap))){
+                    result.add(candidate);
+                }
+            }
+            return;
+        }
+        int length = prefix.length();
+        String to = charMap.getTo();
+        if(word.startsWith(to, index)){
+            prefix.append(charMap.getFrom());
+            inverse(word, charMap, index + to.length(), prefix, true, result);
+            prefix.setLength(length);
+        }
+        prefix.append(word.charAt(index));
+        inverse(word, charMap, index + 1, prefix, restored, result);
+        prefix.setLength(length);
+    }
+}
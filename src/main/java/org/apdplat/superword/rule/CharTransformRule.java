@@ -47,6 +47,9 @@ public class CharTransformRule {
     private CharTransformRule(){}
 
     private static final List<CharMap> CHAR_MAP_REGULAR = new ArrayList<>();
+    //字符转换规则索引以及构建索引所用的词汇表
+    private static CharTransformIndex index = null;
+    private static Set<Word> indexedWords = null;
 
     static {
         CHAR_MAP_REGULAR.add(new CharMap("b", "p"));
@@ -167,26 +170,17 @@ public class CharTransformRule {
     }
 
     public static Map<Word,  Map<CharMap, List<Word>>> transforms(Set<Word> words, Set<Word> targets){
-        Map<CharMap, List<Word>> data = transforms(words);
+        return transforms(getIndex(words), targets);
+    }
+
+    public static Map<Word,  Map<CharMap, List<Word>>> transforms(CharTransformIndex index, Word target){
+        return transforms(index, new HashSet<Word>(Arrays.asList(target)));
+    }
+
+    public static Map<Word,  Map<CharMap, List<Word>>> transforms(CharTransformIndex index, Set<Word> targets){
         Map<Word,  Map<CharMap, List<Word>>> result = new ConcurrentHashMap<>();
-        targets.parallelStream().forEach(target -> {
-            Map<CharMap, List<Word>> t = new HashMap<>();
-            data.entrySet().parallelStream().forEach(entry -> {
-                List<Word> w = new ArrayList<>();
-                String from = entry.getKey().getFrom();
-                String to = entry.getKey().getTo();
-                entry.getValue().parallelStream().forEach(word -> {
-                    String old = word.getWord();
-                    if (target.getWord().equals((old))) {
-                        w.add(word);
-                    } else if (target.getWord().equals(old.replaceAll(from, to))) {
-                        w.add(word);
-                    }
-                });
-                if (!w.isEmpty()) {
-                    t.put(entry.getKey(), w);
-                }
-            });
+        targets.forEach(target -> {
+            Map<CharMap, List<Word>> t = index.transforms(target.getWord());
             if(!t.isEmpty()){
                 result.put(target, t);
             }
@@ -195,11 +189,31 @@ public class CharTransformRule {
     }
 
     public static Map<CharMap, List<Word>> transforms(Set<Word> words) {
-        Map<CharMap, List<Word>> result = new ConcurrentHashMap<>();
+        return getIndex(words).transforms();
+    }
 
-        CHAR_MAP_REGULAR.parallelStream().forEach(charMap -> result.putAll(transform(words, charMap)));
+    /**
+     * 为词汇表构建字符转换规则索引
+     * @param words 词汇表
+     * @return 索引
+     */
+    public static CharTransformIndex index(Set<Word> words){
+        return new CharTransformIndex(CHAR_MAP_REGULAR, words);
+    }
 
-        return result;
+    /**
+     * 同一个词汇表只构建一次索引，词汇表的内容变化时增量更新
+     * @param words 词汇表
+     * @return 索引
+     */
+    private static synchronized CharTransformIndex getIndex(Set<Word> words){
+        if(index == null || indexedWords != words){
+            index = index(words);
+            indexedWords = words;
+        }else{
+            index.update(words);
+        }
+        return index;
     }
 
     /**
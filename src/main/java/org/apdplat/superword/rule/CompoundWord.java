@@ -22,9 +22,14 @@ package org.apdplat.superword.rule;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.WordSources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
@@ -34,20 +39,117 @@ import java.util.*;
 public class CompoundWord {
     private CompoundWord(){}
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompoundWord.class);
+
+    private static final int MAGIC = 0x53574357;
+    private static final int VERSION = 1;
+
     public static Map<Word, Map<Integer, List<Word>>> find(Set<Word> words){
         return find(words, words);
     }
     public static Map<Word, Map<Integer, List<Word>>> find(Set<Word> words, Set<Word> target){
-        Map<Word, Map<Integer, List<Word>>> data = new HashMap<>();
-        target.forEach(word -> {
-            Map<Integer, List<Word>> compound = find(words, word);
-            if(!compound.isEmpty()) {
-                data.put(word, compound);
-            }
-        });
+        return new CompoundWordSplitter(words).split(target);
+    }
+
+    /**
+     * 词汇表中的所有复合词，优先读取快照文件，
+     * 快照文件不存在或者词汇表已经变化时重新计算并写入快照文件
+     * @param words 词汇表
+     * @param snapshot 快照文件
+     * @return 复合词 -> 切分位置 -> 前后两个词
+     */
+    public static Map<Word, Map<Integer, List<Word>>> find(Set<Word> words, Path snapshot){
+        long start = System.currentTimeMillis();
+        Map<Word, Map<Integer, List<Word>>> data = loadSnapshot(words, snapshot);
+        if(data == null){
+            data = find(words, words);
+            saveSnapshot(words, data, snapshot);
+        }
+        LOGGER.info("复合词数：" + data.size() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
         return data;
     }
 
+    /**
+     * 和词的顺序无关的词汇表指纹，用于判断快照文件是否过期
+     */
+    private static long fingerprint(Set<Word> words){
+        long fingerprint = words.size();
+        for(Word word : words){
+            long h = word.hashCode() * 0x9E3779B97F4A7C15L;
+            fingerprint += h ^ (h >>> 29);
+        }
+        return fingerprint;
+    }
+
+    private static Map<Word, Map<Integer, List<Word>>> loadSnapshot(Set<Word> words, Path snapshot){
+        if(!Files.exists(snapshot)){
+            return null;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))){
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                LOGGER.warn("复合词快照文件格式不正确：" + snapshot);
+                return null;
+            }
+            if(in.readInt() != words.size() || in.readLong() != fingerprint(words)){
+                LOGGER.info("词汇表已变化，重新计算复合词：" + snapshot);
+                return null;
+            }
+            Map<String, Word> vocabulary = new HashMap<>();
+            words.forEach(word -> vocabulary.put(word.getWord(), word));
+            int count = in.readInt();
+            Map<Word, Map<Integer, List<Word>>> data = new HashMap<>();
+            for(int i=0; i<count; i++){
+                String w = in.readUTF();
+                int positions = in.readUnsignedByte();
+                Map<Integer, List<Word>> compound = new HashMap<>();
+                for(int j=0; j<positions; j++){
+                    int position = in.readUnsignedShort();
+                    List<Word> parts = new ArrayList<>(2);
+                    parts.add(new Word(w.substring(0, position), ""));
+                    parts.add(new Word(w.substring(position), ""));
+                    compound.put(position, parts);
+                }
+                Word word = vocabulary.get(w);
+                data.put(word == null ? new Word(w, "") : word, compound);
+            }
+            LOGGER.info("读取复合词快照文件：" + snapshot);
+            return data;
+        }catch (IOException e){
+            LOGGER.error("读取复合词快照文件失败：" + snapshot, e);
+        }
+        return null;
+    }
+
+    /**
+     * 写入临时文件再替换快照文件
+     */
+    private static void saveSnapshot(Set<Word> words, Map<Word, Map<Integer, List<Word>>> data, Path snapshot){
+        try{
+            if(snapshot.getParent() != null){
+                Files.createDirectories(snapshot.getParent());
+            }
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))){
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(words.size());
+                out.writeLong(fingerprint(words));
+                out.writeInt(data.size());
+                for(Map.Entry<Word, Map<Integer, List<Word>>> entry : data.entrySet()){
+                    out.writeUTF(entry.getKey().getWord());
+                    out.writeByte(entry.getValue().size());
+                    for(int position : entry.getValue().keySet()){
+                        out.writeShort(position);
+                    }
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info("保存复合词快照文件：" + snapshot);
+        }catch (IOException e){
+            LOGGER.error("保存复合词快照文件失败：" + snapshot, e);
+        }
+    }
+
     public static Map<Integer, List<Word>> find(Set<Word> words, String word){
         return find(words, new Word(word, ""));
     }
@@ -0,0 +1,187 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Word;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 复合词拆分器
+ * 把词汇表中的词构建为字典树，拆分一个词时沿字典树从词首向后走一遍，
+ * 经过的每个词结束节点都是一个候选的切分位置，
+ * 再从切分位置沿字典树走到词尾，检查剩下的部分是否也是词，
+ * 整个过程只访问字符，不截取子串，也不创建用于查找的临时对象
+ * @author 杨尚川
+ */
+public class CompoundWordSplitter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompoundWordSplitter.class);
+
+    //忽略长度小于3的部分
+    private static final int MIN_LENGTH = 3;
+
+    //字典树的边保存在开放寻址的哈希表中，键为父节点和字符，值为子节点，0号节点为根
+    private long[] keys = new long[1024];
+    private int[] children = new int[1024];
+    private int mask = 1023;
+    private final BitSet terminals = new BitSet();
+    private int size = 1;
+
+    public CompoundWordSplitter(Collection<Word> words){
+        long start = System.currentTimeMillis();
+        words.forEach(word -> {
+            if(word.getWord() != null){
+                add(word.getWord());
+            }
+        });
+        LOGGER.info("构建复合词拆分器，词数：" + words.size() + "，节点数：" + size
+                + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    private void add(String word){
+        int node = 0;
+        for(int i=0; i<word.length(); i++){
+            char c = word.charAt(i);
+            int child = child(node, c);
+            if(child == 0){
+                child = size++;
+                put(node, c, child);
+            }
+            node = child;
+        }
+        terminals.set(node);
+    }
+
+    private static long key(int node, char c){
+        //加1保证键不为0，0表示空槽
+        return ((long) node << 16 | c) + 1;
+    }
+
+    private static int hash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void put(int node, char c, int child){
+        //装载因子不超过0.5
+        if(size * 2 > keys.length){
+            long[] oldKeys = keys;
+            int[] oldChildren = children;
+            keys = new long[oldKeys.length * 2];
+            children = new int[oldKeys.length * 2];
+            mask = keys.length - 1;
+            for(int i=0; i<oldKeys.length; i++){
+                if(oldKeys[i] != 0){
+                    insert(oldKeys[i], oldChildren[i]);
+                }
+            }
+        }
+        insert(key(node, c), child);
+    }
+
+    private void insert(long key, int child){
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0){
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        children[slot] = child;
+    }
+
+    private int child(int node, char c){
+        long key = key(node, c);
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0){
+            if(keys[slot] == key){
+                return children[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * 和 CompoundWord.find(words, word) 的结果一致
+     * @param word 要拆分的词
+     * @return 切分位置 -> 前后两个词，不能拆分时为空
+     */
+    public Map<Integer, List<Word>> split(String word){
+        Map<Integer, List<Word>> data = find(word);
+        return data == null ? new HashMap<>() : data;
+    }
+
+    /**
+     * @return 不能拆分时返回null，避免为大多数不是复合词的词创建空的Map
+     */
+    private Map<Integer, List<Word>> find(String word){
+        Map<Integer, List<Word>> data = null;
+        int length = word.length();
+        int node = 0;
+        for(int position=1; position<=length-MIN_LENGTH; position++){
+            node = child(node, word.charAt(position - 1));
+            if(node == 0){
+                break;
+            }
+            if(position >= MIN_LENGTH && terminals.get(node) && contains(word, position)){
+                if(data == null){
+                    data = new HashMap<>();
+                }
+                List<Word> parts = new ArrayList<>(2);
+                parts.add(new Word(word.substring(0, position), ""));
+                parts.add(new Word(word.substring(position), ""));
+                data.put(position, parts);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 从start开始到词尾的部分是否是词汇表中的词
+     */
+    private boolean contains(String word, int start){
+        int node = 0;
+        for(int i=start; i<word.length(); i++){
+            node = child(node, word.charAt(i));
+            if(node == 0){
+                return false;
+            }
+        }
+        return terminals.get(node);
+    }
+
+    /**
+     * 并行拆分所有的目标词
+     * @param target 目标词
+     * @return 能拆分的词 -> 切分位置 -> 前后两个词
+     */
+    public Map<Word, Map<Integer, List<Word>>> split(Collection<Word> target){
+        long start = System.currentTimeMillis();
+        Map<Word, Map<Integer, List<Word>>> data = target
+                .parallelStream()
+                .filter(word -> word.getWord() != null)
+                .map(word -> new AbstractMap.SimpleEntry<>(word, find(word.getWord())))
+                .filter(entry -> entry.getValue() != null)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, HashMap::new));
+        LOGGER.info("拆分复合词，词数：" + target.size() + "，复合词数：" + data.size()
+                + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return data;
+    }
+}
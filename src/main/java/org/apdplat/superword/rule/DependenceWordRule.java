@@ -20,8 +20,6 @@
 
 package org.apdplat.superword.rule;
 
-import org.apdplat.superword.model.Prefix;
-import org.apdplat.superword.model.Suffix;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.WordSources;
@@ -38,54 +36,22 @@ public class DependenceWordRule {
     private DependenceWordRule(){}
 
     public static Map<Word, List<Word>> getDependentWord(Set<Word> words){
-        Map<Word, List<Word>> data = new HashMap<>();
-
-        List<Prefix> prefixes = PrefixRule.getAllPrefixes();
-        TreeMap<Prefix, List<Word>> prefixToWords = PrefixRule.findByPrefix(words, prefixes, false);
-
-        List<Suffix> suffixes = SuffixRule.getAllSuffixes();
-        TreeMap<Suffix, List<Word>> suffixToWords = SuffixRule.findBySuffix(words, suffixes, false);
-
-        List<Word> roots = RootRule.getAllRoots();
-        TreeMap<Word, List<Word>> rootToWords = RootRule.findByRoot(words, roots);
-
-        Set<Word> prefixesWords = new HashSet<>();
-        Set<Word> suffixesWords = new HashSet<>();
-        Set<Word> rootsWords = new HashSet<>();
-
-        prefixToWords.values().forEach(list -> prefixesWords.addAll(list));
-        suffixToWords.values().forEach(list -> suffixesWords.addAll(list));
-        rootToWords.values().forEach(list -> rootsWords.addAll(list));
-
-        Set<Word> intersectionWords = WordSources.intersection(WordSources.intersection(prefixesWords, suffixesWords), rootsWords);
-
-        prefixToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                if (intersectionWords.contains(word)) {
-                    data.putIfAbsent(word, new ArrayList<>());
-                    data.get(word).add(new Word(entry.getKey().getPrefix(), entry.getKey().getDes()));
-                }
-            });
-        });
-
-        suffixToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                if (intersectionWords.contains(word)) {
-                    data.putIfAbsent(word, new ArrayList<>());
-                    data.get(word).add(new Word(entry.getKey().getSuffix(), entry.getKey().getDes()));
-                }
-            });
-        });
+        return getDependentWord(AffixMatcher.getDefault(), words);
+    }
 
-        rootToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                if (intersectionWords.contains(word)) {
-                    data.putIfAbsent(word, new ArrayList<>());
-                    data.get(word).add(entry.getKey());
-                }
-            });
+    /**
+     * 扫描一次词汇表，保留前缀、后缀和词根都有的词
+     * @param matcher 词根词缀匹配器
+     * @param words 词汇表
+     * @return 词 -> 依次为前缀、后缀和词根
+     */
+    public static Map<Word, List<Word>> getDependentWord(AffixMatcher matcher, Set<Word> words){
+        Map<Word, List<Word>> data = new HashMap<>();
+        matcher.match(words, false).forEach((word, match) -> {
+            if(match.hasPrefix() && match.hasSuffix() && match.hasRoot()){
+                data.put(word, match.getAll());
+            }
         });
-
         return data;
     }
 
@@ -27,6 +27,7 @@ import org.apdplat.superword.tools.WordSources;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -49,34 +50,43 @@ public class DynamicPrefixRule {
             if(prefixes == null || prefixes.size() < 2){
                 return Arrays.asList();
             }
-            return words
-                    .parallelStream()
-                    .filter(word -> {
-                        String w = word.getWord();
-
-                        String p = prefixes.get(0).getPrefix().toLowerCase();
-                        p = p.replaceAll("-", "").replaceAll("\\s+", "");
-
-                        if (!w.toLowerCase().startsWith(p)) {
-                            return false;
-                        }
+            return findByPrefix(new WordPrefixIndex(words), prefixes);
+        }
 
-                        String common = w.substring(p.length());
+        /**
+         * 用第一个前缀在前缀索引中定位候选词，
+         * 候选词去掉前缀后的公共部分加上其他前缀，在词汇表中查找是否存在
+         * @param words 词汇表的前缀索引
+         * @param prefixes 前缀
+         * @return 按字母顺序排列的以第一个前缀开头的词
+         */
+        public static List<Word> findByPrefix(WordPrefixIndex words, List<Prefix> prefixes) {
+            if(prefixes == null || prefixes.size() < 2){
+                return Arrays.asList();
+            }
+            List<String> normalized = new ArrayList<>(prefixes.size());
+            prefixes.forEach(prefix -> normalized.add(normalize(prefix)));
+            String p = normalized.get(0);
+            return words.getWords(p)
+                    .stream()
+                    .filter(word -> {
+                        String common = word.getWord().substring(p.length());
                         //这里要用for，忽略第一个元素
-                        for(int i=1; i<prefixes.size(); i++){
-                            String s = prefixes.get(i).getPrefix().toLowerCase();
-                            s = s.replaceAll("-", "").replaceAll("\\s+", "");
-                            if(!words.contains(new Word(s+common, ""))){
+                        for(int i=1; i<normalized.size(); i++){
+                            if(!words.contains(normalized.get(i)+common)){
                                 return false;
                             }
                         }
-
                         return true;
-                        })
+                    })
                     .sorted()
                     .collect(Collectors.toList());
         }
 
+        private static String normalize(Prefix prefix){
+            return prefix.getPrefix().toLowerCase().replaceAll("-", "").replaceAll("\\s+", "");
+        }
+
         public static String toHtmlFragment(List<Word> words, List<Prefix> prefixes) {
             return toHtmlFragment(words, prefixes, Dictionary.ICIBA);
         }
@@ -28,6 +28,7 @@ import org.apdplat.superword.tools.WordSources;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -50,34 +51,44 @@ public class DynamicSuffixRule {
             if(suffixes == null || suffixes.size() < 2){
                 return Arrays.asList();
             }
-            return words
-                    .parallelStream()
+            return findBySuffix(new SuffixIndex(words), suffixes);
+        }
+
+        /**
+         * 用第一个后缀在后缀索引中定位候选词，
+         * 候选词去掉后缀后的公共部分加上其他后缀，在词汇表中查找是否存在
+         * @param words 词汇表的后缀索引
+         * @param suffixes 后缀
+         * @return 按字母顺序排列的以第一个后缀结尾的词
+         */
+        public static List<Word> findBySuffix(SuffixIndex words, List<Suffix> suffixes) {
+            if(suffixes == null || suffixes.size() < 2){
+                return Arrays.asList();
+            }
+            List<String> normalized = new ArrayList<>(suffixes.size());
+            suffixes.forEach(suffix -> normalized.add(normalize(suffix)));
+            String p = normalized.get(0);
+            return words.getWords(p)
+                    .stream()
                     .filter(word -> {
                         String w = word.getWord();
-
-                        String p = suffixes.get(0).getSuffix().toLowerCase();
-                        p = p.replaceAll("-", "").replaceAll("\\s+", "");
-
-                        if (!w.toLowerCase().endsWith(p)) {
-                            return false;
-                        }
-
                         String common = w.substring(0, w.length()-p.length());
                         //这里要用for，忽略第一个元素
-                        for(int i=1; i<suffixes.size(); i++){
-                            String s = suffixes.get(i).getSuffix().toLowerCase();
-                            s = s.replaceAll("-", "").replaceAll("\\s+", "");
-                            if(!words.contains(new Word(common+s, ""))){
+                        for(int i=1; i<normalized.size(); i++){
+                            if(!words.contains(common+normalized.get(i))){
                                 return false;
                             }
                         }
-
                         return true;
-                        })
+                    })
                     .sorted()
                     .collect(Collectors.toList());
         }
 
+        private static String normalize(Suffix suffix){
+            return suffix.getSuffix().toLowerCase().replaceAll("-", "").replaceAll("\\s+", "");
+        }
+
         public static String toHtmlFragment(List<Word> words, List<Suffix> suffixes) {
             return toHtmlFragment(words, suffixes, Dictionary.ICIBA);
         }
@@ -0,0 +1,271 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.word.analysis.Hit;
+import org.apdplat.word.analysis.Hits;
+import org.apdplat.word.segmentation.Segmentation;
+import org.apdplat.word.segmentation.SegmentationAlgorithm;
+import org.apdplat.word.segmentation.SegmentationFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * 拼写相似词的编辑距离索引
+ * 每个词汇表只构建一次，查询结果和排序与
+ * EditDistanceTextSimilarity.rank(word, words, limit) 完全一致，
+ * 区别在于不再对每个词都计算完整的编辑距离：
+ * 1、词按规范化后的长度分桶，长度差是编辑距离的下界，
+ *    按分值上界从高到低访问各个桶，上界低于当前第K名的分值时停止
+ * 2、桶内使用带阈值的对角线带状动态规划，超过阈值立即放弃
+ * @author 杨尚川
+ */
+public class EditDistanceIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EditDistanceIndex.class);
+    private static final Segmentation SEGMENTATION = SegmentationFactory.getSegmentation(SegmentationAlgorithm.PureEnglish);
+
+    //原始的词，下标即词在词汇表中的顺序，分值相同时按此顺序排列
+    private final String[] texts;
+    //规范化后长度为 length 的词在 texts 中的下标
+    private final Map<Integer, int[]> buckets = new HashMap<>();
+    private final Map<Integer, char[][]> normalizedBuckets = new HashMap<>();
+    private final int maxLength;
+
+    public EditDistanceIndex(Collection<Word> words){
+        this(toTexts(words));
+    }
+
+    public EditDistanceIndex(List<String> words){
+        long start = System.currentTimeMillis();
+        texts = words.toArray(new String[words.size()]);
+        Map<Integer, List<Integer>> positions = new HashMap<>();
+        char[][] normalized = new char[texts.length][];
+        int max = 0;
+        for(int i=0; i<texts.length; i++){
+            normalized[i] = normalize(texts[i]);
+            positions.computeIfAbsent(normalized[i].length, k -> new ArrayList<>()).add(i);
+            max = Math.max(max, normalized[i].length);
+        }
+        maxLength = max;
+        positions.forEach((length, list) -> {
+            int[] bucket = new int[list.size()];
+            char[][] chars = new char[list.size()][];
+            for(int i=0; i<bucket.length; i++){
+                bucket[i] = list.get(i);
+                chars[i] = normalized[bucket[i]];
+            }
+            buckets.put(length, bucket);
+            normalizedBuckets.put(length, chars);
+        });
+        LOGGER.info("构建编辑距离索引，词数：" + texts.length + "，桶数：" + buckets.size() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    public int size(){
+        return texts.length;
+    }
+
+    /**
+     * 和 EditDistanceTextSimilarity.rank(word, words, limit) 的结果一致
+     * @param word 要查询的词
+     * @param limit 返回的结果数目
+     * @return 按分值从高到低排列的结果，分值相同的按词汇表中的顺序排列
+     */
+    public Hits rank(String word, int limit){
+        if(limit > texts.length){
+            limit = texts.length;
+        }
+        Hits hits = new Hits(limit);
+        if(limit <= 0){
+            return hits;
+        }
+        if(word == null){
+            //文本为null时相似度都为0
+            for(int i=0; i<limit; i++){
+                hits.addHit(hit(texts[i], 0));
+            }
+            return hits;
+        }
+        char[] query = normalize(word);
+        int n = query.length;
+        //按分值上界从高到低访问各个桶
+        List<Integer> lengths = new ArrayList<>(buckets.keySet());
+        lengths.sort((a, b) -> {
+            int c = Double.compare(upperBound(n, b), upperBound(n, a));
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        //堆顶是当前第K名，即分值最低、分值相同时顺序最靠后的候选
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit, (a, b) -> {
+            int c = Double.compare(a.score, b.score);
+            return c != 0 ? c : Integer.compare(b.position, a.position);
+        });
+        int[] previous = new int[maxLength + 1];
+        int[] current = new int[maxLength + 1];
+        for(int m : lengths){
+            if(top.size() == limit && upperBound(n, m) < top.peek().score){
+                break;
+            }
+            int[] bucket = buckets.get(m);
+            char[][] chars = normalizedBuckets.get(m);
+            int max = Math.max(n, m);
+            for(int i=0; i<bucket.length; i++){
+                double score;
+                if(n == 0 || m == 0){
+                    score = n == m ? 1 : 0;
+                }else{
+                    int threshold = max;
+                    if(top.size() == limit){
+                        //超过这个距离的词分值必然低于当前第K名
+                        threshold = Math.min(max, (int)Math.ceil((1 - top.peek().score) * max) + 1);
+                    }
+                    int distance = distance(query, chars[i], threshold, previous, current);
+                    if(distance > threshold){
+                        continue;
+                    }
+                    score = score(distance, max);
+                }
+                offer(top, limit, new Candidate(bucket[i], score));
+            }
+        }
+        List<Candidate> result = new ArrayList<>(top);
+        result.sort((a, b) -> {
+            int c = Double.compare(b.score, a.score);
+            return c != 0 ? c : Integer.compare(a.position, b.position);
+        });
+        result.forEach(candidate -> hits.addHit(hit(texts[candidate.position], candidate.score)));
+        return hits;
+    }
+
+    private static void offer(PriorityQueue<Candidate> top, int limit, Candidate candidate){
+        if(top.size() < limit){
+            top.add(candidate);
+            return;
+        }
+        Candidate last = top.peek();
+        if(candidate.score > last.score
+                || (candidate.score == last.score && candidate.position < last.position)){
+            top.poll();
+            top.add(candidate);
+        }
+    }
+
+    /**
+     * 长度分别为n和m的两个词所能达到的最高分值
+     */
+    private static double upperBound(int n, int m){
+        if(n == 0 || m == 0){
+            return n == m ? 1 : 0;
+        }
+        return score(Math.abs(n - m), Math.max(n, m));
+    }
+
+    /**
+     * 和 EditDistanceTextSimilarity 的计算方式以及精度保持一致
+     */
+    private static double score(int distance, int max){
+        double score = 1 - distance / (double) max;
+        return (int)(score*1000000+0.5)/(double)1000000;
+    }
+
+    /**
+     * 带阈值的编辑距离，只计算对角线附近宽度为 2*threshold+1 的带
+     * @return 编辑距离，超过阈值时返回 threshold+1
+     */
+    private static int distance(char[] s, char[] t, int threshold, int[] previous, int[] current){
+        int n = s.length;
+        int m = t.length;
+        if(Math.abs(n - m) > threshold){
+            return threshold + 1;
+        }
+        int outside = threshold + 1;
+        for(int j=0; j<=m; j++){
+            previous[j] = j <= threshold ? j : outside;
+        }
+        for(int i=1; i<=n; i++){
+            int from = Math.max(1, i - threshold);
+            int to = Math.min(m, i + threshold);
+            current[0] = i <= threshold ? i : outside;
+            if(from > 1){
+                current[from - 1] = outside;
+            }
+            int rowMin = current[0];
+            char c = s[i-1];
+            for(int j=from; j<=to; j++){
+                int value;
+                if(c == t[j-1]){
+                    value = previous[j-1];
+                }else{
+                    value = Math.min(Math.min(previous[j-1], previous[j]), current[j-1]) + 1;
+                }
+                if(value > outside){
+                    value = outside;
+                }
+                current[j] = value;
+                if(value < rowMin){
+                    rowMin = value;
+                }
+            }
+            if(to < m){
+                current[to + 1] = outside;
+            }
+            if(rowMin > threshold){
+                return outside;
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+        return previous[m];
+    }
+
+    /**
+     * 和 TextSimilarity 一样先用PureEnglish分词，再把分词结果拼接起来
+     */
+    private static char[] normalize(String text){
+        StringBuilder normalized = new StringBuilder();
+        SEGMENTATION.seg(text).forEach(w -> normalized.append(w.getText()));
+        return normalized.toString().toCharArray();
+    }
+
+    private static List<String> toTexts(Collection<Word> words){
+        List<String> texts = new ArrayList<>(words.size());
+        for(Word word : words){
+            texts.add(word.getWord());
+        }
+        return texts;
+    }
+
+    private static Hit hit(String text, double score){
+        Hit hit = new Hit();
+        hit.setText(text);
+        hit.setScore(score);
+        return hit;
+    }
+
+    private static class Candidate {
+        private final int position;
+        private final double score;
+
+        private Candidate(int position, double score) {
+            this.position = position;
+            this.score = score;
+        }
+    }
+}
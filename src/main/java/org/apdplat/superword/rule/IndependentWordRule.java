@@ -20,8 +20,6 @@
 
 package org.apdplat.superword.rule;
 
-import org.apdplat.superword.model.Prefix;
-import org.apdplat.superword.model.Suffix;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.WordLinker;
@@ -47,21 +45,19 @@ public class IndependentWordRule {
         return getIndependentWord(words, Dictionary.ICIBA);
     }
     public static List<String> getIndependentWord(Set<Word> words, Dictionary dictionary){
-        List<Prefix> prefixes = PrefixRule.getAllPrefixes();
-        TreeMap<Prefix, List<Word>> prefixToWords = PrefixRule.findByPrefix(words, prefixes, false);
-
-        List<Suffix> suffixes = SuffixRule.getAllSuffixes();
-        TreeMap<Suffix, List<Word>> suffixToWords = SuffixRule.findBySuffix(words, suffixes, false);
-
-        List<Word> roots = RootRule.getAllRoots();
-        TreeMap<Word, List<Word>> rootToWords = RootRule.findByRoot(words, roots);
-
-        Set<Word> rs = new HashSet<>();
-        prefixToWords.values().forEach(list -> rs.addAll(list));
-        suffixToWords.values().forEach(list -> rs.addAll(list));
-        rootToWords.values().forEach(list -> rs.addAll(list));
+        return getIndependentWord(AffixMatcher.getDefault(), words, dictionary);
+    }
 
-        return WordSources.minus(words, rs)
+    /**
+     * 扫描一次词汇表，没有匹配到任何前缀、后缀和词根的词就是独立词
+     * @param matcher 词根词缀匹配器
+     * @param words 词汇表
+     * @param dictionary 链接到的词典
+     * @return 按字母顺序排列的链接
+     */
+    public static List<String> getIndependentWord(AffixMatcher matcher, Set<Word> words, Dictionary dictionary){
+        Map<Word, AffixMatcher.Match> matches = matcher.match(words, false);
+        return WordSources.minus(words, matches.keySet())
                 .stream()
                 .map(word -> WordLinker.toLink(word.getWord(), dictionary))
                 .sorted()
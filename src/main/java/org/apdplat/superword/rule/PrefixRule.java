@@ -76,6 +76,10 @@ public class PrefixRule {
     }
 
     public static TreeMap<Prefix, List<Word>> findByPrefix(Collection<Word> words, Collection<Prefix> prefixes, boolean strict) {
+        return findByPrefix(new WordPrefixIndex(words), prefixes, strict);
+    }
+
+    public static TreeMap<Prefix, List<Word>> findByPrefix(WordPrefixIndex words, Collection<Prefix> prefixes, boolean strict) {
         TreeMap<Prefix, List<Word>> map = new TreeMap<>();
         for(Prefix prefix : prefixes){
             map.put(prefix, findByPrefix(words, prefix, strict));
@@ -84,26 +88,23 @@ public class PrefixRule {
     }
 
     public static List<Word> findByPrefix(Collection<Word> words, Prefix prefix, boolean strict) {
-        return words
-                .parallelStream()
+        return findByPrefix(new WordPrefixIndex(words), prefix, strict);
+    }
+
+    /**
+     * 通过前缀索引只访问以前缀开头的词，而不是遍历整个词汇表
+     * @param words 词汇表的前缀索引
+     * @param prefix 前缀
+     * @param strict 是否要求去掉前缀之后剩下的部分也是词汇表中的词
+     * @return 按字母顺序排列的词
+     */
+    public static List<Word> findByPrefix(WordPrefixIndex words, Prefix prefix, boolean strict) {
+        String p = prefix.getPrefix().replace("-", "").toLowerCase();
+        return (strict ? words.getWordsWithRemainder(p) : words.getWords(p))
+                .stream()
                 .filter(word -> {
                     String w = word.getWord();
-                    if(Character.isUpperCase(w.charAt(0))){
-                        return false;
-                    }
-                    String p = prefix.getPrefix().replace("-", "").toLowerCase();
-
-                    if(strict){
-                        if(w.startsWith(p)
-                                && w.length()-p.length()>2
-                                && words.contains(new Word(w.substring(p.length()), ""))){
-                            return true;
-                        }
-                    } else if (w.startsWith(p)) {
-                        return true;
-                    }
-
-                    return false;
+                    return !Character.isUpperCase(w.charAt(0)) && w.startsWith(p);
                 })
                 .sorted()
                 .collect(Collectors.toList());
@@ -18,8 +18,6 @@
 
 package org.apdplat.superword.rule;
 
-import org.apdplat.superword.model.Prefix;
-import org.apdplat.superword.model.Suffix;
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.HtmlFormatter;
 import org.apdplat.superword.tools.WordSources;
@@ -36,41 +34,23 @@ public class RootAffixRule {
     private RootAffixRule(){}
 
     public static Map<Word, List<Word>> getWord(Set<Word> words, boolean strict){
-        Map<Word, Set<Word>> data = new HashMap<>();
-
-        List<Prefix> prefixes = PrefixRule.getAllPrefixes();
-        TreeMap<Prefix, List<Word>> prefixToWords = PrefixRule.findByPrefix(words, prefixes, strict);
-
-        List<Suffix> suffixes = SuffixRule.getAllSuffixes();
-        TreeMap<Suffix, List<Word>> suffixToWords = SuffixRule.findBySuffix(words, suffixes, strict);
-
-        List<Word> roots = RootRule.getAllRoots();
-        TreeMap<Word, List<Word>> rootToWords = RootRule.findByRoot(words, roots);
-
-        prefixToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                data.putIfAbsent(word, new HashSet<>());
-                data.get(word).add(new Word(entry.getKey().getPrefix(), entry.getKey().getDes()));
-            });
-        });
-        suffixToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                data.putIfAbsent(word, new HashSet<>());
-                data.get(word).add(new Word(entry.getKey().getSuffix(), entry.getKey().getDes()));
-            });
-        });
-        rootToWords.entrySet().forEach(entry -> {
-            entry.getValue().forEach(word -> {
-                data.putIfAbsent(word, new HashSet<>());
-                data.get(word).add(entry.getKey());
-            });
-        });
+        return getWord(AffixMatcher.getDefault(), words, strict);
+    }
 
+    /**
+     * 扫描一次词汇表即可得到每个词的所有前缀、后缀和词根
+     * @param matcher 词根词缀匹配器
+     * @param words 词汇表
+     * @param strict 是否要求去掉前缀或后缀之后剩下的部分也是词汇表中的词
+     * @return 词 -> 前缀、后缀和词根，同名的只保留一个
+     */
+    public static Map<Word, List<Word>> getWord(AffixMatcher matcher, Set<Word> words, boolean strict){
         Map<Word, List<Word>> result = new HashMap<>();
-        data.entrySet().forEach(entry -> {
-            result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        matcher.match(words, strict).forEach((word, match) -> {
+            Set<Word> data = new HashSet<>();
+            data.addAll(match.getAll());
+            result.put(word, new ArrayList<>(data));
         });
-
         return result;
     }
 
@@ -60,6 +60,9 @@ public class SimilarWord {
     private boolean all = false;
     private int limit = 45;
     private TextSimilarity textSimilarity = null;
+    //编辑距离索引以及构建索引所用的词表
+    private EditDistanceIndex editDistanceIndex = null;
+    private List<String> indexedWords = null;
 
     public int getLimit() {
         return limit;
@@ -83,16 +86,37 @@ public class SimilarWord {
     public Map<String, Hits> compute(String word, List<TextSimilarity> textSimilarities, List<String> words, int limit){
         Map<String, Hits> hitses = new HashMap<>();
         textSimilarities.forEach(textSimilarity -> {
-            Hits hits = textSimilarity.rank(word, words, limit);
+            Hits hits = compute(word, textSimilarity, words, limit);
             hitses.put(textSimilarity.getClass().getSimpleName().replace("TextSimilarity", ""), hits);
         });
         return hitses;
     }
 
     public Hits compute(String word, TextSimilarity textSimilarity, List<String> words, int limit){
+        if(textSimilarity instanceof EditDistanceTextSimilarity){
+            //编辑距离使用索引，结果和textSimilarity.rank一致
+            return compute(word, getEditDistanceIndex(words), limit);
+        }
         return textSimilarity.rank(word, words, limit);
     }
 
+    public Hits compute(String word, EditDistanceIndex editDistanceIndex, int limit){
+        return editDistanceIndex.rank(word, limit);
+    }
+
+    /**
+     * 同一个词表只构建一次索引
+     * @param words 词表
+     * @return 编辑距离索引
+     */
+    private synchronized EditDistanceIndex getEditDistanceIndex(List<String> words){
+        if(editDistanceIndex == null || indexedWords != words){
+            editDistanceIndex = new EditDistanceIndex(words);
+            indexedWords = words;
+        }
+        return editDistanceIndex;
+    }
+
     private void tip(){
         LOGGER.info("----------------------------------------------------------");
         LOGGER.info("可通过输入命令sa=edi来指定相似度算法，可用的算法有：");
@@ -19,11 +19,9 @@
  */
 package org.apdplat.superword.rule;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 import org.apdplat.superword.model.Word;
 import org.apdplat.superword.rule.WordVector.Score;
@@ -44,18 +42,34 @@ import org.apdplat.superword.tools.WordSources;
  */
 public class SimilarityRule {
 
+    //词向量以及构建词向量所用的词汇表
+    private WordVectors wordVectors = null;
+    private Set<Word> vectorizedWords = null;
+
     public void similarity(Set<Word> words, String target) {
-        WordVector targetWordVecotr = WordVector.of(target);
-        List<Score> scores = words.parallelStream()
-                                    .map(word -> targetWordVecotr.score(WordVector.of(word.getWord()), true))
-                                    .filter(item -> item.getScore() > 5)
-                                    .sorted()
-                                    .collect(Collectors.toList());
-        Collections.reverse(scores);
+        similarity(words, target, 100);
+    }
+
+    public void similarity(Set<Word> words, String target, int limit) {
+        List<Score> scores = getWordVectors(words).top(target, limit, 5, true);
         System.out.println("word "+target+" similarity rank: ");
         AtomicInteger i = new AtomicInteger();
         scores.forEach(score -> System.out.println("\t"+i.incrementAndGet() + "、" + score.getWord() + " " + score.getScore() + " " + score.getExplain()));
     }
+
+    /**
+     * 同一个词汇表只计算一次词向量
+     * @param words 词汇表
+     * @return 词向量
+     */
+    private synchronized WordVectors getWordVectors(Set<Word> words){
+        if(wordVectors == null || vectorizedWords != words){
+            wordVectors = new WordVectors(words);
+            vectorizedWords = words;
+        }
+        return wordVectors;
+    }
+
     public static void main(String[] args) throws Exception {
         Set<Word> words = WordSources.getAll();
 
@@ -0,0 +1,76 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.tools.PrefixIndex;
+
+import java.util.*;
+
+/**
+ * 后缀索引
+ * 把词汇表中的词逆序后构建前缀索引，
+ * 以某个后缀结尾的词就是以逆序后缀开头的逆序词，用二分查找定位一段连续的范围
+ * @author 杨尚川
+ */
+public class SuffixIndex {
+    private final PrefixIndex reversed;
+    private final Map<String, Word> vocabulary = new HashMap<>();
+
+    public SuffixIndex(Collection<Word> words){
+        List<String> list = new ArrayList<>(words.size());
+        for(Word word : words){
+            String w = word.getWord();
+            if(w == null){
+                continue;
+            }
+            vocabulary.put(w, word);
+            list.add(reverse(w));
+        }
+        reversed = new PrefixIndex(list);
+    }
+
+    public int size(){
+        return reversed.size();
+    }
+
+    /**
+     * 词汇表中是否有这个词，区分大小写
+     * @param word 词
+     * @return 是否有
+     */
+    public boolean contains(String word){
+        return vocabulary.containsKey(word);
+    }
+
+    /**
+     * 以suffix结尾的所有词，即 word.toLowerCase().endsWith(suffix.toLowerCase()) 的词
+     * @param suffix 后缀，不区分大小写
+     * @return 词，按逆序词的字母顺序排列
+     */
+    public List<Word> getWords(String suffix){
+        List<String> words = reversed.getWords(reverse(suffix));
+        List<Word> result = new ArrayList<>(words.size());
+        words.forEach(word -> result.add(vocabulary.get(reverse(word))));
+        return result;
+    }
+
+    private static String reverse(String word){
+        return new StringBuilder(word).reverse().toString();
+    }
+}
@@ -76,6 +76,10 @@ public class SuffixRule{
 }
 
     public static TreeMap<Suffix, List<Word>> findBySuffix(Collection<Word> words, Collection<Suffix> suffixes, boolean strict) {
+        return findBySuffix(new SuffixIndex(words), suffixes, strict);
+    }
+
+    public static TreeMap<Suffix, List<Word>> findBySuffix(SuffixIndex words, Collection<Suffix> suffixes, boolean strict) {
         TreeMap<Suffix, List<Word>> map = new TreeMap<>();
         for(Suffix suffix : suffixes){
             map.put(suffix, findBySuffix(words, suffix, strict));
@@ -84,19 +88,30 @@ public class SuffixRule{
     }
 
     public static List<Word> findBySuffix(Collection<Word> words, Suffix suffix, boolean strict) {
-        return words
-                .parallelStream()
+        return findBySuffix(new SuffixIndex(words), suffix, strict);
+    }
+
+    /**
+     * 通过后缀索引只访问以后缀结尾的词，而不是遍历整个词汇表
+     * @param words 词汇表的后缀索引
+     * @param suffix 后缀
+     * @param strict 是否要求去掉后缀之后剩下的部分也是词汇表中的词
+     * @return 按字母顺序排列的词
+     */
+    public static List<Word> findBySuffix(SuffixIndex words, Suffix suffix, boolean strict) {
+        String s = suffix.getSuffix().replace("-", "").toLowerCase();
+        return words.getWords(s)
+                .stream()
                 .filter(word -> {
                     String w = word.getWord();
                     if(Character.isUpperCase(w.charAt(0))){
                         return false;
                     }
-                    String s = suffix.getSuffix().replace("-", "").toLowerCase();
 
                     if(strict){
                         if(w.endsWith(s)
                                 && w.length()-s.length()>2
-                                && words.contains(new Word(w.substring(0, w.length()-s.length()), ""))){
+                                && words.contains(w.substring(0, w.length()-s.length()))){
                             return true;
                         }
                     } else if (w.endsWith(s)) {
@@ -0,0 +1,109 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.tools.PrefixIndex;
+
+import java.util.*;
+
+/**
+ * 词汇表的前缀索引
+ * 词汇表中的词排好序后，以某个前缀开头的词是连续的一段，用二分查找定位，
+ * 并且预先计算出每个词从哪些位置切开后剩下的部分仍然是词汇表中的词，
+ * 严格模式下的前缀规则只需检查对应的位
+ * @author 杨尚川
+ */
+public class WordPrefixIndex {
+    private final PrefixIndex index;
+    private final Map<String, Word> vocabulary = new HashMap<>();
+    //第i个词的第k位表示去掉前k个字符后剩下的部分是词汇表中的词，并且长度大于2
+    private final long[] remainders;
+
+    public WordPrefixIndex(Collection<Word> words){
+        List<String> list = new ArrayList<>(words.size());
+        for(Word word : words){
+            String w = word.getWord();
+            if(w == null){
+                continue;
+            }
+            vocabulary.put(w, word);
+            list.add(w);
+        }
+        index = new PrefixIndex(list);
+        remainders = new long[index.size()];
+        for(int i=0; i<remainders.length; i++){
+            String w = index.get(i);
+            for(int k=0; k<64 && w.length()-k>2; k++){
+                if(vocabulary.containsKey(w.substring(k))){
+                    remainders[i] |= 1L << k;
+                }
+            }
+        }
+    }
+
+    public int size(){
+        return index.size();
+    }
+
+    /**
+     * 词汇表中是否有这个词，区分大小写
+     * @param word 词
+     * @return 是否有
+     */
+    public boolean contains(String word){
+        return vocabulary.containsKey(word);
+    }
+
+    /**
+     * 以prefix开头的所有词，即 word.toLowerCase().startsWith(prefix.toLowerCase()) 的词
+     * @param prefix 前缀，不区分大小写
+     * @return 词，按字母顺序排列
+     */
+    public List<Word> getWords(String prefix){
+        List<String> words = index.getWords(prefix);
+        List<Word> result = new ArrayList<>(words.size());
+        words.forEach(word -> result.add(vocabulary.get(word)));
+        return result;
+    }
+
+    /**
+     * 以prefix开头，并且去掉prefix后剩下的部分是长度大于2的词汇表中的词，区分大小写
+     * @param prefix 前缀
+     * @return 词，按字母顺序排列
+     */
+    public List<Word> getWordsWithRemainder(String prefix){
+        String key = prefix.toLowerCase();
+        int from = index.from(key);
+        int to = index.to(key);
+        int k = prefix.length();
+        List<Word> result = new ArrayList<>();
+        for(int i=from; i<to; i++){
+            String w = index.get(i);
+            if(!w.startsWith(prefix)){
+                continue;
+            }
+            boolean remainder = k < 64 ? (remainders[i] & 1L << k) != 0
+                    : w.length()-k>2 && vocabulary.containsKey(w.substring(k));
+            if(remainder){
+                result.add(vocabulary.get(w));
+            }
+        }
+        return result;
+    }
+}
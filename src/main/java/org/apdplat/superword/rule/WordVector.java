@@ -20,9 +20,6 @@
 
 package org.apdplat.superword.rule;
 
-
-import java.util.*;
-
 /**
  * 单词的词向量表示、向量夹角的计算等
  * 词向量的问题在于没有考虑以下两点：
@@ -31,86 +28,140 @@ import java.util.*;
  * @author 杨尚川
  */
 public class WordVector {
-    private final BitSet wordVector = new BitSet(26);
-    private String word = null;
-    private Map<Character, Integer> times = null;
-    private Map<Character, List<Integer>> loc = null;
-    private WordVector(){}
+    //出现过的字母，第i位表示字母'a'+i
+    final int mask;
+    //每个字母的出现次数，超过127次时按127次计算
+    final byte[] times;
+    //每个字母出现的位置，位置从1开始，每个字母占stride个long，第k个long的第j位表示位置64*k+j+1
+    final long[] locations;
+    final int stride;
+    final String word;
+
+    private WordVector(String word, int mask, byte[] times, long[] locations, int stride){
+        this.word = word;
+        this.mask = mask;
+        this.times = times;
+        this.locations = locations;
+        this.stride = stride;
+    }
+
     public static WordVector of(String word){
         if(word == null || word.trim().isEmpty()){
             return null;
         }
-        WordVector result = new WordVector();
         word = word.toLowerCase();
-        result.times = new HashMap<>(word.length());
-        result.loc = new HashMap<>();
-        int i = 1;
-        for(char c : word.toCharArray()){
-            int index = c - 'a';
+        int stride = stride(word);
+        byte[] times = new byte[26];
+        long[] locations = new long[26 * stride];
+        int mask = pack(word, times, 0, locations, 0, stride);
+        return new WordVector(word, mask, times, locations, stride);
+    }
+
+    /**
+     * 保存字母位置所需的long的个数
+     * @param word 小写的词
+     */
+    static int stride(String word){
+        int letters = 0;
+        for(int i=0; i<word.length(); i++){
+            char c = word.charAt(i);
+            if(c >= 'a' && c <= 'z'){
+                letters++;
+            }
+        }
+        return Math.max(1, (letters + 63) / 64);
+    }
+
+    /**
+     * 把词写入紧凑的数组表示中
+     * @param word 小写的词
+     * @return 出现过的字母
+     */
+    static int pack(String word, byte[] times, int timesOffset, long[] locations, int locationsOffset, int stride){
+        int mask = 0;
+        //记住词序
+        int location = 0;
+        for(int i=0; i<word.length(); i++){
+            int index = word.charAt(i) - 'a';
             if(index<0 || index>25){
                 continue;
             }
-            result.wordVector.set(index, true);
+            mask |= 1 << index;
             //统计字母的出现次数
-            result.times.merge(c, 1, Integer::sum);
-            //记住词序
-            result.loc.putIfAbsent(c, new ArrayList<>(5));
-            result.loc.get(c).add(i++);
+            if(times[timesOffset + index] < Byte.MAX_VALUE) {
+                times[timesOffset + index]++;
+            }
+            locations[locationsOffset + index*stride + (location >>> 6)] |= 1L << (location & 63);
+            location++;
         }
-        result.word = word;
+        return mask;
+    }
 
-        return result;
+    public String getWord() {
+        return word;
     }
+
     public Score score(WordVector wordVector){
         return score(wordVector, false);
     }
     public Score score(WordVector wordVector, boolean explain){
-        StringBuilder tip = new StringBuilder();
+        StringBuilder tip = explain ? new StringBuilder() : null;
+        float sum = score(word, mask, times, 0, locations, 0, stride,
+                wordVector.word, wordVector.mask, wordVector.times, 0, wordVector.locations, 0, wordVector.stride,
+                tip);
         Score score = new Score();
-        float sum = 0.0f;
-        BitSet temp = this.wordVector.get(0, 26);
-        temp.and(wordVector.wordVector);
-        for(int i=0;i<26;i++){
-            if(temp.get(i)){
-                //有共同字符加一分
-                sum++;
-                //还原字符
-                char c = (char)(i+'a');
-                //计算共同出现次数
-                int t = Math.min(this.times.get(c), wordVector.times.get(c));
-                if(t > 1){
-                    sum += t-1;
-                }
-                List<Integer> wordVectorLoc = wordVector.loc.get(c);
-                //如果有相同的位置，则加分
-                long locc = this.loc.get(c).stream().filter(item -> wordVectorLoc.contains(item)).count();
-                sum += locc;
-
-                if(explain){
-                    tip.append(c).append("(").append(t).append("-").append(locc).append(")").append(" ");
-                }
+        score.setWord(wordVector.word);
+        score.setScore(sum);
+        if(explain){
+            score.setExplain(tip);
+        }
+        return score;
+    }
+
+    /**
+     * 计算两个紧凑表示的词的分值，WordVectors直接在其数组上调用
+     * @param tip 不为null时记录分值的解释
+     */
+    static float score(String word1, int mask1, byte[] times1, int timesOffset1, long[] locations1, int locationsOffset1, int stride1,
+                       String word2, int mask2, byte[] times2, int timesOffset2, long[] locations2, int locationsOffset2, int stride2,
+                       StringBuilder tip){
+        float sum = 0;
+        int common = mask1 & mask2;
+        int strides = Math.min(stride1, stride2);
+        while (common != 0){
+            int i = Integer.numberOfTrailingZeros(common);
+            common &= common - 1;
+            //有共同字符加一分
+            sum++;
+            //计算共同出现次数
+            int t = Math.min(times1[timesOffset1+i], times2[timesOffset2+i]);
+            if(t > 1){
+                sum += t-1;
+            }
+            //如果有相同的位置，则加分
+            int locc = 0;
+            for(int k=0; k<strides; k++){
+                locc += Long.bitCount(locations1[locationsOffset1 + i*stride1 + k] & locations2[locationsOffset2 + i*stride2 + k]);
+            }
+            sum += locc;
+
+            if(tip != null){
+                tip.append((char)(i+'a')).append("(").append(t).append("-").append(locc).append(")").append(" ");
             }
         }
         //前后顺序加分
         int len=0;
-        int limit = Math.min(this.word.length(), wordVector.word.length());
-        for(int i=0;i<limit;i++){
-            if(this.word.charAt(i)==wordVector.word.charAt(i)){
-                len++;
-            }else{
-                break;
-            }
+        int limit = Math.min(word1.length(), word2.length());
+        while (len<limit && word1.charAt(len)==word2.charAt(len)){
+            len++;
         }
         if(len>2){
             sum+=len;
-            tip.append("s:").append(len);
-        }
-        score.setWord(wordVector.word);
-        score.setScore(sum);
-        if(explain){
-            score.setExplain(tip);
+            if(tip != null){
+                tip.append("s:").append(len);
+            }
         }
-        return score;
+        return sum;
     }
     public static class Score implements Comparable{
         private String word;
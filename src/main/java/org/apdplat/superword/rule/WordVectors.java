@@ -0,0 +1,165 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.rule;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.rule.WordVector.Score;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * 词汇表中所有词的词向量
+ * 所有词的字母、出现次数和位置预先计算好，按列存放在几个连续的基本类型数组中，
+ * 查询时只做位运算和数组访问，用大小为K的堆保留分值最高的K个词
+ * @author 杨尚川
+ */
+public class WordVectors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WordVectors.class);
+
+    private final String[] words;
+    private final int[] masks;
+    //第i个词的出现次数从 i*26 开始
+    private final byte[] times;
+    //第i个词的位置从 i*26*stride 开始
+    private final long[] locations;
+    private final int stride;
+
+    public WordVectors(Collection<Word> words){
+        long start = System.currentTimeMillis();
+        List<String> list = new ArrayList<>(words.size());
+        int stride = 1;
+        for(Word word : words){
+            String w = word.getWord();
+            if(w == null || w.trim().isEmpty()){
+                continue;
+            }
+            w = w.toLowerCase();
+            list.add(w);
+            stride = Math.max(stride, WordVector.stride(w));
+        }
+        this.stride = stride;
+        this.words = list.toArray(new String[list.size()]);
+        this.masks = new int[this.words.length];
+        this.times = new byte[this.words.length * 26];
+        this.locations = new long[this.words.length * 26 * stride];
+        for(int i=0; i<this.words.length; i++){
+            masks[i] = WordVector.pack(this.words[i], times, i * 26, locations, i * 26 * stride, stride);
+        }
+        LOGGER.info("构建词向量，词数：" + this.words.length + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    public int size(){
+        return words.length;
+    }
+
+    /**
+     * 和target最相似的limit个词
+     * @param target 目标词
+     * @param limit 结果数目
+     * @param minScore 分值大于minScore的词才会出现在结果中
+     * @param explain 是否解释分值
+     * @return 按分值从高到低排列，分值相同的按词汇表中的顺序排列
+     */
+    public List<Score> top(String target, int limit, float minScore, boolean explain){
+        WordVector vector = WordVector.of(target);
+        if(vector == null || limit <= 0){
+            return Collections.emptyList();
+        }
+        //小顶堆，堆顶是当前第K名，即分值最低、分值相同时顺序最靠后的词
+        int[] heap = new int[limit];
+        float[] heapScores = new float[limit];
+        int size = 0;
+        for(int i=0; i<words.length; i++){
+            float score = score(vector, i, null);
+            if(score <= minScore){
+                continue;
+            }
+            if(size < limit){
+                //新加入的词顺序最靠后，分值相同时也要上浮
+                int child = size++;
+                while (child > 0){
+                    int parent = (child - 1) >>> 1;
+                    if(heapScores[parent] < score){
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    heapScores[child] = heapScores[parent];
+                    child = parent;
+                }
+                heap[child] = i;
+                heapScores[child] = score;
+            }else if(score > heapScores[0]){
+                //分值相同时先出现的词优先，所以只有分值更高才能替换堆顶，然后下沉
+                int parent = 0;
+                while (true){
+                    int child = 2 * parent + 1;
+                    if(child >= size){
+                        break;
+                    }
+                    if(child + 1 < size && worse(heap[child + 1], heapScores[child + 1], heap[child], heapScores[child])){
+                        child++;
+                    }
+                    if(!worse(heap[child], heapScores[child], i, score)){
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    heapScores[parent] = heapScores[child];
+                    parent = child;
+                }
+                heap[parent] = i;
+                heapScores[parent] = score;
+            }
+        }
+        Integer[] positions = new Integer[size];
+        for(int i=0; i<size; i++){
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (a, b) -> {
+            int c = Float.compare(heapScores[b], heapScores[a]);
+            return c != 0 ? c : Integer.compare(heap[a], heap[b]);
+        });
+        List<Score> result = new ArrayList<>(size);
+        for(int position : positions){
+            int i = heap[position];
+            StringBuilder tip = explain ? new StringBuilder() : null;
+            Score score = new Score();
+            score.setWord(words[i]);
+            score.setScore(score(vector, i, tip));
+            if(explain){
+                score.setExplain(tip);
+            }
+            result.add(score);
+        }
+        return result;
+    }
+
+    /**
+     * 词a是否比词b排名更靠后
+     */
+    private static boolean worse(int a, float scoreA, int b, float scoreB){
+        return scoreA < scoreB || (scoreA == scoreB && a > b);
+    }
+
+    private float score(WordVector vector, int i, StringBuilder tip){
+        return WordVector.score(vector.word, vector.mask, vector.times, 0, vector.locations, 0, vector.stride,
+                words[i], masks[i], times, i * 26, locations, i * 26 * stride, stride,
+                tip);
+    }
+}
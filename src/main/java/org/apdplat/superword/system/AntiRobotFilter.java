@@ -22,7 +22,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.freemarker.TemplateUtils;
 import org.apdplat.superword.model.QuizItem;
 import org.apdplat.superword.model.User;
-import org.apdplat.superword.tools.IPUtils;
+import org.apdplat.superword.tools.HeavyHitters;
+import org.apdplat.superword.tools.SlidingWindowRateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,19 +31,20 @@ import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 反爬虫反机器人攻击
@@ -52,21 +54,26 @@ public class AntiRobotFilter implements Filter {
     private static final Logger LOG = LoggerFactory.getLogger(AntiRobotFilter.class);
 
     private ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
-    private static final SimpleDateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    //每个客户端最近24小时的访问次数，按小时滑动，最多保存10万个客户端
+    private static final SlidingWindowRateLimiter<Client> LIMITER =
+            new SlidingWindowRateLimiter<>(TimeUnit.DAYS.toMillis(1), 24, 64, 100000);
+    //当天的访问统计，内存固定，每天归档后换成新的
+    private static final AtomicReference<HeavyHitters<Client>> TRAFFIC = new AtomicReference<>(newTraffic());
 
     public static volatile int limit = 1000;
-    public static volatile int invalidCount = 0;
+    public static final AtomicInteger invalidCount = new AtomicInteger();
 
     private static ServletContext servletContext = null;
 
     public void destroy() {
+        scheduledExecutorService.shutdownNow();
     }
 
-    private String getKey(HttpServletRequest request){
-        String ip = request.getRemoteAddr();
+    private Client getClient(HttpServletRequest request){
         User user = (User) request.getSession().getAttribute("user");
-        String userString = user==null?"anonymity":user.getUserName();
-        return "anti-robot-"+userString+"-"+ip+"-"+request.getHeader("User-Agent").replace("-", "_")+"-"+SIMPLE_DATE_FORMAT.format(new Date());
+        return new Client(user==null?"anonymity":user.getUserName(), request.getRemoteAddr(), request.getHeader("User-Agent"));
     }
 
     public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain) throws ServletException, IOException {
@@ -93,7 +100,7 @@ public class AntiRobotFilter implements Filter {
                 || userAgent.contains("360Spider")
                 || userAgent.contains("HaosouSpider")
                 || userAgent.contains("Googlebot")){
-            invalidCount++;
+            invalidCount.incrementAndGet();
             response.getWriter().write("Superword is a Java open source project dedicated in the study of English words analysis and auxiliary reading, including but not limited to, spelling similarity, definition similarity, pronunciation similarity, the transformation rules of the spelling, the prefix and the dynamic prefix, the suffix and the dynamic suffix, roots, compound words, text auxiliary reading, web page auxiliary reading, book auxiliary reading, etc..");
             return;
         }
@@ -178,15 +185,10 @@ public class AntiRobotFilter implements Filter {
             return;
         }
 
-        String key = getKey(request);
-        AtomicInteger count = (AtomicInteger)servletContext.getAttribute(key);
-        if(count == null){
-            count = new AtomicInteger();
-            servletContext.setAttribute(key, count);
-        }
-
-        if(count.incrementAndGet() > limit){
-            response.getWriter().write("System has detected that your IP visit is too frequent and has automatically forbidden your vist. We are sorry to bring inconvenience to you, please understand, please come back tomorrow. Bye Bye!");
+        Client client = getClient(request);
+        TRAFFIC.get().add(client);
+        if(!LIMITER.tryAcquire(client, limit)){
+            response.getWriter().write("System has detected that your IP visit is too frequent and has automatically forbidden your vist. We are sorry to bring inconvenience to you, please understand, the limit applies to the last 24 hours, please try again later. Bye Bye!");
 
             return;
         }
@@ -198,65 +200,134 @@ public class AntiRobotFilter implements Filter {
         int initialDelay = 24-LocalDateTime.now().getHour();
         scheduledExecutorService.scheduleAtFixedRate(() -> {
             try {
-                LOG.info("clear last day anti-robot counter");
-                LocalDateTime timePoint = LocalDateTime.now().minusDays(1);
-                String date = SIMPLE_DATE_FORMAT.format(Date.from(timePoint.atZone(ZoneId.systemDefault()).toInstant()));
-                Map<String, Integer> archive = new HashMap<String, Integer>();
-                Enumeration<String> keys = servletContext.getAttributeNames();
-                while (keys.hasMoreElements()) {
-                    String key = keys.nextElement();
-                    if (key.startsWith("anti-robot-") && key.endsWith(date)) {
-                        archive.put(key, ((AtomicInteger) servletContext.getAttribute(key)).intValue());
-                    }
-                }
-                archive.keySet().forEach(servletContext::removeAttribute);
-                File path = new File(servletContext.getRealPath("/WEB-INF/data/anti-robot-archive/"));
+                LOG.info("archive last day anti-robot counter");
+                String date = LocalDate.now().minusDays(1).format(DATE_FORMATTER);
+                //换上新的统计后再归档，归档期间的访问计入新的一天
+                HeavyHitters<Client> traffic = TRAFFIC.getAndSet(newTraffic());
+                File path = new File(config.getServletContext().getRealPath("/WEB-INF/data/anti-robot-archive/"));
                 if (!path.exists()) {
                     path.mkdirs();
                 }
-                String file = path.getPath() + "/" + date + "__user_agent_invalid_count_" + invalidCount + ".txt";
-                Files.write(Paths.get(file),
-                        archive.entrySet()
-                                .stream()
-                                .map(e -> e.getKey().replace("anti-robot-", "").replace("-", "\t") + "\t" + e.getValue())
-                                .map(line -> {
-                                    String[] attrs = line.split("\\s+");
-                                    String location = "";
-                                    if (attrs != null && attrs.length > 1) {
-                                        String ip = attrs[1];
-                                        location = IPUtils.getIPLocation(ip).toString();
-                                    }
-                                    return line+"\t"+location;
-                                })
-                                .collect(Collectors.toList()));
-                invalidCount = 0;
-                LOG.info("clear last day anti-robot counter finished: " + file);
+                String file = path.getPath() + "/" + date + "__user_agent_invalid_count_" + invalidCount.getAndSet(0) + ".bin";
+                traffic.write(Paths.get(file), CLIENT_CODEC);
+                LOG.info("archive last day anti-robot counter finished: " + file + ", requests: " + traffic.getTotal());
             } catch (Exception e) {
                 LOG.error("save anti-robot-archive failed", e);
             }
         }, initialDelay, 24, TimeUnit.HOURS);
+        //每小时删除最近24小时没有访问的客户端
+        scheduledExecutorService.scheduleAtFixedRate(() -> {
+            int count = LIMITER.evictExpired();
+            LOG.info("evict expired anti-robot counter: " + count + ", remain: " + LIMITER.size() + ", evicted by capacity: " + LIMITER.getEvictions());
+        }, 1, 1, TimeUnit.HOURS);
     }
 
-    public static List<String> getData(){
-        Map<String, Integer> map = new HashMap<>();
-        Enumeration<String> keys = servletContext.getAttributeNames();
-        while(keys.hasMoreElements()){
-            String key = keys.nextElement();
-            if(key.startsWith("anti-robot-")){
-                map.put(key.substring(11), ((AtomicInteger) servletContext.getAttribute(key)).intValue());
-            }
+    private static HeavyHitters<Client> newTraffic(){
+        //误差不超过当天总访问次数的万分之二，监控访问最多的1000个客户端
+        return new HeavyHitters<>(1 << 14, 4, 1000);
+    }
+
+    /**
+     * 当天访问最多的客户端，按访问次数从多到少排列
+     */
+    public static List<HeavyHitters.Entry<Client>> getData(){
+        return TRAFFIC.get().top();
+    }
+
+    /**
+     * 当天的总访问次数
+     */
+    public static long getTotal(){
+        return TRAFFIC.get().getTotal();
+    }
+
+    /**
+     * 客户端最近24小时的访问次数
+     */
+    public static int getRecentCount(Client client){
+        return LIMITER.count(client);
+    }
+
+    /**
+     * 客户端：用户名、IP和User-Agent
+     */
+    public static final class Client {
+        private final String userName;
+        private final String ip;
+        private final String userAgent;
+        private final int hash;
+
+        public Client(String userName, String ip, String userAgent) {
+            this.userName = userName;
+            this.ip = ip;
+            this.userAgent = userAgent;
+            this.hash = Objects.hash(userName, ip, userAgent);
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getIp() {
+            return ip;
+        }
+
+        public String getUserAgent() {
+            return userAgent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Client)) return false;
+            Client client = (Client) o;
+            return hash == client.hash
+                    && Objects.equals(userName, client.userName)
+                    && Objects.equals(ip, client.ip)
+                    && Objects.equals(userAgent, client.userAgent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
-        return map
-                .entrySet()
-                .stream()
-                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                .map(e -> e.getKey() + "-" + e.getValue())
-                .collect(Collectors.toList());
     }
 
-    public static void main(String[] args) {
-        LocalDateTime timePoint = LocalDateTime.now().minusDays(1);
-        String date = SIMPLE_DATE_FORMAT.format(Date.from(timePoint.atZone(ZoneId.systemDefault()).toInstant()));
-        System.out.println(date);
+    public static final HeavyHitters.Codec<Client> CLIENT_CODEC = new HeavyHitters.Codec<Client>() {
+        @Override
+        public void write(DataOutput out, Client client) throws IOException {
+            writeString(out, client.getUserName());
+            writeString(out, client.getIp());
+            writeString(out, client.getUserAgent());
+        }
+
+        @Override
+        public Client read(DataInput in) throws IOException {
+            return new Client(readString(in), readString(in), readString(in));
+        }
+
+        private void writeString(DataOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if(value != null){
+                out.writeUTF(value.length() > 1000 ? value.substring(0, 1000) : value);
+            }
+        }
+
+        private String readString(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){
+            System.out.println(LocalDate.now().minusDays(1).format(DATE_FORMATTER));
+            return;
+        }
+        //查看归档文件
+        HeavyHitters<Client> traffic = HeavyHitters.read(Paths.get(args[0]), CLIENT_CODEC);
+        System.out.println("requests: " + traffic.getTotal());
+        AtomicInteger i = new AtomicInteger();
+        traffic.top(100).forEach(e -> System.out.println(i.incrementAndGet() + "\t" + e.getKey().getUserName() + "\t" + e.getKey().getIp()
+                + "\t" + e.getCount() + "\t" + e.getError() + "\t" + e.getKey().getUserAgent()));
     }
 }
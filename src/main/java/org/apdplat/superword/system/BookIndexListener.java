@@ -0,0 +1,43 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.system;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Web应用启动时在后台为所有书籍建立索引，上下文参数bookIndexPreload为false时只在用到时建立
+ * @author 杨尚川
+ */
+public class BookIndexListener implements ServletContextListener {
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext servletContext = event.getServletContext();
+        BookIndexManager manager = BookIndexManager.get(servletContext);
+        if(!"false".equals(servletContext.getInitParameter("bookIndexPreload"))){
+            manager.preload();
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        BookIndexManager.close(event.getServletContext());
+    }
+}
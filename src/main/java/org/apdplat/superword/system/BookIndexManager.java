@@ -0,0 +1,429 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.system;
+
+import org.apdplat.jsearch.index.TextIndexer;
+import org.apdplat.jsearch.score.WordFrequencyScore;
+import org.apdplat.jsearch.search.Hits;
+import org.apdplat.jsearch.search.SearchMode;
+import org.apdplat.jsearch.search.TextSearcher;
+import org.apdplat.superword.tools.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 书籍索引管理
+ * 书籍辅助阅读查看原文时需要书籍的全文索引，
+ * 索引保存在WEB-INF/data/index目录下，同时保存索引版本、书籍的校验和以及索引的校验和，
+ * 重启后校验通过的索引直接使用，不需要重建，校验结果在书籍文件的大小和修改时间变化之前一直有效，
+ * 同一本书同时只有一个线程在建索引，其他请求等待同一个结果，
+ * 打开的TextSearcher最多保留MAX_SEARCHERS个，最久没有使用的先移除丢弃，
+ * Web应用启动时由BookIndexListener在后台依次为清单中的所有书籍建立索引
+ * @author 杨尚川
+ */
+public class BookIndexManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookIndexManager.class);
+
+    //索引格式或参数变化时增加版本号，旧的索引会被重建
+    private static final int VERSION = 1;
+    private static final int INDEX_LENGTH_LIMIT = 1000;
+    private static final int MAX_SEARCHERS = 32;
+    private static final String ATTRIBUTE = BookIndexManager.class.getName();
+
+    private final ServletContext servletContext;
+    private final Set<String> books;
+    private final Map<String, CompletableFuture<Void>> building = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Searcher>> opening = new ConcurrentHashMap<>();
+    //被淘汰的搜索器，离开searchers的锁之后再关闭
+    private final List<Searcher> evicted = new ArrayList<>();
+    private final Map<String, Searcher> searchers = new LinkedHashMap<String, Searcher>(MAX_SEARCHERS, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Searcher> eldest) {
+            if(size() > MAX_SEARCHERS){
+                evicted.add(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    //校验通过时书籍和元数据文件的大小和修改时间
+    private final Map<String, String> validated = new ConcurrentHashMap<>();
+    private final ExecutorService executorService;
+    private volatile boolean closed = false;
+
+    private BookIndexManager(ServletContext servletContext){
+        this.servletContext = servletContext;
+        this.books = new LinkedHashSet<>(FileUtils.readResource("/it/manifest"));
+        AtomicInteger count = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "book-index-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param servletContext Web应用上下文
+     * @return Web应用的书籍索引管理器
+     */
+    public static BookIndexManager get(ServletContext servletContext){
+        synchronized (servletContext){
+            BookIndexManager manager = (BookIndexManager) servletContext.getAttribute(ATTRIBUTE);
+            if(manager == null){
+                manager = new BookIndexManager(servletContext);
+                servletContext.setAttribute(ATTRIBUTE, manager);
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * 在后台线程中依次为所有书籍建立索引，每次只占用一个建索引的线程，
+     * 另一个线程留给用户请求的书籍
+     */
+    public void preload(){
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            LOGGER.info("开始为" + books.size() + "本书建立索引");
+            for(String book : books){
+                if(closed){
+                    return;
+                }
+                try {
+                    build(book).join();
+                } catch (Exception e) {
+                    LOGGER.error("建立索引失败：" + book, e);
+                }
+            }
+            LOGGER.info("所有书籍的索引建立完毕，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        }, "book-index-preload");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @param book 书籍，如/it/movie/kungfupanda.txt
+     * @return 书籍是否在清单中，不在清单中的书籍不能建立索引
+     */
+    public boolean contains(String book){
+        return books.contains(book);
+    }
+
+    /**
+     * 在书籍中搜索单词，索引不存在或已过期时先建立索引
+     * @param book 清单中的书籍，如/it/movie/kungfupanda.txt
+     * @param word 单词
+     * @param pageSize 最多返回的结果数
+     * @param timeout 等待索引的最长时间
+     * @param unit 时间单位
+     * @return 搜索结果，书籍不在清单中（可以先用contains判断）或者超时返回null
+     */
+    public Hits search(String book, String word, int pageSize, long timeout, TimeUnit unit){
+        if(!books.contains(book)){
+            LOGGER.warn("书籍不在清单中：" + book);
+            return null;
+        }
+        try {
+            //拿到的搜索器刚好被淘汰关闭时重新打开一次
+            for(int i=0; i<2; i++){
+                Hits hits = open(book).get(timeout, unit).search(word, pageSize);
+                if(hits != null){
+                    return hits;
+                }
+            }
+        } catch (TimeoutException e) {
+            LOGGER.info("等待索引超时：" + book);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("打开索引失败：" + book, e.getCause());
+        }
+        return null;
+    }
+
+    private CompletableFuture<Searcher> open(String book){
+        synchronized (searchers){
+            Searcher searcher = searchers.get(book);
+            if(searcher != null){
+                return CompletableFuture.completedFuture(searcher);
+            }
+        }
+        CompletableFuture<Searcher> future = new CompletableFuture<>();
+        CompletableFuture<Searcher> existing = opening.putIfAbsent(book, future);
+        if(existing != null){
+            return existing;
+        }
+        build(book).whenComplete((v, e) -> {
+            try {
+                if(e != null){
+                    future.completeExceptionally(e);
+                    return;
+                }
+                Searcher searcher = new Searcher(new TextSearcher(indexPath(book), indexTextPath(book)));
+                List<Searcher> closing;
+                //先放入注册表再移除，其他请求总能找到二者之一
+                synchronized (searchers){
+                    searchers.put(book, searcher);
+                    closing = new ArrayList<>(evicted);
+                    evicted.clear();
+                }
+                closing.forEach(Searcher::close);
+                future.complete(searcher);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                opening.remove(book, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 同一本书同时只有一个建索引的任务
+     */
+    private CompletableFuture<Void> build(String book){
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = building.putIfAbsent(book, future);
+        if(existing != null){
+            return existing;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    if(!isValid(book)){
+                        index(book);
+                    }
+                    future.complete(null);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    building.remove(book, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(book, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void index(String book) throws IOException {
+        long start = System.currentTimeMillis();
+        String bookPath = bookPath(book);
+        String index = indexPath(book);
+        String indexText = indexTextPath(book);
+        LOGGER.info("建立索引：" + bookPath + "，索引：" + index + "，索引文本：" + indexText);
+        //先删除元数据，中途失败时不会把不完整的索引当作有效的
+        validated.remove(book);
+        Files.deleteIfExists(metaPath(book));
+        delete(Paths.get(index));
+        delete(Paths.get(indexText));
+        TextIndexer textIndexer = new TextIndexer(index, indexText, INDEX_LENGTH_LIMIT);
+        textIndexer.indexDir(bookPath);
+
+        Properties meta = new Properties();
+        meta.setProperty("version", String.valueOf(VERSION));
+        meta.setProperty("indexLengthLimit", String.valueOf(INDEX_LENGTH_LIMIT));
+        meta.setProperty("bookChecksum", String.valueOf(checksum(Paths.get(bookPath))));
+        meta.setProperty("indexChecksum", String.valueOf(checksum(Paths.get(index), Paths.get(indexText))));
+        Path metaPath = metaPath(book);
+        Files.createDirectories(metaPath.getParent());
+        Path temp = Paths.get(metaPath + ".tmp");
+        try(OutputStream out = Files.newOutputStream(temp)){
+            meta.store(out, book);
+        }
+        Files.move(temp, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        validated.put(book, signature(book));
+        LOGGER.info("建立索引完毕：" + book + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    /**
+     * 版本、参数、书籍和索引的校验和都一致时索引有效，
+     * 书籍和元数据文件没有变化时直接使用上一次的校验结果
+     */
+    private boolean isValid(String book){
+        Path metaPath = metaPath(book);
+        if(!Files.exists(metaPath)){
+            return false;
+        }
+        try(InputStream in = Files.newInputStream(metaPath)){
+            String signature = signature(book);
+            if(signature.equals(validated.get(book))){
+                return true;
+            }
+            Properties meta = new Properties();
+            meta.load(in);
+            boolean valid = String.valueOf(VERSION).equals(meta.getProperty("version"))
+                    && String.valueOf(INDEX_LENGTH_LIMIT).equals(meta.getProperty("indexLengthLimit"))
+                    && String.valueOf(checksum(Paths.get(bookPath(book)))).equals(meta.getProperty("bookChecksum"))
+                    && String.valueOf(checksum(Paths.get(indexPath(book)), Paths.get(indexTextPath(book)))).equals(meta.getProperty("indexChecksum"));
+            if(valid){
+                validated.put(book, signature);
+            }else{
+                validated.remove(book);
+            }
+            return valid;
+        } catch (Exception e) {
+            LOGGER.warn("读取索引元数据失败：" + metaPath, e);
+            return false;
+        }
+    }
+
+    /**
+     * 书籍的所有文件以及元数据文件的路径、大小和修改时间
+     */
+    private String signature(String book) throws IOException {
+        StringBuilder signature = new StringBuilder();
+        for(Path path : new Path[]{Paths.get(bookPath(book)), metaPath(book)}){
+            if(!Files.exists(path)){
+                continue;
+            }
+            List<Path> files;
+            try(Stream<Path> stream = Files.walk(path)){
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for(Path file : files){
+                signature.append(file).append(':')
+                        .append(Files.size(file)).append(':')
+                        .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * 按路径顺序计算所有文件内容的CRC32
+     */
+    private static long checksum(Path... paths) throws IOException {
+        CRC32 crc32 = new CRC32();
+        byte[] buffer = new byte[8192];
+        for(Path path : paths){
+            if(!Files.exists(path)){
+                continue;
+            }
+            List<Path> files;
+            try(Stream<Path> stream = Files.walk(path)){
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for(Path file : files){
+                crc32.update(path.relativize(file).toString().getBytes("utf-8"));
+                try(InputStream in = Files.newInputStream(file)){
+                    int length;
+                    while ((length = in.read(buffer)) != -1){
+                        crc32.update(buffer, 0, length);
+                    }
+                }
+            }
+        }
+        return crc32.getValue();
+    }
+
+    private static void delete(Path path) throws IOException {
+        if(!Files.exists(path)){
+            return;
+        }
+        try(Stream<Path> stream = Files.walk(path)){
+            for(Path p : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())){
+                Files.delete(p);
+            }
+        }
+    }
+
+    private String bookPath(String book){
+        return servletContext.getRealPath("/WEB-INF/classes" + book);
+    }
+
+    private String indexPath(String book){
+        return servletContext.getRealPath("/WEB-INF/data/index/" + book.replace("/", "_"));
+    }
+
+    private String indexTextPath(String book){
+        return servletContext.getRealPath("/WEB-INF/data/index_text/" + book.replace("/", "_"));
+    }
+
+    private Path metaPath(String book){
+        return Paths.get(servletContext.getRealPath("/WEB-INF/data/index/" + book.replace("/", "_") + ".meta"));
+    }
+
+    /**
+     * Web应用关闭时停止建索引
+     * @param servletContext Web应用上下文
+     */
+    public static void close(ServletContext servletContext){
+        Object manager = servletContext.getAttribute(ATTRIBUTE);
+        if(manager instanceof BookIndexManager){
+            ((BookIndexManager) manager).close();
+        }
+    }
+
+    private void close(){
+        closed = true;
+        executorService.shutdownNow();
+        List<Searcher> closing;
+        synchronized (searchers){
+            closing = new ArrayList<>(searchers.values());
+            closing.addAll(evicted);
+            searchers.clear();
+            evicted.clear();
+        }
+        closing.forEach(Searcher::close);
+    }
+
+    /**
+     * 共享的搜索器，设置参数和搜索不能和其他请求交叉进行，
+     * 关闭时等待正在进行的搜索结束
+     */
+    private static class Searcher {
+        private TextSearcher textSearcher;
+
+        private Searcher(TextSearcher textSearcher){
+            this.textSearcher = textSearcher;
+        }
+
+        /**
+         * @return 搜索结果，已经关闭时返回null
+         */
+        private synchronized Hits search(String word, int pageSize){
+            if(textSearcher == null){
+                return null;
+            }
+            textSearcher.setPageSize(pageSize);
+            textSearcher.setScore(new WordFrequencyScore());
+            return textSearcher.search(word, SearchMode.INTERSECTION);
+        }
+
+        /**
+         * TextSearcher没有关闭的方法，等正在进行的搜索结束后丢弃引用，由垃圾回收释放
+         */
+        private synchronized void close(){
+            textSearcher = null;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apdplat.superword.system;
 
 import org.apdplat.superword.model.User;
+import org.apdplat.superword.tools.MySQLUtils;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -31,6 +32,8 @@ import java.io.IOException;
  */
 public class HistoryFilter implements Filter {
     public void destroy() {
+        //应用停止时写完还在队列中的历史记录
+        MySQLUtils.shutdown();
     }
 
     public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain) throws ServletException, IOException {
@@ -18,12 +18,15 @@
 
 package org.apdplat.superword.system;
 
+import org.apdplat.superword.model.Word;
 import org.apdplat.superword.tools.MySQLUtils;
+import org.apdplat.superword.tools.PrefixIndex;
 import org.apdplat.superword.tools.WordLinker;
 import org.apdplat.superword.tools.WordLinker.Dictionary;
 import org.apdplat.superword.tools.WordSources;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * instant tip
@@ -35,6 +38,8 @@ public class InstantTip {
     private static final int RECORD_COUNT_LIMIT = 10;
 
     private static final Map<String, String> WORDS_TO_DEFINITION;
+    //常用词排在前面
+    private static final PrefixIndex PREFIX_INDEX;
 
     static {
         WORDS_TO_DEFINITION = MySQLUtils.getAllWordDefinitionMap(Dictionary.YOUDAO.name(), WordSources.getAll());
@@ -44,20 +49,16 @@ public class InstantTip {
             definition = definition.length() > DATA_MAX_LENGTH ? definition.substring(0, DATA_MAX_LENGTH) + "..." : definition;
             entry.setValue(definition);
         });
+        Set<Word> top = WordSources.get("/word_top1000.txt");
+        PREFIX_INDEX = new PrefixIndex(WORDS_TO_DEFINITION.keySet(), word -> top.contains(new Word(word, "")) ? 0 : 1, RECORD_COUNT_LIMIT);
     }
 
     public static String getWordsByPrefix(String prefix){
         prefix = prefix.toLowerCase().replaceAll("\\s+", "");
         StringBuilder html= new StringBuilder();
         html.append("<ol>\n");
-        int i=0;
-        for(String word : WORDS_TO_DEFINITION.keySet()){
-            if(word.toLowerCase().startsWith(prefix)){
-                html.append("<li>").append(WordLinker.toLink(word)).append("  ").append(WORDS_TO_DEFINITION.get(word)).append("</li>\n");
-                if((++i) >= RECORD_COUNT_LIMIT){
-                    break;
-                }
-            }
+        for(String word : PREFIX_INDEX.top(prefix, RECORD_COUNT_LIMIT)){
+            html.append("<li>").append(WordLinker.toLink(word)).append("  ").append(WORDS_TO_DEFINITION.get(word)).append("</li>\n");
         }
         html.append("</ol>\n");
         return html.toString();
@@ -19,18 +19,45 @@
 package org.apdplat.superword.system;
 
 import org.apdplat.superword.model.Word;
+import org.apdplat.superword.rule.CharTransformIndex;
+import org.apdplat.superword.rule.CharTransformRule;
+import org.apdplat.superword.rule.CompoundWord;
+import org.apdplat.superword.rule.EditDistanceIndex;
+import org.apdplat.superword.rule.SuffixIndex;
+import org.apdplat.superword.rule.WordPrefixIndex;
+import org.apdplat.superword.tools.DictionaryStore;
 import org.apdplat.superword.tools.WordSources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
 
 /**
  * 分级词汇过滤器
+ * 只接受ALL、SYLLABUS和类路径中存在的/word_*.txt词汇表，其他值当作ALL，
+ * 词汇表和它的各个索引分别在第一次使用时构建，每个只构建一次，
+ * 不同词汇表、不同索引的构建互不阻塞，同一个对象的并发请求等待同一个结果
  * Created by ysc on 11/29/15.
  */
 public class WordsFilter implements Filter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WordsFilter.class);
+
+    private static final Pattern WORDS_TYPE = Pattern.compile("[A-Za-z0-9_]+");
+    private static final String RESOURCES = WordsFilter.class.getName() + ".resources";
+    private static final String COMPOUND_PATH = WordsFilter.class.getName() + ".compoundPath";
+
     public void destroy() {
     }
 
@@ -42,30 +69,154 @@ public class WordsFilter implements Filter {
             words_type = "ALL";
         }
         words_type = words_type.trim();
+        if (!isKnown(words_type)) {
+            LOGGER.warn("unknown words_type: " + words_type);
+            words_type = "ALL";
+        }
         request.setAttribute("words_type", words_type);
-        String key = "words_" + words_type;
-        Set<Word> words = (Set<Word>) request.getServletContext().getAttribute(key);
-        if (words == null) {
-            synchronized (this){
-                if (words == null) {
-                    if ("ALL".equals(words_type)) {
-                        words = WordSources.getAll();
-                    } else if ("SYLLABUS".equals(words_type)) {
-                        words = WordSources.getSyllabusVocabulary();
-                    } else {
-                        String resource = "/word_" + words_type + ".txt";
-                        words = WordSources.get(resource);
-                    }
-                    request.getServletContext().setAttribute(key, words);
-                }
+        //只准备词汇表本身，索引由用到它的页面按需获取
+        getWords(request.getServletContext(), words_type);
+
+        chain.doFilter(req, resp);
+    }
+
+    /**
+     * @return 是否是ALL、SYLLABUS或者类路径中存在的/word_*.txt词汇表
+     */
+    public static boolean isKnown(String wordsType) {
+        if (wordsType == null || !WORDS_TYPE.matcher(wordsType).matches()) {
+            return false;
+        }
+        return "ALL".equals(wordsType)
+                || "SYLLABUS".equals(wordsType)
+                || WordsFilter.class.getResource("/word_" + wordsType + ".txt") != null;
+    }
+
+    /**
+     * 词汇表，同时以words_+词汇表名称保存在Web应用上下文中
+     */
+    public static Set<Word> getWords(ServletContext context, String wordsType) {
+        return get(context, "words_", wordsType, () -> {
+            Set<Word> words;
+            if ("ALL".equals(wordsType)) {
+                words = WordSources.getAll();
+            } else if ("SYLLABUS".equals(wordsType)) {
+                words = WordSources.getSyllabusVocabulary();
+            } else {
+                words = WordSources.get("/word_" + wordsType + ".txt");
+            }
+            context.setAttribute("words_" + wordsType, words);
+            return words;
+        });
+    }
+
+    /**
+     * 拼写相似词索引
+     */
+    public static EditDistanceIndex getEditDistanceIndex(ServletContext context, String wordsType) {
+        return get(context, "edit_distance_index_", wordsType, () -> new EditDistanceIndex(getWords(context, wordsType)));
+    }
+
+    /**
+     * 字符转换规则索引
+     */
+    public static CharTransformIndex getCharTransformIndex(ServletContext context, String wordsType) {
+        return get(context, "char_transform_index_", wordsType, () -> CharTransformRule.index(getWords(context, wordsType)));
+    }
+
+    public static WordPrefixIndex getPrefixIndex(ServletContext context, String wordsType) {
+        return get(context, "prefix_index_", wordsType, () -> new WordPrefixIndex(getWords(context, wordsType)));
+    }
+
+    public static SuffixIndex getSuffixIndex(ServletContext context, String wordsType) {
+        return get(context, "suffix_index_", wordsType, () -> new SuffixIndex(getWords(context, wordsType)));
+    }
+
+    /**
+     * 复合词，优先读取快照文件
+     */
+    public static Map<Word, Map<Integer, List<Word>>> getCompound(ServletContext context, String wordsType) {
+        return get(context, "compound_", wordsType, () -> {
+            Path dir = ((Path) context.getAttribute(COMPOUND_PATH));
+            if (dir == null) {
+                dir = Paths.get("target/compound-word");
+            }
+            dir = dir.toAbsolutePath().normalize();
+            Path snapshot = dir.resolve("compound_" + wordsType + ".bin").normalize();
+            if (!snapshot.startsWith(dir)) {
+                throw new IllegalArgumentException("invalid words_type: " + wordsType);
+            }
+            return CompoundWord.find(getWords(context, wordsType), snapshot);
+        });
+    }
+
+    /**
+     * 同一个键只构建一次，构建失败时移除，下一次请求重新构建
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T get(ServletContext context, String prefix, String wordsType, Callable<T> loader) {
+        if (!isKnown(wordsType)) {
+            throw new IllegalArgumentException("unknown words_type: " + wordsType);
+        }
+        String key = prefix + wordsType;
+        Map<String, FutureTask<Object>> resources = resources(context);
+        FutureTask<Object> task = resources.get(key);
+        if (task == null) {
+            FutureTask<Object> created = new FutureTask<>(loader::call);
+            task = resources.putIfAbsent(key, created);
+            if (task == null) {
+                task = created;
+                task.run();
             }
         }
+        try {
+            return (T) task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while preparing " + key, e);
+        } catch (ExecutionException e) {
+            resources.remove(key, task);
+            throw new IllegalStateException("failed to prepare " + key, e.getCause());
+        }
+    }
 
-        chain.doFilter(req, resp);
+    @SuppressWarnings("unchecked")
+    private static Map<String, FutureTask<Object>> resources(ServletContext context) {
+        synchronized (context) {
+            Map<String, FutureTask<Object>> resources = (Map<String, FutureTask<Object>>) context.getAttribute(RESOURCES);
+            if (resources == null) {
+                resources = new ConcurrentHashMap<>();
+                context.setAttribute(RESOURCES, resources);
+            }
+            return resources;
+        }
     }
 
     public void init(FilterConfig config) throws ServletException {
-
+        ServletContext context = config.getServletContext();
+        String path = context.getRealPath("/WEB-INF/data/dictionary-store/");
+        if (path != null) {
+            DictionaryStore.setSnapshotPath(path);
+        }
+        path = context.getRealPath("/WEB-INF/data/compound-word/");
+        if (path != null) {
+            context.setAttribute(COMPOUND_PATH, Paths.get(path));
+        }
+        //启动时在后台准备默认的词汇表，第一个请求不用等待，索引在词汇表之后依次构建
+        Thread thread = new Thread(() -> {
+            try {
+                getWords(context, "ALL");
+                getEditDistanceIndex(context, "ALL");
+                getCharTransformIndex(context, "ALL");
+                getPrefixIndex(context, "ALL");
+                getSuffixIndex(context, "ALL");
+                getCompound(context, "ALL");
+            } catch (Exception e) {
+                LOGGER.error("prepare words failed", e);
+            }
+        }, "words-filter-prepare");
+        thread.setDaemon(true);
+        thread.start();
     }
 
 }
@@ -23,10 +23,19 @@ import org.apdplat.superword.tools.WordLinker.Dictionary;
 import org.apdplat.word.WordSegmenter;
 import org.apdplat.word.segmentation.SegmentationAlgorithm;
 
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collector;
 
 /**
  * 辅助阅读:
@@ -36,6 +45,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Created by ysc on 11/15/15.
  */
 public class AidReading {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AidReading.class);
+
+    //去掉带撇号的缩写，如I'm、don`t、it’s，预先编译，不需要每一行都编译一次
+    private static final Pattern[] ABBREVIATIONS = {
+            Pattern.compile("[^a-zA-Z0-9]*[a-zA-Z0-9]+'[a-zA-Z0-9]+[^a-zA-Z0-9]*"),
+            Pattern.compile("[^a-zA-Z0-9]*[a-zA-Z0-9]+`[a-zA-Z0-9]+[^a-zA-Z0-9]*"),
+            Pattern.compile("[^a-zA-Z0-9]*[a-zA-Z0-9]+’[a-zA-Z0-9]+[^a-zA-Z0-9]*")
+    };
+
     public static void main(String[] args) throws IOException {
         WordLinker.serverRedirect = null;
 
@@ -61,12 +79,27 @@ public class AidReading {
     public static String analyse(Set<Word> words, int column, boolean searchOriginalText, String book, String... resources) {
         return analyse(words, Dictionary.ICIBA, column, searchOriginalText, book, resources);
     }
+    /**
+     * 逐个读取资源文件，边读边并行统计，内存中只有正在处理的若干批文本，不会一次读入整本书
+     */
     public static String analyse(Set<Word> words, Dictionary dictionary, int column, boolean searchOriginalText, String book, String... resources) {
-        List<String> text = new ArrayList<>();
+        if(words==null){
+            return "";
+        }
+        WordCounter counter = new WordCounter();
         for(String resource : resources) {
-            text.addAll(FileUtils.readResource(resource));
+            InputStream stream = AidReading.class.getResourceAsStream(resource);
+            if(stream == null){
+                LOGGER.error("资源不存在：" + resource);
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                counter = counter.merge(ZipProcessor.getDefault().lines(reader, counter()));
+            } catch (IOException e) {
+                LOGGER.error("读取资源出错：" + resource, e);
+            }
         }
-        return analyse(words, dictionary, column, searchOriginalText, book, text);
+        return analyse(words, dictionary, column, searchOriginalText, book, counter);
     }
     public static String analyse(Set<Word> words, int column, boolean searchOriginalText, String book, List<String> text) {
         return analyse(words, Dictionary.ICIBA, column, searchOriginalText, book, text);
@@ -75,41 +108,55 @@ public class AidReading {
         if(words==null){
             return "";
         }
-        Set<String> wordSet = new HashSet<>();
-        words.stream().filter(word -> word.getWord()!=null).forEach(word -> wordSet.add(word.getWord().toLowerCase()));
-        StringBuilder result = new StringBuilder();
-        Map<String, AtomicInteger> map = new ConcurrentHashMap<>();
-
-        text.forEach(line -> {
-            StringBuilder buffer = new StringBuilder();
-            line = line.replaceAll("[^a-zA-Z0-9]*[a-zA-Z0-9]+'[a-zA-Z0-9]+[^a-zA-Z0-9]*", " ")
-                       .replaceAll("[^a-zA-Z0-9]*[a-zA-Z0-9]+`[a-zA-Z0-9]+[^a-zA-Z0-9]*", " ")
-                       .replaceAll("[^a-zA-Z0-9]*[a-zA-Z0-9]+’[a-zA-Z0-9]+[^a-zA-Z0-9]*", " ");
-            for (org.apdplat.word.segmentation.Word term : WordSegmenter.seg(line, SegmentationAlgorithm.PureEnglish)) {
-                String word = term.getText();
-
-                if (word.contains("'")) {
-                    continue;
-                }
-                buffer.setLength(0);
-                for (char c : word.toCharArray()) {
-                    if (Character.isAlphabetic(c)) {
-                        buffer.append(Character.toLowerCase(c));
+        return analyse(words, dictionary, column, searchOriginalText, book, ZipProcessor.getDefault().lines(text, counter()));
+    }
+
+    /**
+     * 每个线程用自己的计数器统计，最后合并
+     */
+    private static Collector<String, WordCounter, WordCounter> counter(){
+        return Collector.of(WordCounter::new,
+                (counter, line) -> {
+                    if(StringUtils.isNotBlank(line)){
+                        count(line.trim(), counter);
                     }
+                },
+                WordCounter::merge);
+    }
+
+    /**
+     * 规范化、分词、还原不规则变化并计数
+     */
+    private static void count(String line, WordCounter counter){
+        for(Pattern pattern : ABBREVIATIONS){
+            line = pattern.matcher(line).replaceAll(" ");
+        }
+        StringBuilder buffer = new StringBuilder();
+        for (org.apdplat.word.segmentation.Word term : WordSegmenter.seg(line, SegmentationAlgorithm.PureEnglish)) {
+            String word = term.getText();
+
+            if (word.contains("'")) {
+                continue;
+            }
+            buffer.setLength(0);
+            for (char c : word.toCharArray()) {
+                if (Character.isAlphabetic(c)) {
+                    buffer.append(Character.toLowerCase(c));
                 }
-                String baseForm = IrregularVerbs.getBaseForm(buffer.toString());
-                buffer.setLength(0);
-                buffer.append(baseForm);
-                String singular = IrregularPlurals.getSingular(buffer.toString());
-                buffer.setLength(0);
-                buffer.append(singular);
-                if (buffer.length() < 2 || buffer.length() > 14) {
-                    continue;
-                }
-                map.putIfAbsent(buffer.toString(), new AtomicInteger());
-                map.get(buffer.toString()).incrementAndGet();
             }
-        });
+            String lemma = LemmaIndex.irregular(buffer.toString());
+            if (lemma.length() < 2 || lemma.length() > 14) {
+                continue;
+            }
+            counter.increment(lemma);
+        }
+    }
+
+    private static String analyse(Set<Word> words, Dictionary dictionary, int column, boolean searchOriginalText, String book, WordCounter counter) {
+        //小写的词汇表及其屈折变化索引，同一个词汇表只建立一次
+        LemmaIndex lemmaIndex = LemmaIndex.getLowerCase(words);
+        StringBuilder result = new StringBuilder();
+        Map<String, AtomicInteger> map = counter.toMap();
 
         List<String> list = new ArrayList<>();
 
@@ -121,70 +168,13 @@ public class AidReading {
             if(w.length() < 3){
                 return;
             }
-            if (wordSet.contains(w)) {
+            if (lemmaIndex.contains(w)) {
                 map2.put(w, v);
                 return;
             }
             StringBuilder str = new StringBuilder(w);
-            if (w.endsWith("ly") && wordSet.contains(w.substring(0, w.length() - 2))) {
-                str.append("_"+w.substring(0, w.length() - 2));
-            }
-            if (w.endsWith("s") && wordSet.contains(w.substring(0, w.length() - 1))) {
-                str.append("_"+w.substring(0, w.length() - 1));
-            }
-            if (w.endsWith("es") && wordSet.contains(w.substring(0, w.length() - 2))) {
-                str.append("_"+w.substring(0, w.length() - 2));
-            }
-            if (w.endsWith("ies") && wordSet.contains(w.substring(0, w.length() - 3)+"y")) {
-                str.append("_"+w.substring(0, w.length() - 3)+"y");
-            }
-            if (w.endsWith("ed") && wordSet.contains(w.substring(0, w.length() - 1))) {
-                str.append("_"+w.substring(0, w.length() - 1));
-            }
-            if (w.endsWith("ed") && wordSet.contains(w.substring(0, w.length() - 2))) {
-                str.append("_"+w.substring(0, w.length() - 2));
-            }
-            if (w.endsWith("ed") && w.length()>5 && wordSet.contains(w.substring(0, w.length() - 3)) && (w.charAt(w.length()-3)==w.charAt(w.length()-4))) {
-                str.append("_"+w.substring(0, w.length() - 3));
-            }
-            if (w.endsWith("ied") && wordSet.contains(w.substring(0, w.length() - 3)+"y")) {
-                str.append("_"+w.substring(0, w.length() - 3)+"y");
-            }
-            if (w.endsWith("ing") && wordSet.contains(w.substring(0, w.length() - 3)+"e")) {
-                str.append("_"+w.substring(0, w.length() - 3)+"e");
-            }
-            if (w.endsWith("ing") && w.length()>6 && wordSet.contains(w.substring(0, w.length() - 4)) && (w.charAt(w.length()-4)==w.charAt(w.length()-5))) {
-                str.append("_"+w.substring(0, w.length() - 4));
-            }
-            if (w.endsWith("ing") && wordSet.contains(w.substring(0, w.length() - 3))) {
-                str.append("_"+w.substring(0, w.length() - 3));
-            }
-            if (w.endsWith("er") && wordSet.contains(w.substring(0, w.length() - 1))) {
-                str.append("_"+w.substring(0, w.length() - 1));
-            }
-            if (w.endsWith("er") && wordSet.contains(w.substring(0, w.length() - 2))) {
-                str.append("_"+w.substring(0, w.length() - 2));
-            }
-            if (w.endsWith("er") && w.length()>5 && wordSet.contains(w.substring(0, w.length() - 3)) && (w.charAt(w.length()-3)==w.charAt(w.length()-4))) {
-                str.append("_"+w.substring(0, w.length() - 3));
-            }
-            if (w.endsWith("est") && wordSet.contains(w.substring(0, w.length() - 2))) {
-                str.append("_"+w.substring(0, w.length() - 2));
-            }
-            if (w.endsWith("est") && wordSet.contains(w.substring(0, w.length() - 3))) {
-                str.append("_"+w.substring(0, w.length() - 3));
-            }
-            if (w.endsWith("est") && w.length()>6 && wordSet.contains(w.substring(0, w.length() - 4)) && (w.charAt(w.length()-4)==w.charAt(w.length()-5))) {
-                str.append("_"+w.substring(0, w.length() - 4));
-            }
-            if (w.endsWith("ier") && wordSet.contains(w.substring(0, w.length() - 3)+"y")) {
-                str.append("_"+w.substring(0, w.length() - 3)+"y");
-            }
-            if (w.endsWith("iest") && wordSet.contains(w.substring(0, w.length() - 4)+"y")) {
-                str.append("_"+w.substring(0, w.length() - 4)+"y");
-            }
-            if (w.endsWith("ves") && wordSet.contains(w.substring(0, w.length() - 3)+"f")) {
-                str.append("_"+w.substring(0, w.length() - 3)+"f");
+            for (String lemma : lemmaIndex.lemmas(w)) {
+                str.append("_").append(lemma);
             }
             if(str.length() > w.length()){
                 map2.put(str.toString(), v);
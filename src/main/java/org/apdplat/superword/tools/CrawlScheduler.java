@@ -0,0 +1,494 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 抓取调度器
+ * 用固定数目的专用线程抓取网页，不占用公共的ForkJoinPool，
+ * 每个域名一个令牌桶限制请求速率，
+ * 抓取失败的任务按指数退避的延迟放回队列重试，
+ * 网页显示IP被封锁时，只由最先发现的线程更换一次IP，其他线程暂停等待更换完成，
+ * 已完成的任务在检查点时追加到前沿文件中，程序崩溃后重新运行会跳过这些任务
+ * @author 杨尚川
+ */
+public class CrawlScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrawlScheduler.class);
+
+    /**
+     * 抓取一个任务对应的网页
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        String fetch(String key) throws Exception;
+    }
+
+    /**
+     * 处理抓取到的网页
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(String key, String page) throws Exception;
+    }
+
+    /**
+     * 检查点时保存处理结果
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+        /**
+         * @return 是否保存成功，失败时不把任务记入前沿文件，下一次检查点再保存
+         */
+        boolean save() throws Exception;
+    }
+
+    private final String name;
+    private final int threads;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private double defaultPermitsPerSecond = 5;
+    private int defaultBurst = 5;
+    private int maxRetries = 3;
+    private long baseDelay = 1000;
+    private long maxDelay = 60000;
+    private Predicate<String> blocked = StringUtils::isBlank;
+    private Runnable ipRotator;
+    private Consumer<String> failureHandler = key -> {};
+    private Frontier frontier;
+    private int checkpointEvery = 1000;
+    private Checkpoint checkpointAction = () -> true;
+
+    //更换IP的协调
+    private final Lock rotateLock = new ReentrantLock();
+    private final Condition rotated = rotateLock.newCondition();
+    private volatile boolean rotating = false;
+    private volatile int generation = 0;
+
+    //处理网页时持有读锁，检查点持有写锁，保证检查点看到的是一致的状态
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    public CrawlScheduler(String name, int threads){
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * 域名的请求速率
+     * @param domain 域名
+     * @param permitsPerSecond 每秒请求数
+     * @param burst 允许的突发请求数
+     */
+    public CrawlScheduler rateLimit(String domain, double permitsPerSecond, int burst){
+        buckets.put(domain, new TokenBucket(permitsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * 没有单独设置的域名使用的请求速率
+     */
+    public CrawlScheduler defaultRateLimit(double permitsPerSecond, int burst){
+        this.defaultPermitsPerSecond = permitsPerSecond;
+        this.defaultBurst = burst;
+        return this;
+    }
+
+    /**
+     * @param maxRetries 最多重试次数
+     * @param baseDelay 第一次重试的延迟毫秒数，之后每次加倍
+     * @param maxDelay 最大延迟毫秒数
+     */
+    public CrawlScheduler retry(int maxRetries, long baseDelay, long maxDelay){
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * @param blocked 判断网页是否表示IP被封锁，默认空网页表示被封锁
+     * @param ipRotator 更换IP，为null时只重试不更换IP
+     */
+    public CrawlScheduler ipRotation(Predicate<String> blocked, Runnable ipRotator){
+        this.blocked = blocked;
+        this.ipRotator = ipRotator;
+        return this;
+    }
+
+    /**
+     * @param failureHandler 重试次数用完仍然失败的任务
+     */
+    public CrawlScheduler onFailure(Consumer<String> failureHandler){
+        this.failureHandler = failureHandler;
+        return this;
+    }
+
+    /**
+     * 持久化的抓取前沿，重新运行时跳过已完成的任务
+     * @param dir 保存前沿文件的目录
+     */
+    public CrawlScheduler frontier(Path dir){
+        this.frontier = new Frontier(dir.resolve(name + ".done"), dir.resolve(name + ".failed"));
+        return this;
+    }
+
+    /**
+     * 每完成every个任务执行一次检查点，
+     * 先执行action保存处理结果，保存成功后再把这些任务记入前沿文件，全部完成后再执行一次
+     */
+    public CrawlScheduler checkpoint(int every, Checkpoint action){
+        this.checkpointEvery = every;
+        this.checkpointAction = action;
+        return this;
+    }
+
+    public Map<String, Integer> crawl(Collection<String> keys, Fetcher fetcher, Handler handler){
+        return crawl(keys, key -> "", fetcher, handler);
+    }
+
+    /**
+     * 抓取所有任务，全部完成或失败后返回
+     * @param keys 任务，如单词或网址
+     * @param domainOf 任务所属的域名，用于限速
+     * @param fetcher 抓取网页
+     * @param handler 处理网页
+     * @return 完成、失败、跳过和重试的任务数
+     */
+    public Map<String, Integer> crawl(Collection<String> keys, Function<String, String> domainOf, Fetcher fetcher, Handler handler){
+        long start = System.currentTimeMillis();
+        DelayQueue<Task> queue = new DelayQueue<>();
+        AtomicInteger skipped = new AtomicInteger();
+        for(String key : new LinkedHashSet<>(keys)){
+            if(frontier != null && frontier.isDone(key)){
+                skipped.incrementAndGet();
+            }else{
+                queue.add(new Task(key, 0, 0));
+            }
+        }
+        int total = queue.size();
+        LOGGER.info(name + " 待抓取任务数：" + total + "，已完成跳过：" + skipped.get());
+        CountDownLatch remaining = new CountDownLatch(total);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger retried = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "crawl-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for(int i=0; i<threads; i++){
+            workers.execute(() -> {
+                while (remaining.getCount() > 0){
+                    Task task;
+                    try {
+                        task = queue.poll(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if(task == null){
+                        continue;
+                    }
+                    String key = task.key;
+                    try {
+                        awaitRotation();
+                        int seen = generation;
+                        buckets.computeIfAbsent(domainOf.apply(key), d -> new TokenBucket(defaultPermitsPerSecond, defaultBurst)).acquire();
+                        String page = fetcher.fetch(key);
+                        if(page == null || blocked.test(page) || StringUtils.isBlank(page)){
+                            if(page != null && blocked.test(page)){
+                                rotate(seen);
+                            }
+                            throw new IOException("抓取失败或IP被封锁：" + key);
+                        }
+                        checkpointLock.readLock().lock();
+                        try {
+                            handler.handle(key, page);
+                            if(frontier != null){
+                                frontier.complete(key);
+                            }
+                        } finally {
+                            checkpointLock.readLock().unlock();
+                        }
+                        int done = completed.incrementAndGet();
+                        remaining.countDown();
+                        if(done % 100 == 0){
+                            LOGGER.info(name + " 进度：" + (done + failed.get()) + "/" + total + "，重试：" + retried.get());
+                        }
+                        if(done % checkpointEvery == 0){
+                            checkpoint();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Throwable e) {
+                        //包括Error，工作线程不能退出，否则任务计数永远不会归零
+                        if(task.attempt < maxRetries){
+                            long delay = backoff(task.attempt + 1);
+                            LOGGER.debug(name + " " + delay + " 毫秒后第 " + (task.attempt + 1) + " 次重试：" + key, e);
+                            retried.incrementAndGet();
+                            queue.add(new Task(key, task.attempt + 1, delay));
+                        }else{
+                            LOGGER.error(name + " 重试 " + maxRetries + " 次后仍然失败：" + key, e);
+                            failed.incrementAndGet();
+                            if(frontier != null){
+                                frontier.fail(key);
+                            }
+                            try {
+                                failureHandler.accept(key);
+                            } catch (Throwable ex) {
+                                LOGGER.error(name + " 处理失败任务出错：" + key, ex);
+                            }
+                            remaining.countDown();
+                        }
+                    }
+                }
+            });
+        }
+        try {
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn(name + " 等待抓取完成被中断");
+        } finally {
+            workers.shutdownNow();
+        }
+        checkpoint();
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("completed", completed.get());
+        result.put("failed", failed.get());
+        result.put("skipped", skipped.get());
+        result.put("retried", retried.get());
+        LOGGER.info(name + " 抓取结束：" + result + "，耗时：" + TimeUtils.getTimeDes(System.currentTimeMillis() - start));
+        return result;
+    }
+
+    /**
+     * 带随机抖动的指数退避，避免所有失败的任务同时重试
+     */
+    private long backoff(int attempt){
+        long delay = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void awaitRotation() throws InterruptedException {
+        if(!rotating){
+            return;
+        }
+        rotateLock.lock();
+        try {
+            while (rotating){
+                rotated.await();
+            }
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+
+    /**
+     * 只有在抓取开始之后还没有其他线程更换过IP时才更换，
+     * 同一次封锁只更换一次IP，其他线程等待更换完成
+     * @param seen 抓取开始时的IP代数
+     */
+    private void rotate(int seen){
+        if(ipRotator == null){
+            return;
+        }
+        rotateLock.lock();
+        try {
+            if(generation != seen || rotating){
+                return;
+            }
+            rotating = true;
+        } finally {
+            rotateLock.unlock();
+        }
+        try {
+            LOGGER.info(name + " IP被封锁，更换IP");
+            ipRotator.run();
+        } catch (Exception e) {
+            LOGGER.error(name + " 更换IP失败", e);
+        } finally {
+            rotateLock.lock();
+            try {
+                generation++;
+                rotating = false;
+                rotated.signalAll();
+            } finally {
+                rotateLock.unlock();
+            }
+        }
+    }
+
+    private void checkpoint(){
+        checkpointLock.writeLock().lock();
+        try {
+            if(!checkpointAction.save()){
+                LOGGER.error(name + " 检查点保存失败，不记录进度");
+                return;
+            }
+            if(frontier != null){
+                frontier.flush();
+            }
+        } catch (Throwable e) {
+            LOGGER.error(name + " 检查点出错", e);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    private static class Task implements Delayed {
+        private final String key;
+        private final int attempt;
+        private final long readyAt;
+
+        private Task(String key, int attempt, long delay) {
+            this.key = key;
+            this.attempt = attempt;
+            this.readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(readyAt, ((Task) o).readyAt);
+        }
+    }
+
+    /**
+     * 令牌桶，令牌不足时预支并等待到令牌补足的时刻
+     */
+    private static class TokenBucket {
+        private final double permitsPerMillis;
+        private final double capacity;
+        private double tokens;
+        private long last = System.currentTimeMillis();
+
+        private TokenBucket(double permitsPerSecond, int burst) {
+            this.permitsPerMillis = permitsPerSecond / 1000;
+            this.capacity = Math.max(1, burst);
+            this.tokens = this.capacity;
+        }
+
+        private synchronized long reserve(){
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - last) * permitsPerMillis);
+            last = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerMillis);
+        }
+
+        private void acquire() throws InterruptedException {
+            long wait = reserve();
+            if(wait > 0){
+                Thread.sleep(wait);
+            }
+        }
+    }
+
+    /**
+     * 持久化的抓取前沿，完成的任务在检查点时追加到文件
+     */
+    private static class Frontier {
+        private final Path doneFile;
+        private final Path failedFile;
+        private final Set<String> done = ConcurrentHashMap.newKeySet();
+        private final List<String> pending = new ArrayList<>();
+
+        private Frontier(Path doneFile, Path failedFile) {
+            this.doneFile = doneFile;
+            this.failedFile = failedFile;
+            if(Files.exists(doneFile)){
+                try {
+                    done.addAll(Files.readAllLines(doneFile, StandardCharsets.UTF_8));
+                    LOGGER.info("从前沿文件恢复已完成的任务数：" + done.size() + "，" + doneFile);
+                } catch (IOException e) {
+                    LOGGER.error("读取前沿文件失败：" + doneFile, e);
+                }
+            }
+        }
+
+        private boolean isDone(String key){
+            return done.contains(key);
+        }
+
+        private synchronized void complete(String key){
+            pending.add(key);
+        }
+
+        private synchronized void fail(String key){
+            append(failedFile, Collections.singletonList(key));
+        }
+
+        private synchronized void flush(){
+            if(pending.isEmpty()){
+                return;
+            }
+            if(append(doneFile, pending)){
+                done.addAll(pending);
+                pending.clear();
+            }
+        }
+
+        private static boolean append(Path file, List<String> lines){
+            try {
+                if(file.getParent() != null){
+                    Files.createDirectories(file.getParent());
+                }
+                try(BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)){
+                    for(String line : lines){
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                LOGGER.error("写入前沿文件失败：" + file, e);
+            }
+            return false;
+        }
+    }
+}
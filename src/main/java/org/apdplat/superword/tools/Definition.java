@@ -20,7 +20,6 @@ package org.apdplat.superword.tools;
 
 import org.apache.commons.lang.StringUtils;
 import org.apdplat.superword.tools.WordLinker.Dictionary;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -30,8 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by ysc on 12/2/15.
@@ -54,10 +53,14 @@ public class Definition {
     private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
     private static final String ENCODING = "gzip, deflate";
     private static final String LANGUAGE = "zh-cn,zh;q=0.8,en-us;q=0.5,en;q=0.3";
-    private static final String CONNECTION = "keep-alive";
-    private static final String HOST = "www.iciba.com";
     private static final String REFERER = "http://www.iciba.com/";
     private static final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.10; rv:36.0) Gecko/20100101 Firefox/36.0";
+    private static final Map<String, String> HEADERS = HttpFetcher.headers(
+            "Accept", ACCEPT,
+            "Accept-Encoding", ENCODING,
+            "Accept-Language", LANGUAGE,
+            "Referer", REFERER,
+            "User-Agent", USER_AGENT);
 
     public static String getDefinitionString(Dictionary dictionary, String word, String joinString) {
         return concat(getDefinition(dictionary, word), joinString);
@@ -237,50 +240,44 @@ public class Definition {
 
     public static String getContent(String url) {
         long start = System.currentTimeMillis();
-        String html = _getContent(url, 1000);
+        String html = getContentAsync(url).join();
         LOGGER.info("获取定义耗时: {}", TimeUtils.getTimeDes(System.currentTimeMillis()-start));
-        int times = 0;
-        while(StringUtils.isNotBlank(html) && html.contains("非常抱歉，来自您ip的请求异常频繁")){
-            //使用新的IP地址
-            ProxyIp.toNewIp();
-            html = _getContent(url);
-            if(++times > 2){
-                break;
-            }
-        }
         return html;
     }
 
-    private static String _getContent(String url, int timeout) {
-        Future<String> future = ThreadPool.EXECUTOR_SERVICE.submit(()->_getContent(url));
-        try {
-            Thread.sleep(timeout);
-            return future.get(1, TimeUnit.NANOSECONDS);
-        } catch (Throwable e) {
-            LOGGER.error("获取网页异常", e);
-        }
-        return "";
+    /**
+     * 异步获取网页，网页内容到达后立即完成，IP被封锁时更换IP后重试，最多重试3次
+     * @param url 网址
+     * @return 网页，出错时为空字符串
+     */
+    public static CompletableFuture<String> getContentAsync(String url) {
+        return getContentAsync(url, 0);
     }
 
-    private static String _getContent(String url) {
-        Connection conn = Jsoup.connect(url)
-                .header("Accept", ACCEPT)
-                .header("Accept-Encoding", ENCODING)
-                .header("Accept-Language", LANGUAGE)
-                .header("Connection", CONNECTION)
-                .header("Referer", REFERER)
-                .header("Host", HOST)
-                .header("User-Agent", USER_AGENT)
-                .timeout(1000)
-                .ignoreContentType(true);
-        String html = "";
-        try {
-            html = conn.post().html();
-            html = html.replaceAll("[\n\r]", "");
-        }catch (Exception e){
-            LOGGER.error("获取URL：" + url + "页面出错", e);
-        }
-        return html;
+    private static CompletableFuture<String> getContentAsync(String url, int times) {
+        return _getContentAsync(url).thenCompose(html -> {
+            if(times < 3 && StringUtils.isNotBlank(html) && html.contains("非常抱歉，来自您ip的请求异常频繁")){
+                //使用新的IP地址，更换代理会阻塞，不能占用抓取网页的线程
+                return ProxyIp.toNewIpAsync().thenCompose(switched -> getContentAsync(url, times + 1));
+            }
+            return CompletableFuture.completedFuture(html);
+        });
+    }
+
+    private static CompletableFuture<String> _getContentAsync(String url) {
+        return HttpFetcher.getDefault()
+                .post(url, HEADERS)
+                .thenApply(response -> {
+                    if(response.getStatus() >= 400){
+                        LOGGER.error("获取URL：" + url + "页面出错，状态：" + response.getStatus());
+                        return "";
+                    }
+                    return Jsoup.parse(response.getText(), url).html().replaceAll("[\n\r]", "");
+                })
+                .exceptionally(e -> {
+                    LOGGER.error("获取URL：" + url + "页面出错", e);
+                    return "";
+                });
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,527 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 单词定义和音标的内存存储
+ * 每个词典的 word_definition 和 word_pronunciation 只从数据库加载一次，
+ * 所有的单词和值都以UTF-8编码存放在同一个字节数组中，
+ * 另用整数数组记录偏移和长度，用开放寻址的哈希表按单词查找，
+ * 加载后会把内容写入二进制快照文件，下次启动时如果快照和数据库的条目数以及单词的CRC32之和一致，
+ * 直接读快照而不用从数据库读取全部内容，不一致时重新从数据库加载
+ * @author 杨尚川
+ */
+public class DictionaryStore {
+    private static final Logger LOG = LoggerFactory.getLogger(DictionaryStore.class);
+
+    public static final String DEFINITION = "word_definition";
+    public static final String PRONUNCIATION = "word_pronunciation";
+
+    private static final int MAGIC = 0x53574453;
+    private static final int VERSION = 1;
+
+    private static final Map<String, DictionaryStore> STORES = new ConcurrentHashMap<>();
+    private static volatile Path snapshotPath = Paths.get("target/dictionary-store");
+    private static final ScheduledExecutorService SNAPSHOT_SERVICE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dictionary-store-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        //增量写入的内容定期保存到快照
+        SNAPSHOT_SERVICE.scheduleWithFixedDelay(DictionaryStore::saveSnapshots, 10, 10, TimeUnit.MINUTES);
+    }
+
+    private final String table;
+    private final String dictionary;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //所有单词和值的UTF-8字节
+    private byte[] arena = new byte[1024];
+    private int arenaSize = 0;
+    //每个条目占4个整数：单词偏移、单词长度、值偏移、值长度
+    private int[] entries = new int[64];
+    private int size = 0;
+    //开放寻址哈希表，存放条目下标+1，0表示空
+    private int[] slots = new int[32];
+    private volatile boolean dirty = false;
+
+    private DictionaryStore(String table, String dictionary) {
+        this.table = table;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 设置快照文件所在的目录
+     * @param path 目录
+     */
+    public static void setSnapshotPath(String path) {
+        snapshotPath = Paths.get(path);
+        LOG.info("词典快照目录：" + snapshotPath.toAbsolutePath());
+    }
+
+    /**
+     * 指定词典的单词定义
+     * @param dictionary 词典
+     * @return 存储
+     */
+    public static DictionaryStore definitions(String dictionary) {
+        return get(DEFINITION, dictionary);
+    }
+
+    /**
+     * 指定词典的单词音标
+     * @param dictionary 词典
+     * @return 存储
+     */
+    public static DictionaryStore pronunciations(String dictionary) {
+        return get(PRONUNCIATION, dictionary);
+    }
+
+    private static DictionaryStore get(String table, String dictionary) {
+        String key = table + "_" + dictionary;
+        DictionaryStore store = STORES.get(key);
+        if (store != null) {
+            return store;
+        }
+        synchronized (STORES) {
+            store = STORES.get(key);
+            if (store == null) {
+                store = new DictionaryStore(table, dictionary);
+                //加载失败的不缓存，下次使用时重新加载
+                if (store.load()) {
+                    STORES.put(key, store);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 数据库写入后同步更新已经加载的存储，未加载的等到使用时再从数据库加载，
+     * 加载时快照和数据库不一致会重新从数据库加载
+     */
+    static void update(String table, String dictionary, String word, String value) {
+        DictionaryStore store = STORES.get(table + "_" + dictionary);
+        if (store != null) {
+            store.put(word, value);
+        }
+    }
+
+    /**
+     * 数据库删除后同步删除所有已经加载的词典中的单词
+     */
+    static void delete(String table, String word) {
+        STORES.values().forEach(store -> {
+            if (store.table.equals(table)) {
+                store.remove(word);
+            }
+        });
+    }
+
+    /**
+     * 把有增量修改的存储保存到快照文件
+     */
+    public static synchronized void saveSnapshots() {
+        STORES.values().forEach(store -> {
+            if (store.dirty) {
+                store.saveSnapshot();
+            }
+        });
+    }
+
+    public String get(String word) {
+        if (word == null) {
+            return null;
+        }
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int index = find(key, hash(key, 0, key.length));
+            if (index < 0) {
+                return null;
+            }
+            return new String(arena, entries[index * 4 + 2], entries[index * 4 + 3], StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按加载顺序遍历所有的单词和值，新增的单词排在最后
+     * @param consumer 单词和值
+     */
+    public void forEach(BiConsumer<String, String> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(new String(arena, entries[i * 4], entries[i * 4 + 1], StandardCharsets.UTF_8),
+                        new String(arena, entries[i * 4 + 2], entries[i * 4 + 3], StandardCharsets.UTF_8));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 新增或替换单词的值，替换时旧值占用的空间不回收，保存快照时才压缩
+     * @param word 单词
+     * @param value 值
+     */
+    public void put(String word, String value) {
+        if (StringUtils.isBlank(word) || value == null) {
+            return;
+        }
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int hash = hash(key, 0, key.length);
+            int index = find(key, hash);
+            if (index < 0) {
+                index = size++;
+                ensureEntryCapacity(size);
+                entries[index * 4] = append(key);
+                entries[index * 4 + 1] = key.length;
+                insertSlot(index, hash);
+                if (size * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+            }
+            entries[index * 4 + 2] = append(bytes);
+            entries[index * 4 + 3] = bytes.length;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除单词，后面的条目依次前移以保持加载顺序
+     * @param word 单词
+     */
+    public void remove(String word) {
+        if (word == null) {
+            return;
+        }
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int index = find(key, hash(key, 0, key.length));
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(entries, (index + 1) * 4, entries, index * 4, (size - index - 1) * 4);
+            size--;
+            rehash(slots.length);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int find(byte[] key, int hash) {
+        int mask = slots.length - 1;
+        for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int index = slots[i] - 1;
+            int offset = entries[index * 4];
+            int length = entries[index * 4 + 1];
+            if (length == key.length && equals(key, offset)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equals(byte[] key, int offset) {
+        for (int i = 0; i < key.length; i++) {
+            if (arena[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insertSlot(int index, int hash) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = index + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insertSlot(i, hash(arena, entries[i * 4], entries[i * 4 + 1]));
+        }
+    }
+
+    private int append(byte[] bytes) {
+        if (arenaSize + bytes.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+        }
+        int offset = arenaSize;
+        System.arraycopy(bytes, 0, arena, offset, bytes.length);
+        arenaSize += bytes.length;
+        return offset;
+    }
+
+    private void ensureEntryCapacity(int count) {
+        if (count * 4 > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(entries.length * 2, count * 4));
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private Path getSnapshotFile() {
+        return snapshotPath.resolve(table + "_" + dictionary + ".bin");
+    }
+
+    private boolean load() {
+        long start = System.currentTimeMillis();
+        boolean loaded = loadSnapshot();
+        if (loaded) {
+            //数据库不可用时使用快照
+            long[] expected = loadFingerprint();
+            long[] actual = fingerprint();
+            if (expected != null && !Arrays.equals(expected, actual)) {
+                LOG.info(table + "_" + dictionary + "的快照和数据库不一致，重新从数据库加载，快照："
+                        + Arrays.toString(actual) + "，数据库：" + Arrays.toString(expected));
+                clear();
+                loaded = false;
+            }
+        }
+        if (!loaded) {
+            if (!loadDatabase()) {
+                return false;
+            }
+            if (size > 0) {
+                saveSnapshot();
+            }
+        }
+        dirty = false;
+        LOG.info("加载" + table + "_" + dictionary + "，条目数：" + size + "，字节数：" + arenaSize + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return true;
+    }
+
+    private boolean loadDatabase() {
+        String column = DEFINITION.equals(table) ? "definition" : "pronunciation";
+        String sql = "select word, " + column + " from " + table + " where dictionary=?";
+        Connection con = MySQLUtils.getConnection();
+        if (con == null) {
+            return false;
+        }
+        PreparedStatement pst = null;
+        ResultSet rs = null;
+        try {
+            pst = con.prepareStatement(sql);
+            pst.setString(1, dictionary);
+            rs = pst.executeQuery();
+            while (rs.next()) {
+                String word = rs.getString(1);
+                String value = rs.getString(2);
+                if (StringUtils.isNotBlank(word) && StringUtils.isNotBlank(value)) {
+                    put(word, value);
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            LOG.error("从数据库加载" + table + "_" + dictionary + "失败", e);
+        } finally {
+            MySQLUtils.close(con, pst, rs);
+        }
+        return false;
+    }
+
+    /**
+     * @return 条目数和所有单词的CRC32之和，和数据库中的计算方式一致
+     */
+    private long[] fingerprint() {
+        CRC32 crc32 = new CRC32();
+        long sum = 0;
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                crc32.reset();
+                crc32.update(arena, entries[i * 4], entries[i * 4 + 1]);
+                sum += crc32.getValue();
+            }
+            return new long[]{size, sum};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 数据库中的条目数和单词的CRC32之和，条件和loadDatabase一致
+     * @return 数据库不可用时返回null
+     */
+    private long[] loadFingerprint() {
+        String column = DEFINITION.equals(table) ? "definition" : "pronunciation";
+        String sql = "select count(*), coalesce(sum(crc32(word)), 0) from " + table
+                + " where dictionary=? and trim(word)<>'' and trim(" + column + ")<>''";
+        Connection con = MySQLUtils.getConnection();
+        if (con == null) {
+            return null;
+        }
+        PreparedStatement pst = null;
+        ResultSet rs = null;
+        try {
+            pst = con.prepareStatement(sql);
+            pst.setString(1, dictionary);
+            rs = pst.executeQuery();
+            if (rs.next()) {
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        } catch (SQLException e) {
+            LOG.error("查询" + table + "_" + dictionary + "的校验和失败", e);
+        } finally {
+            MySQLUtils.close(con, pst, rs);
+        }
+        return null;
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            arena = new byte[1024];
+            arenaSize = 0;
+            entries = new int[64];
+            size = 0;
+            slots = new int[32];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean loadSnapshot() {
+        Path file = getSnapshotFile();
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.warn("快照文件格式不正确：" + file);
+                return false;
+            }
+            int count = in.readInt();
+            int bytes = in.readInt();
+            byte[] _arena = new byte[Math.max(bytes, 1)];
+            in.readFully(_arena, 0, bytes);
+            int[] _entries = new int[Math.max(count * 4, 4)];
+            for (int i = 0; i < count * 4; i++) {
+                _entries[i] = in.readInt();
+            }
+            lock.writeLock().lock();
+            try {
+                arena = _arena;
+                arenaSize = bytes;
+                entries = _entries;
+                size = count;
+                rehash(Integer.highestOneBit(Math.max(count, 16) * 2) * 2);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.error("读取快照文件失败：" + file, e);
+        }
+        return false;
+    }
+
+    /**
+     * 压缩后写入临时文件再替换快照文件
+     */
+    private void saveSnapshot() {
+        Path file = getSnapshotFile();
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                int bytes = 0;
+                for (int i = 0; i < size; i++) {
+                    bytes += entries[i * 4 + 1] + entries[i * 4 + 3];
+                }
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                out.writeInt(bytes);
+                for (int i = 0; i < size; i++) {
+                    out.write(arena, entries[i * 4], entries[i * 4 + 1]);
+                    out.write(arena, entries[i * 4 + 2], entries[i * 4 + 3]);
+                }
+                int offset = 0;
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(offset);
+                    out.writeInt(entries[i * 4 + 1]);
+                    offset += entries[i * 4 + 1];
+                    out.writeInt(offset);
+                    out.writeInt(entries[i * 4 + 3]);
+                    offset += entries[i * 4 + 3];
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            LOG.info("保存快照文件：" + file);
+        } catch (IOException e) {
+            LOG.error("保存快照文件失败：" + file, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
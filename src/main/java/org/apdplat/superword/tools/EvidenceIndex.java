@@ -0,0 +1,557 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * 词到句子的倒排索引
+ * 为目录下的所有txt文件建立 {词 : [(文件, 行的字节偏移量)]} 的倒排表，保存到索引文件中，
+ * 文件没有变化时重复使用，查找句子时只读取所查词的倒排表，
+ * 按文件和行的顺序合并各个词的倒排表，只定位读取可能被选中的行，
+ * 一个词的句子数达到上限后不再读取它的倒排表，一本书的句子数达到上限后跳到下一个文件，
+ * 结果和逐行扫描所有文件完全一致，
+ * 不是UTF-8编码的文件不建立索引，查找时被忽略
+ * @author 杨尚川
+ */
+public class EvidenceIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EvidenceIndex.class);
+
+    private static final int MAGIC = 0x53574549;
+    private static final int VERSION = 1;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    //每个索引都在内存中保存整个词典，只保留最近使用的几个
+    private static final int MAX_CACHED = 4;
+    private static final Map<Path, EvidenceIndex> CACHE = new LinkedHashMap<Path, EvidenceIndex>(MAX_CACHED, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, EvidenceIndex> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private final Path dir;
+    private final Path indexFile;
+    private final List<Source> sources;
+    private final long lines;
+    //词 : 倒排表在索引文件中的位置
+    private final Map<String, Long> terms;
+
+    private EvidenceIndex(Path dir, Path indexFile, List<Source> sources, long lines, Map<String, Long> terms) {
+        this.dir = dir;
+        this.indexFile = indexFile;
+        this.sources = sources;
+        this.lines = lines;
+        this.terms = terms;
+    }
+
+    /**
+     * 目录的索引，索引文件保存在target/evidence_index目录下
+     * @param dir 文本文档所在目录
+     * @return 索引
+     */
+    public static EvidenceIndex get(Path dir) throws IOException {
+        Path absolute = dir.toAbsolutePath().normalize();
+        String name = absolute.toString().replaceAll("[^a-zA-Z0-9]+", "_");
+        return get(dir, Paths.get("target/evidence_index", name + ".idx"));
+    }
+
+    /**
+     * 目录的索引，目录中的文件有变化时重建
+     * @param dir 文本文档所在目录
+     * @param indexFile 索引文件
+     * @return 索引
+     */
+    public static synchronized EvidenceIndex get(Path dir, Path indexFile) throws IOException {
+        Path key = dir.toAbsolutePath().normalize();
+        List<Source> sources = scan(dir);
+        EvidenceIndex index = CACHE.get(key);
+        if(index != null && index.indexFile.equals(indexFile) && index.sources.equals(sources)){
+            return index;
+        }
+        index = null;
+        if(Files.exists(indexFile)){
+            try {
+                index = load(dir, indexFile);
+            } catch (IOException e) {
+                LOGGER.warn("读取索引失败：" + indexFile, e);
+            }
+        }
+        if(index == null || !index.sources.equals(sources)){
+            index = build(dir, indexFile, sources);
+        }
+        CACHE.put(key, index);
+        return index;
+    }
+
+    /**
+     * 找出包含词的句子，忽略重复出现的句子
+     * @param words 待处理词列表
+     * @param totalLimitForWord 一个词最多需要多少个句子
+     * @param bookLimitForBook 一本书里面最多取多少个句子
+     * @return {词 : {书 : [句子]}}
+     */
+    public Map<String, Map<String, List<String>>> findEvidence(List<String> words, int totalLimitForWord, int bookLimitForBook) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Map<String, List<String>>> data = new LinkedHashMap<>();
+        if(lines > 0){
+            words.forEach(word -> data.putIfAbsent(word, new HashMap<>()));
+        }
+        Map<String, long[]> postings = new HashMap<>();
+        for(String word : words){
+            if(!postings.containsKey(word)){
+                postings.put(word, postings(word));
+            }
+        }
+        //按位置排序，同一个位置按词在列表中的顺序
+        PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> a.position() != b.position()
+                ? Long.compare(a.position(), b.position()) : Integer.compare(a.order, b.order));
+        for(int i=0; i<words.size(); i++){
+            long[] positions = postings.get(words.get(i));
+            if(positions.length > 0){
+                queue.add(new Cursor(i, words.get(i), positions));
+            }
+        }
+        Map<String, Integer> wordInOneBookCollectCount = new HashMap<>();
+        Map<String, Integer> wordInAllBookCollectCount = new HashMap<>();
+        Set<Integer> hashes = new HashSet<>();
+        List<Cursor> matched = new ArrayList<>();
+        LineReader reader = new LineReader();
+        int readCount = 0;
+        try {
+            while (!queue.isEmpty()) {
+                long position = queue.peek().position();
+                matched.clear();
+                while (!queue.isEmpty() && queue.peek().position() == position) {
+                    matched.add(queue.poll());
+                }
+                Source source = sources.get(fileId(position));
+                String book = source.book;
+                boolean collectable = false;
+                for (Cursor cursor : matched) {
+                    if (canCollect(cursor.word, book, wordInOneBookCollectCount, wordInAllBookCollectCount, totalLimitForWord, bookLimitForBook)) {
+                        collectable = true;
+                        break;
+                    }
+                }
+                //没有词需要这一行时不读取
+                if (collectable) {
+                    String line = reader.read(dir.resolve(source.path), fileId(position), position & OFFSET_MASK);
+                    readCount++;
+                    if (!hashes.contains(line.hashCode())) {
+                        for (Cursor cursor : matched) {
+                            String word = cursor.word;
+                            if (canCollect(word, book, wordInOneBookCollectCount, wordInAllBookCollectCount, totalLimitForWord, bookLimitForBook)) {
+                                wordInOneBookCollectCount.merge(word + "_" + book, 1, Integer::sum);
+                                wordInAllBookCollectCount.merge(word, 1, Integer::sum);
+                                data.get(word).computeIfAbsent(book, k -> new ArrayList<>()).add(line);
+                                hashes.add(line.hashCode());
+                            }
+                        }
+                    }
+                }
+                for (Cursor cursor : matched) {
+                    String word = cursor.word;
+                    if (wordInAllBookCollectCount.getOrDefault(word, 0) >= totalLimitForWord) {
+                        //这个词已经够了
+                        continue;
+                    }
+                    if (wordInOneBookCollectCount.getOrDefault(word + "_" + book, 0) >= bookLimitForBook) {
+                        //这本书已经够了，跳到下一个文件
+                        cursor.skipFile();
+                    } else {
+                        cursor.next();
+                    }
+                    if (cursor.hasNext()) {
+                        queue.add(cursor);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        LOGGER.info("查找句子，词数：" + words.size() + "，读取行数：" + readCount + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return data;
+    }
+
+    private static boolean canCollect(String word, String book,
+                                      Map<String, Integer> wordInOneBookCollectCount, Map<String, Integer> wordInAllBookCollectCount,
+                                      int totalLimitForWord, int bookLimitForBook){
+        return wordInOneBookCollectCount.getOrDefault(word + "_" + book, 0) < bookLimitForBook
+                && wordInAllBookCollectCount.getOrDefault(word, 0) < totalLimitForWord;
+    }
+
+    /**
+     * @return 词出现的所有位置，按文件和偏移量排序，一行只出现一次
+     */
+    public long[] postings(String word) throws IOException {
+        Long offset = terms.get(word);
+        if(offset == null){
+            return new long[0];
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int size = readVarInt(in);
+            long[] positions = new long[size];
+            long fileId = 0;
+            long lineOffset = 0;
+            for(int i=0; i<size; i++){
+                long fileDelta = readVarLong(in);
+                long value = readVarLong(in);
+                fileId += fileDelta;
+                lineOffset = fileDelta == 0 ? lineOffset + value : value;
+                positions[i] = (fileId << OFFSET_BITS) | lineOffset;
+            }
+            return positions;
+        }
+    }
+
+    public int getTermCount(){
+        return terms.size();
+    }
+
+    public long getLineCount(){
+        return lines;
+    }
+
+    private static int fileId(long position){
+        return (int) (position >>> OFFSET_BITS);
+    }
+
+    /**
+     * 和逐个处理文件时的顺序和过滤条件一致
+     */
+    private static List<Source> scan(Path dir) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.toFile().getName();
+                if (name.startsWith(".") || !name.endsWith(".txt")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                sources.add(new Source(dir.relativize(file).toString(), name.replace(".txt", ""),
+                        attrs.size(), attrs.lastModifiedTime().toMillis()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sources;
+    }
+
+    private static EvidenceIndex build(Path dir, Path indexFile, List<Source> sources) throws IOException {
+        long start = System.currentTimeMillis();
+        LOGGER.info("建立索引：" + dir + "，文件数：" + sources.size());
+        Map<String, LongList> postings = new HashMap<>();
+        Set<String> tokens = new HashSet<>();
+        long lines = 0;
+        for(int fileId=0; fileId<sources.size(); fileId++){
+            Source source = sources.get(fileId);
+            byte[] bytes = Files.readAllBytes(dir.resolve(source.path));
+            try {
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(bytes));
+            } catch (CharacterCodingException e) {
+                LOGGER.warn("忽略不是UTF-8编码的文件：" + source.path);
+                continue;
+            }
+            //UTF-8编码的多字节字符中不会出现换行符和回车符，可以直接按字节切分行
+            int lineStart = 0;
+            int i = 0;
+            while (lineStart < bytes.length) {
+                while (i < bytes.length && bytes[i] != '\n' && bytes[i] != '\r') {
+                    i++;
+                }
+                String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                long position = ((long) fileId << OFFSET_BITS) | lineStart;
+                tokens.clear();
+                TextAnalyzer.seg(line, token -> {
+                    if (tokens.add(token)) {
+                        postings.computeIfAbsent(token, k -> new LongList()).add(position);
+                    }
+                });
+                lines++;
+                if (i < bytes.length && bytes[i] == '\r' && i + 1 < bytes.length && bytes[i + 1] == '\n') {
+                    i++;
+                }
+                i++;
+                lineStart = i;
+            }
+        }
+        LOGGER.info("索引建立完毕，行数：" + lines + "，词数：" + postings.size() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        Map<String, Long> terms = write(indexFile, sources, lines, postings);
+        return new EvidenceIndex(dir, indexFile, sources, lines, terms);
+    }
+
+    /**
+     * 索引文件：文件头、各个词的倒排表、词典、词典的位置
+     */
+    private static Map<String, Long> write(Path indexFile, List<Source> sources, long lines, Map<String, LongList> postings) throws IOException {
+        if(indexFile.getParent() != null){
+            Files.createDirectories(indexFile.getParent());
+        }
+        Path temp = Paths.get(indexFile + ".tmp");
+        Map<String, Long> terms = new HashMap<>(postings.size() * 4 / 3 + 1);
+        try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lines);
+            out.writeInt(sources.size());
+            for(Source source : sources){
+                out.writeUTF(source.path);
+                out.writeUTF(source.book);
+                out.writeLong(source.size);
+                out.writeLong(source.lastModified);
+            }
+            for(Map.Entry<String, LongList> entry : postings.entrySet()){
+                out.flush();
+                terms.put(entry.getKey(), counter.count);
+                LongList list = entry.getValue();
+                writeVarLong(out, list.size);
+                long fileId = 0;
+                long lineOffset = 0;
+                for(int i=0; i<list.size; i++){
+                    long position = list.values[i];
+                    long currentFileId = position >>> OFFSET_BITS;
+                    long currentOffset = position & OFFSET_MASK;
+                    //同一个文件内记录偏移量的差值，换文件时记录偏移量本身
+                    writeVarLong(out, currentFileId - fileId);
+                    writeVarLong(out, currentFileId == fileId ? currentOffset - lineOffset : currentOffset);
+                    fileId = currentFileId;
+                    lineOffset = currentOffset;
+                }
+            }
+            out.flush();
+            long dictionary = counter.count;
+            writeVarLong(out, terms.size());
+            for(Map.Entry<String, Long> entry : terms.entrySet()){
+                out.writeUTF(entry.getKey());
+                writeVarLong(out, entry.getValue());
+            }
+            out.writeLong(dictionary);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("保存索引：" + indexFile + "，大小：" + Files.size(indexFile) + " 字节");
+        return terms;
+    }
+
+    private static EvidenceIndex load(Path dir, Path indexFile) throws IOException {
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException("索引文件格式不对：" + indexFile);
+            }
+            long lines = in.readLong();
+            int size = in.readInt();
+            List<Source> sources = new ArrayList<>(size);
+            for(int i=0; i<size; i++){
+                sources.add(new Source(in.readUTF(), in.readUTF(), in.readLong(), in.readLong()));
+            }
+            ByteBuffer footer = ByteBuffer.allocate(8);
+            channel.read(footer, channel.size() - 8);
+            footer.flip();
+            channel.position(footer.getLong());
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int count = (int) readVarLong(in);
+            Map<String, Long> terms = new HashMap<>(count * 4 / 3 + 1);
+            for(int i=0; i<count; i++){
+                terms.put(in.readUTF(), readVarLong(in));
+            }
+            LOGGER.info("读取索引：" + indexFile + "，词数：" + terms.size() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+            return new EvidenceIndex(dir, indexFile, sources, lines, terms);
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * 一个词在合并过程中的当前位置
+     */
+    private static class Cursor {
+        private final int order;
+        private final String word;
+        private final long[] positions;
+        private int index;
+
+        private Cursor(int order, String word, long[] positions) {
+            this.order = order;
+            this.word = word;
+            this.positions = positions;
+        }
+
+        private long position(){
+            return positions[index];
+        }
+
+        private boolean hasNext(){
+            return index < positions.length;
+        }
+
+        private void next(){
+            index++;
+        }
+
+        private void skipFile(){
+            int fileId = fileId(positions[index]);
+            while (index < positions.length && fileId(positions[index]) == fileId) {
+                index++;
+            }
+        }
+    }
+
+    /**
+     * 按偏移量读取一行，文件按顺序访问，同一时间只打开一个文件
+     */
+    private static class LineReader {
+        private int fileId = -1;
+        private RandomAccessFile file;
+        private final byte[] buffer = new byte[8192];
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private String read(Path path, int fileId, long offset) throws IOException {
+            if(this.fileId != fileId){
+                close();
+                file = new RandomAccessFile(path.toFile(), "r");
+                this.fileId = fileId;
+            }
+            file.seek(offset);
+            line.reset();
+            int length;
+            outer:
+            while ((length = file.read(buffer)) != -1) {
+                for(int i=0; i<length; i++){
+                    if(buffer[i] == '\n' || buffer[i] == '\r'){
+                        line.write(buffer, 0, i);
+                        break outer;
+                    }
+                }
+                line.write(buffer, 0, length);
+            }
+            return new String(line.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private void close() throws IOException {
+            if(file != null){
+                file.close();
+                file = null;
+                fileId = -1;
+            }
+        }
+    }
+
+    private static class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class Source {
+        private final String path;
+        private final String book;
+        private final long size;
+        private final long lastModified;
+
+        private Source(String path, String book, long size, long lastModified) {
+            this.path = path;
+            this.book = book;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Source)) return false;
+            Source source = (Source) o;
+            return size == source.size
+                    && lastModified == source.lastModified
+                    && path.equals(source.path)
+                    && book.equals(source.book);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
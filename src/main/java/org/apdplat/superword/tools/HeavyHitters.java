@@ -0,0 +1,462 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 固定内存的流式访问统计
+ * 由Count-Min Sketch和Space-Saving两部分组成：
+ * Count-Min Sketch是depth行width列的计数矩阵，每个键在每行哈希到一列，
+ * 估计值是各行计数的最小值，只会多估不会少估，多估的部分不超过总数的e/width（概率1-e^-depth），
+ * Space-Saving最多监控capacity个键，新键替换计数最小的键并继承其计数作为误差，
+ * 出现次数超过总数1/capacity的键一定在监控中，
+ * 计数器按计数分桶组成有序链表，每次访问的更新都是O(1)，
+ * 键按哈希值分散到多个Space-Saving中，每个单独加锁，top时合并，
+ * Count-Min Sketch的更新不加锁，未被监控且估计值不超过最小计数的键不会进入Space-Saving，也就不用加锁
+ * @author 杨尚川
+ */
+public class HeavyHitters<K> {
+    private static final int MAGIC = 0x53574848;
+    private static final int VERSION = 1;
+    private static final int MAX_STRIPES = 16;
+    //每个Space-Saving至少监控的键数
+    private static final int MIN_STRIPE_CAPACITY = 8;
+
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counts;
+    private final LongAdder total = new LongAdder();
+    private final int capacity;
+    private final SpaceSaving<K>[] stripes;
+    private final int stripeMask;
+
+    /**
+     * 键的二进制读写，用于归档
+     */
+    public interface Codec<K> {
+        void write(DataOutput out, K key) throws IOException;
+        K read(DataInput in) throws IOException;
+    }
+
+    /**
+     * @param width 每行的列数，会调整为2的幂
+     * @param depth 行数
+     * @param capacity 监控的键数
+     */
+    public HeavyHitters(int width, int depth, int capacity){
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = Math.max(1, depth);
+        this.mask = this.width - 1;
+        this.counts = new AtomicLongArray(this.width * this.depth);
+        this.capacity = Math.max(1, capacity);
+        int size = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, this.capacity / MIN_STRIPE_CAPACITY)));
+        this.stripes = newStripes(size, (this.capacity + size - 1) / size);
+        this.stripeMask = size - 1;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K> SpaceSaving<K>[] newStripes(int size, int capacity){
+        SpaceSaving<K>[] stripes = new SpaceSaving[size];
+        for(int i=0; i<size; i++){
+            stripes[i] = new SpaceSaving<>(capacity);
+        }
+        return stripes;
+    }
+
+    /**
+     * 记录一次访问
+     * @param key 键，不能为null
+     */
+    public void add(K key){
+        long hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for(int i=0; i<depth; i++){
+            estimate = Math.min(estimate, counts.incrementAndGet(index(hash, i)));
+        }
+        total.increment();
+        SpaceSaving<K> spaceSaving = stripe(hash);
+        //估计值不超过最小计数的新键进入后也只是替换最小的计数器，不影响结果，
+        //而且它的实际次数不超过最小计数，以后进入时继承的计数仍然不小于实际次数
+        if(spaceSaving.counters.containsKey(key) || estimate > spaceSaving.floor){
+            synchronized (spaceSaving){
+                spaceSaving.offer(key);
+            }
+        }
+    }
+
+    private SpaceSaving<K> stripe(long hash){
+        return stripes[(int) (hash >>> 32) & stripeMask];
+    }
+
+    /**
+     * @return 所有Space-Saving的计数器，按计数从小到大排列
+     */
+    private List<Entry<K>> entries(){
+        List<Entry<K>> entries = new ArrayList<>(capacity);
+        for(SpaceSaving<K> spaceSaving : stripes){
+            synchronized (spaceSaving){
+                entries.addAll(spaceSaving.entries());
+            }
+        }
+        entries.sort((a, b) -> Long.compare(a.count, b.count));
+        return entries;
+    }
+
+    /**
+     * 估计一个键的访问次数，不小于实际次数
+     */
+    public long estimate(K key){
+        long hash = hash(key);
+        long min = Long.MAX_VALUE;
+        for(int i=0; i<depth; i++){
+            min = Math.min(min, counts.get(index(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 访问次数最多的键，计数取Space-Saving和Count-Min Sketch两个估计值中较小的
+     * @param limit 最多返回的键数
+     * @return 按访问次数从多到少排列
+     */
+    public List<Entry<K>> top(int limit){
+        List<Entry<K>> entries = entries();
+        List<Entry<K>> result = new ArrayList<>(entries.size());
+        for(Entry<K> entry : entries){
+            long count = Math.min(entry.count, estimate(entry.key));
+            //实际次数不小于Space-Saving的计数减去误差
+            result.add(new Entry<>(entry.key, count, Math.max(0, count - (entry.count - entry.error))));
+        }
+        result.sort((a, b) -> Long.compare(b.count, a.count));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public List<Entry<K>> top(){
+        return top(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return 总访问次数
+     */
+    public long getTotal(){
+        return total.sum();
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getDepth(){
+        return depth;
+    }
+
+    public int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * 以GZIP压缩的二进制格式保存
+     */
+    public void write(Path path, Codec<K> codec) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))){
+            write(out, codec);
+        }
+    }
+
+    public void write(DataOutputStream out, Codec<K> codec) throws IOException {
+        List<Entry<K>> entries = entries();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeInt(capacity);
+        out.writeLong(total.sum());
+        for(int i=0; i<counts.length(); i++){
+            out.writeLong(counts.get(i));
+        }
+        out.writeInt(entries.size());
+        //按计数从小到大写入，读取时依次追加到链表尾部
+        for(Entry<K> entry : entries){
+            codec.write(out, entry.key);
+            out.writeLong(entry.count);
+            out.writeLong(entry.error);
+        }
+    }
+
+    public static <K> HeavyHitters<K> read(Path path, Codec<K> codec) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))){
+            return read(in, codec);
+        }
+    }
+
+    public static <K> HeavyHitters<K> read(DataInputStream in, Codec<K> codec) throws IOException {
+        if(in.readInt() != MAGIC){
+            throw new IOException("not a heavy hitters archive");
+        }
+        int version = in.readInt();
+        if(version != VERSION){
+            throw new IOException("unsupported heavy hitters archive version: " + version);
+        }
+        HeavyHitters<K> heavyHitters = new HeavyHitters<>(in.readInt(), in.readInt(), in.readInt());
+        heavyHitters.total.add(in.readLong());
+        for(int i=0; i<heavyHitters.counts.length(); i++){
+            heavyHitters.counts.set(i, in.readLong());
+        }
+        int size = in.readInt();
+        for(int i=0; i<size; i++){
+            K key = codec.read(in);
+            long count = in.readLong();
+            long error = in.readLong();
+            SpaceSaving<K> spaceSaving = heavyHitters.stripe(hash(key));
+            synchronized (spaceSaving){
+                spaceSaving.append(key, count, error);
+            }
+        }
+        return heavyHitters;
+    }
+
+    private static long hash(Object key){
+        return mix(key == null ? 0 : key.hashCode());
+    }
+
+    private int index(long hash, int row){
+        //每行用不同的种子重新混合，得到相互独立的列
+        return row * width + (int) (mix(hash + (row + 1) * 0x9E3779B97F4A7C15L) & mask);
+    }
+
+    private static long mix(long z){
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Space-Saving的Stream-Summary结构，只在加锁后修改
+     * 相同计数的计数器在同一个桶中，桶按计数从小到大组成双向链表，
+     * counters和floor可以不加锁读取，用于判断是否需要加锁
+     */
+    private static class SpaceSaving<K> {
+        private final int capacity;
+        private final Map<K, Counter<K>> counters;
+        private Bucket<K> min;
+        private Bucket<K> max;
+        //监控的键已满时的最小计数，未满时为0
+        private volatile long floor;
+
+        private SpaceSaving(int capacity){
+            this.capacity = capacity;
+            this.counters = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        }
+
+        private void updateFloor(){
+            floor = counters.size() < capacity || min == null ? 0 : min.count;
+        }
+
+        private void offer(K key){
+            Counter<K> counter = counters.get(key);
+            if(counter == null){
+                if(counters.size() < capacity){
+                    counter = new Counter<>(key);
+                }else{
+                    //替换计数最小的键，新键继承其计数作为误差
+                    counter = min.head;
+                    counters.remove(counter.key);
+                    counter.key = key;
+                    counter.error = counter.count;
+                }
+                counters.put(key, counter);
+            }
+            increment(counter);
+            updateFloor();
+        }
+
+        private void increment(Counter<K> counter){
+            Bucket<K> from = counter.bucket;
+            long count = counter.count + 1;
+            Bucket<K> next = from == null ? min : from.next;
+            Bucket<K> to;
+            if(next != null && next.count == count){
+                to = next;
+            }else{
+                to = new Bucket<>(count);
+                link(from, to, next);
+            }
+            if(from != null){
+                detach(counter);
+                if(from.head == null){
+                    unlink(from);
+                }
+            }
+            counter.count = count;
+            attach(counter, to);
+        }
+
+        /**
+         * 按计数从小到大恢复计数器
+         */
+        private void append(K key, long count, long error){
+            if(counters.size() >= capacity || (max != null && max.count > count)){
+                return;
+            }
+            Counter<K> counter = new Counter<>(key);
+            counter.count = count;
+            counter.error = error;
+            Bucket<K> to = max;
+            if(to == null || to.count != count){
+                to = new Bucket<>(count);
+                link(max, to, null);
+            }
+            attach(counter, to);
+            counters.put(key, counter);
+            updateFloor();
+        }
+
+        private void link(Bucket<K> prev, Bucket<K> bucket, Bucket<K> next){
+            bucket.prev = prev;
+            bucket.next = next;
+            if(prev == null){
+                min = bucket;
+            }else{
+                prev.next = bucket;
+            }
+            if(next == null){
+                max = bucket;
+            }else{
+                next.prev = bucket;
+            }
+        }
+
+        private void unlink(Bucket<K> bucket){
+            if(bucket.prev == null){
+                min = bucket.next;
+            }else{
+                bucket.prev.next = bucket.next;
+            }
+            if(bucket.next == null){
+                max = bucket.prev;
+            }else{
+                bucket.next.prev = bucket.prev;
+            }
+        }
+
+        private void attach(Counter<K> counter, Bucket<K> bucket){
+            counter.bucket = bucket;
+            counter.prev = null;
+            counter.next = bucket.head;
+            if(bucket.head != null){
+                bucket.head.prev = counter;
+            }
+            bucket.head = counter;
+        }
+
+        private void detach(Counter<K> counter){
+            Bucket<K> bucket = counter.bucket;
+            if(counter.prev == null){
+                bucket.head = counter.next;
+            }else{
+                counter.prev.next = counter.next;
+            }
+            if(counter.next != null){
+                counter.next.prev = counter.prev;
+            }
+            counter.prev = null;
+            counter.next = null;
+            counter.bucket = null;
+        }
+
+        /**
+         * @return 按计数从小到大排列
+         */
+        private List<Entry<K>> entries(){
+            List<Entry<K>> entries = new ArrayList<>(counters.size());
+            for(Bucket<K> bucket = min; bucket != null; bucket = bucket.next){
+                for(Counter<K> counter = bucket.head; counter != null; counter = counter.next){
+                    entries.add(new Entry<>(counter.key, counter.count, counter.error));
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static class Bucket<K> {
+        private final long count;
+        private Counter<K> head;
+        private Bucket<K> prev;
+        private Bucket<K> next;
+
+        private Bucket(long count){
+            this.count = count;
+        }
+    }
+
+    private static class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private Bucket<K> bucket;
+        private Counter<K> prev;
+        private Counter<K> next;
+
+        private Counter(K key){
+            this.key = key;
+        }
+    }
+
+    /**
+     * 一个键的访问次数估计
+     */
+    public static class Entry<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+
+        public Entry(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return 估计的访问次数，不小于实际次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return 最大误差，实际次数不小于count-error
+         */
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 异步网页抓取
+ * 请求在有界的线程池中执行，立即返回CompletableFuture，网页内容一到就完成，
+ * 连接和读取分别设置超时，响应内容完整读取后关闭输入流，
+ * 由JDK的keep-alive缓存复用到同一主机的连接，
+ * 并用信号量限制同一主机同时进行的请求数
+ * @author 杨尚川
+ */
+public class HttpFetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpFetcher.class);
+
+    private static final HttpFetcher DEFAULT = new HttpFetcher(1000, 1000, 4, 32);
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxPerHost;
+    private final ExecutorService executorService;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param connectTimeout 连接超时毫秒数
+     * @param readTimeout 读取超时毫秒数
+     * @param maxPerHost 同一主机最多同时进行的请求数
+     * @param threads 执行请求的线程数
+     */
+    public HttpFetcher(int connectTimeout, int readTimeout, int maxPerHost, int threads){
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxPerHost = maxPerHost;
+        AtomicInteger count = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "http-fetcher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static HttpFetcher getDefault(){
+        return DEFAULT;
+    }
+
+    public CompletableFuture<Response> get(String url, Map<String, String> headers){
+        return fetch("GET", url, headers);
+    }
+
+    public CompletableFuture<Response> post(String url, Map<String, String> headers){
+        return fetch("POST", url, headers);
+    }
+
+    /**
+     * 异步抓取网页
+     * @param method 请求方法
+     * @param url 网址
+     * @param headers 请求头，Host和Connection是受限的请求头，HttpURLConnection会忽略，由它自己设置
+     * @return 响应，连接失败、超时或者等待同一主机的空闲名额超时时异常完成
+     */
+    public CompletableFuture<Response> fetch(String method, String url, Map<String, String> headers){
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return execute(method, url, headers);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+    private Response execute(String method, String url, Map<String, String> headers) throws IOException {
+        long start = System.currentTimeMillis();
+        URL u = new URL(url);
+        Semaphore semaphore = hosts.computeIfAbsent(u.getHost() + ":" + u.getPort(), k -> new Semaphore(maxPerHost));
+        try {
+            //等待空闲名额的时间也计入连接超时
+            if(!semaphore.tryAcquire(connectTimeout, TimeUnit.MILLISECONDS)){
+                throw new SocketTimeoutException("等待主机空闲连接超时：" + u.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待主机空闲连接被中断：" + u.getHost(), e);
+        }
+        try {
+            HttpURLConnection connection = (HttpURLConnection) u.openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setInstanceFollowRedirects(true);
+            connection.setUseCaches(false);
+            if(headers != null){
+                headers.forEach(connection::setRequestProperty);
+            }
+            if("POST".equals(method)){
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(0);
+                connection.getOutputStream().close();
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            byte[] body = in == null ? new byte[0] : readFully(decode(in, connection.getContentEncoding()));
+            Response response = new Response(status, connection.getContentType(), body);
+            LOGGER.debug("抓取 " + url + "，状态：" + status + "，字节数：" + body.length
+                    + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+            return response;
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private static InputStream decode(InputStream in, String encoding) throws IOException {
+        if("gzip".equalsIgnoreCase(encoding)){
+            return new GZIPInputStream(in);
+        }
+        if("deflate".equalsIgnoreCase(encoding)){
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * 读完整个响应再关闭输入流，连接才能放回keep-alive缓存被后续请求复用
+     */
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = input.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 响应
+     */
+    public static class Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * 按Content-Type中的字符集解码，没有指定时使用UTF-8
+         * @return 响应文本
+         */
+        public String getText() {
+            Charset charset = StandardCharsets.UTF_8;
+            if(contentType != null){
+                for(String param : contentType.split(";")){
+                    param = param.trim();
+                    if(param.toLowerCase().startsWith("charset=")){
+                        try {
+                            charset = Charset.forName(param.substring(8).replace("\"", "").trim());
+                        } catch (Exception e) {
+                            LOGGER.warn("不支持的字符集：" + param);
+                        }
+                    }
+                }
+            }
+            return new String(body, charset);
+        }
+    }
+
+    /**
+     * 把请求头数组转换为Map，依次为名称和值
+     * @param nameAndValues 名称1, 值1, 名称2, 值2...
+     * @return 请求头
+     */
+    public static Map<String, String> headers(String... nameAndValues){
+        Map<String, String> headers = new LinkedHashMap<>();
+        for(int i=0; i+1<nameAndValues.length; i+=2){
+            headers.put(nameAndValues[i], nameAndValues[i+1]);
+        }
+        return Collections.unmodifiableMap(headers);
+    }
+}
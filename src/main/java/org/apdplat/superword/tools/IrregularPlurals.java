@@ -18,8 +18,10 @@
 
 package org.apdplat.superword.tools;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 不规则复数词工具
@@ -42,4 +44,11 @@ public class IrregularPlurals {
         }
         return singular;
     }
+
+    /**
+     * 所有的不规则复数
+     */
+    static Set<String> getPlurals(){
+        return Collections.unmodifiableSet(pluralToSingular.keySet());
+    }
 }
@@ -19,7 +19,9 @@
 package org.apdplat.superword.tools;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 不规则动词工具
@@ -48,4 +50,13 @@ public class IrregularVerbs {
         }
         return baseForm;
     }
+
+    /**
+     * 所有的过去式和过去分词
+     */
+    static Set<String> getForms(){
+        Set<String> forms = new HashSet<>(pastTenseToBaseForm.keySet());
+        forms.addAll(pastParticipleToBaseForm.keySet());
+        return forms;
+    }
 }
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -69,34 +70,8 @@ public class JavaCodeAnalyzer {
     }
 
     public static Map<String, AtomicInteger> parseZip(String zipFile){
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        Map<String, AtomicInteger> data = new HashMap<>();
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), JavaCodeAnalyzer.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件：" + file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/java-source-code.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        Map<String, AtomicInteger> r = parseFile(temp.toFile().getAbsolutePath());
-                        r.keySet().forEach(k -> {
-                            data.putIfAbsent(k, new AtomicInteger());
-                            data.get(k).addAndGet(r.get(k).get());
-                        });
-                        r.clear();
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析ZIP文件出错", e);
-        }
-        return data;
+        return ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashMap::new, (Map<String, AtomicInteger> data, String line) -> parseLine(line, data), JavaCodeAnalyzer::merge));
     }
 
     public static Map<String, AtomicInteger> parseFile(String file){
@@ -108,12 +83,7 @@ public class JavaCodeAnalyzer {
                                 new FileInputStream(file))))) {
             String line = null;
             while ((line = reader.readLine()) != null) {
-                List<String> words = TextAnalyzer.seg(line);
-                words.forEach(word -> {
-                    data.putIfAbsent(word, new AtomicInteger());
-                    data.get(word).incrementAndGet();
-                });
-                words.clear();
+                parseLine(line, data);
             }
         } catch (IOException e) {
             LOGGER.error("解析文本出错", e);
@@ -121,6 +91,23 @@ public class JavaCodeAnalyzer {
         return data;
     }
 
+    public static void parseLine(String line, Map<String, AtomicInteger> data){
+        List<String> words = TextAnalyzer.seg(line);
+        words.forEach(word -> {
+            data.putIfAbsent(word, new AtomicInteger());
+            data.get(word).incrementAndGet();
+        });
+        words.clear();
+    }
+
+    private static Map<String, AtomicInteger> merge(Map<String, AtomicInteger> data, Map<String, AtomicInteger> other){
+        other.keySet().forEach(k -> {
+            data.putIfAbsent(k, new AtomicInteger());
+            data.get(k).addAndGet(other.get(k).get());
+        });
+        return data;
+    }
+
     /**
      *  CET4、CET6、GRE、IELTS、TOEFL、考研英语的词汇
      *  有哪些出现在了JDK的源代码中
@@ -0,0 +1,300 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.apdplat.superword.model.Word;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * 屈折变化到原形的索引
+ * 对词汇表中的每一个原形，按规则生成所有的屈折变化形式（-ly、-s、-es、-ies、-ed、-ing、-er、-est、-ves以及双写辅音），
+ * 建立变化形式到原形的映射，查找一个词的原形只需要一次哈希查找，
+ * 不需要对每个词逐条尝试去掉后缀再查词汇表，
+ * 索引按词汇表缓存，同一个词汇表只建立一次，
+ * 缓存的索引包含的变化形式总数不超过MAX_CACHED_FORMS，超过时先移除最久没有使用的
+ * @author 杨尚川
+ */
+public class LemmaIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LemmaIndex.class);
+
+    //全部词汇约4.5万个单词，索引约70万个变化形式
+    private static final int MAX_CACHED_FORMS = 2000000;
+    private static final Map<BitSet, LemmaIndex> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static int cachedForms = 0;
+
+    //不规则动词和不规则复数先后转换的结果，不在其中的词保持不变
+    private static final Map<String, String> IRREGULAR = new HashMap<>();
+    static {
+        Set<String> forms = new HashSet<>(IrregularVerbs.getForms());
+        forms.addAll(IrregularPlurals.getPlurals());
+        forms.forEach(form -> {
+            String lemma = IrregularPlurals.getSingular(IrregularVerbs.getBaseForm(form));
+            if(!lemma.equals(form)){
+                IRREGULAR.put(form, lemma);
+            }
+        });
+    }
+
+    /**
+     * 屈折变化规则，顺序即查找结果中原形的顺序
+     */
+    public enum Inflection {
+        LY("ly"),
+        S("s"),
+        ES("es"),
+        IES("ies"),
+        E_D("d"),
+        ED("ed"),
+        DOUBLE_ED("ed"),
+        IED("ied"),
+        E_ING("ing"),
+        DOUBLE_ING("ing"),
+        ING("ing"),
+        E_R("r"),
+        ER("er"),
+        DOUBLE_ER("er"),
+        E_ST("st"),
+        EST("est"),
+        DOUBLE_EST("est"),
+        IER("ier"),
+        IEST("iest"),
+        VES("ves");
+
+        private final String suffix;
+
+        Inflection(String suffix){
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+
+        /**
+         * @param lemma 原形
+         * @return 变化形式，规则不适用时返回null
+         */
+        private String inflect(String lemma){
+            int length = lemma.length();
+            char last = length > 0 ? lemma.charAt(length - 1) : 0;
+            switch (this){
+                //以e结尾的词只加d、ing去e、r、st
+                case E_D:
+                case E_R:
+                case E_ST:
+                    return last == 'e' ? lemma + suffix : null;
+                case E_ING:
+                    return last == 'e' ? lemma.substring(0, length - 1) + suffix : null;
+                //以y结尾的词变y为i
+                case IES:
+                case IED:
+                case IER:
+                case IEST:
+                    return last == 'y' ? lemma.substring(0, length - 1) + suffix : null;
+                case VES:
+                    return last == 'f' ? lemma.substring(0, length - 1) + suffix : null;
+                //双写最后一个字母
+                case DOUBLE_ED:
+                case DOUBLE_ING:
+                case DOUBLE_ER:
+                case DOUBLE_EST:
+                    return length > 2 ? lemma + last + suffix : null;
+                default:
+                    return lemma + suffix;
+            }
+        }
+    }
+
+    /**
+     * 一个变化形式对应的原形
+     */
+    public static class Lemma {
+        private final String word;
+        private final Inflection inflection;
+
+        private Lemma(String word, Inflection inflection) {
+            this.word = word;
+            this.inflection = inflection;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public Inflection getInflection() {
+            return inflection;
+        }
+
+        @Override
+        public String toString() {
+            return word + "+" + inflection;
+        }
+    }
+
+    private final BitSet vocabulary;
+    private final Map<String, Lemma[]> forms;
+
+    private LemmaIndex(BitSet vocabulary){
+        long start = System.currentTimeMillis();
+        this.vocabulary = vocabulary;
+        Map<String, List<Lemma>> data = new HashMap<>(vocabulary.cardinality() * 12);
+        Inflection[] inflections = Inflection.values();
+        //按规则的顺序生成，每个变化形式的原形列表自然按规则排序
+        for(Inflection inflection : inflections){
+            for(int id = vocabulary.nextSetBit(0); id >= 0; id = vocabulary.nextSetBit(id + 1)){
+                String lemma = WordIds.word(id).getWord();
+                String form = inflection.inflect(lemma);
+                if(form != null){
+                    data.computeIfAbsent(form, k -> new ArrayList<>(1)).add(new Lemma(lemma, inflection));
+                }
+            }
+        }
+        this.forms = new HashMap<>(data.size() * 4 / 3 + 1);
+        data.forEach((form, lemmas) -> forms.put(form, lemmas.toArray(new Lemma[lemmas.size()])));
+        LOGGER.info("build lemma index, words: " + vocabulary.cardinality() + ", forms: " + forms.size()
+                + ", cost: " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * 词汇表的索引，同一个词汇表只建立一次
+     * @param vocabulary 以单词编号为下标的词汇表，不能再修改
+     * @return 索引
+     */
+    public static LemmaIndex get(BitSet vocabulary){
+        synchronized (CACHE){
+            LemmaIndex index = CACHE.get(vocabulary);
+            if(index == null){
+                index = new LemmaIndex((BitSet) vocabulary.clone());
+                CACHE.put(index.vocabulary, index);
+                cachedForms += index.size();
+                //刚建立的索引总是保留
+                Iterator<LemmaIndex> iterator = CACHE.values().iterator();
+                while(cachedForms > MAX_CACHED_FORMS && CACHE.size() > 1){
+                    cachedForms -= iterator.next().size();
+                    iterator.remove();
+                }
+            }
+            return index;
+        }
+    }
+
+    public static LemmaIndex get(Collection<Word> words){
+        return get(WordIds.toBits(words));
+    }
+
+    /**
+     * 小写形式的词汇表的索引
+     */
+    public static LemmaIndex getLowerCase(Collection<Word> words){
+        BitSet bits = new BitSet(WordIds.size());
+        words.stream().filter(word -> word.getWord() != null).forEach(word -> bits.set(WordIds.intern(word.getWord().toLowerCase())));
+        return get(bits);
+    }
+
+    /**
+     * 不规则动词还原为原形，不规则复数还原为单数
+     * @param word 词
+     * @return 原形，不是不规则变化时返回词本身
+     */
+    public static String irregular(String word){
+        return IRREGULAR.getOrDefault(word, word);
+    }
+
+    /**
+     * @return 词是否在词汇表中
+     */
+    public boolean contains(String word){
+        int id = WordIds.id(word);
+        return id >= 0 && vocabulary.get(id);
+    }
+
+    /**
+     * 变化形式对应的所有原形，按规则的顺序排列
+     * @param form 变化形式
+     * @return 原形，没有时返回空数组
+     */
+    public Lemma[] lookup(String form){
+        Lemma[] lemmas = forms.get(form);
+        return lemmas == null ? new Lemma[0] : lemmas.clone();
+    }
+
+    /**
+     * 变化形式对应的所有原形
+     */
+    public List<String> lemmas(String form){
+        Lemma[] lemmas = forms.get(form);
+        if(lemmas == null){
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>(lemmas.length);
+        for(Lemma lemma : lemmas){
+            words.add(lemma.word);
+        }
+        return words;
+    }
+
+    /**
+     * 判断一个词是否是词汇表中某个名词的复数
+     * @param form 词
+     * @return 复数后缀ies、es或s，不是复数时返回null
+     */
+    public String getPluralSuffix(String form){
+        Lemma[] lemmas = forms.get(form);
+        if(lemmas == null){
+            return null;
+        }
+        boolean s = false;
+        boolean es = false;
+        for(Lemma lemma : lemmas){
+            String word = lemma.word;
+            switch (lemma.inflection){
+                //以辅音字母+y结尾，变y为i再加es
+                case IES:
+                    if(word.length() > 1 && !WordSources.isVowel(word.charAt(word.length() - 2))){
+                        return "ies";
+                    }
+                    break;
+                //以s、sh、ch、x结尾，加es
+                case ES:
+                    if(word.endsWith("s") || word.endsWith("sh") || word.endsWith("ch") || word.endsWith("x")){
+                        es = true;
+                    }
+                    break;
+                //一般情况，加s
+                case S:
+                    s = true;
+                    break;
+            }
+        }
+        //以ce、se、ze结尾的词加s，优先于加es
+        if(s && (form.endsWith("ces") || form.endsWith("ses") || form.endsWith("zes"))){
+            return "s";
+        }
+        if(es){
+            return "es";
+        }
+        return s ? "s" : null;
+    }
+
+    public int size(){
+        return forms.size();
+    }
+}
@@ -32,8 +32,7 @@ import javax.sql.DataSource;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -50,8 +49,6 @@ public class MySQLUtils {
 
     private static DataSource dataSource = null;
 
-    private static final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
-
     static {
         try {
             Class.forName(DRIVER);
@@ -61,6 +58,80 @@ public class MySQLUtils {
         }
     }
 
+    //用户历史记录延迟批量写入，每张表一个有界队列和一个写入线程
+    private static final WriteBehindQueue<UserSimilarWord> USER_SIMILAR_WORD_QUEUE = new WriteBehindQueue<>("user_similar_word",
+            "insert into user_similar_word (user_name, similar_word, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userSimilarWord) -> {
+                pst.setString(1, userSimilarWord.getUserName());
+                pst.setString(2, userSimilarWord.getSimilarWord());
+                pst.setString(3, MD5(userSimilarWord.getUserName()+userSimilarWord.getSimilarWord()));
+                pst.setTimestamp(4, new Timestamp(userSimilarWord.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserDynamicPrefix> USER_DYNAMIC_PREFIX_QUEUE = new WriteBehindQueue<>("user_dynamic_prefix",
+            "insert into user_dynamic_prefix (user_name, dynamic_prefix, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userDynamicPrefix) -> {
+                pst.setString(1, userDynamicPrefix.getUserName());
+                pst.setString(2, userDynamicPrefix.getDynamicPrefix());
+                pst.setString(3, MD5(userDynamicPrefix.getUserName()+userDynamicPrefix.getDynamicPrefix()));
+                pst.setTimestamp(4, new Timestamp(userDynamicPrefix.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserDynamicSuffix> USER_DYNAMIC_SUFFIX_QUEUE = new WriteBehindQueue<>("user_dynamic_suffix",
+            "insert into user_dynamic_suffix (user_name, dynamic_suffix, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userDynamicSuffix) -> {
+                pst.setString(1, userDynamicSuffix.getUserName());
+                pst.setString(2, userDynamicSuffix.getDynamicSuffix());
+                pst.setString(3, MD5(userDynamicSuffix.getUserName()+userDynamicSuffix.getDynamicSuffix()));
+                pst.setTimestamp(4, new Timestamp(userDynamicSuffix.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserBook> USER_BOOK_QUEUE = new WriteBehindQueue<>("user_book",
+            "insert into user_book (user_name, book, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userBook) -> {
+                pst.setString(1, userBook.getUserName());
+                pst.setString(2, userBook.getBook());
+                pst.setString(3, MD5(userBook.getUserName()+userBook.getBook()));
+                pst.setTimestamp(4, new Timestamp(userBook.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserUrl> USER_URL_QUEUE = new WriteBehindQueue<>("user_url",
+            "insert into user_url (user_name, url, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userUrl) -> {
+                pst.setString(1, userUrl.getUserName());
+                pst.setString(2, userUrl.getUrl());
+                pst.setString(3, MD5(userUrl.getUserName()+userUrl.getUrl()));
+                pst.setTimestamp(4, new Timestamp(userUrl.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserText> USER_TEXT_QUEUE = new WriteBehindQueue<>("user_text",
+            "insert into user_text (user_name, text, md5, date_time) values (?, ?, ?, ?)",
+            (pst, userText) -> {
+                pst.setString(1, userText.getUserName());
+                pst.setString(2, userText.getText());
+                pst.setString(3, MD5(userText.getUserName() + userText.getText()));
+                pst.setTimestamp(4, new Timestamp(userText.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<MyNewWord> MY_NEW_WORDS_QUEUE = new WriteBehindQueue<>("my_new_words",
+            "insert into my_new_words (user_name, word, date_time) values (?, ?, ?)",
+            (pst, myNewWord) -> {
+                pst.setString(1, myNewWord.getUserName());
+                pst.setString(2, myNewWord.getWord());
+                pst.setTimestamp(3, new Timestamp(myNewWord.getDateTime().getTime()));
+            });
+    private static final WriteBehindQueue<UserWord> USER_WORD_QUEUE = new WriteBehindQueue<>("user_word",
+            "insert into user_word (user_name, word, date_time) values (?, ?, ?)",
+            (pst, userWord) -> {
+                pst.setString(1, userWord.getUserName());
+                pst.setString(2, userWord.getWord());
+                pst.setTimestamp(3, new Timestamp(userWord.getDateTime().getTime()));
+            });
+    private static final List<WriteBehindQueue<?>> WRITE_BEHIND_QUEUES = Collections.unmodifiableList(Arrays.asList(
+            USER_SIMILAR_WORD_QUEUE, USER_DYNAMIC_PREFIX_QUEUE, USER_DYNAMIC_SUFFIX_QUEUE, USER_BOOK_QUEUE,
+            USER_URL_QUEUE, USER_TEXT_QUEUE, MY_NEW_WORDS_QUEUE, USER_WORD_QUEUE));
+
+    //命令行工具没有调用shutdown()时，JVM退出前写完队列中剩下的记录
+    private static final Thread SHUTDOWN_HOOK = new Thread(MySQLUtils::shutdown, "write-behind-shutdown");
+    private static final AtomicBoolean SHUTDOWN = new AtomicBoolean();
+    static {
+        Runtime.getRuntime().addShutdownHook(SHUTDOWN_HOOK);
+    }
+
     private MySQLUtils() {
     }
 
@@ -133,6 +204,7 @@ public class MySQLUtils {
             pst.setString(2, dictionary);
             pst.setString(3, pronunciation);
             pst.executeUpdate();
+            DictionaryStore.update(DictionaryStore.PRONUNCIATION, dictionary, word, pronunciation);
         } catch (SQLException e) {
             LOG.error("单词音标保存失败", e);
         } finally {
@@ -151,7 +223,9 @@ public class MySQLUtils {
         try {
             pst = con.prepareStatement(sql);
             pst.setString(1, word);
-            return pst.execute();
+            boolean result = pst.execute();
+            DictionaryStore.delete(DictionaryStore.DEFINITION, word);
+            return result;
         } catch (SQLException e) {
             LOG.error("删除单词定义失败", e);
         } finally {
@@ -162,34 +236,13 @@ public class MySQLUtils {
 
     public static Map<String, String> getWordAndPronunciationBySymbol(String symbol, String dictionary, int limit, Set<Word> words) {
         Map<String, String> map = new LinkedHashMap<>();
-        String sql = "select word, pronunciation from word_pronunciation where dictionary=?";
-        Connection con = getConnection();
-        if(con == null){
-            return map;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, dictionary);
-            rs = pst.executeQuery();
-            while (rs.next()) {
-                String word = rs.getString(1);
-                String pronunciation = rs.getString(2);
-                if (words.contains(new Word(word, ""))
-                        && StringUtils.isNotBlank(pronunciation)
-                        && pronunciation.contains(symbol)) {
-                    map.put(word, pronunciation);
-                }
-                if(map.size() >= limit){
-                    break;
-                }
+        DictionaryStore.pronunciations(dictionary).forEach((word, pronunciation) -> {
+            if(map.size() < limit
+                    && pronunciation.contains(symbol)
+                    && words.contains(new Word(word, ""))) {
+                map.put(word, pronunciation);
             }
-        } catch (SQLException e) {
-            LOG.error("根据音标符号查询单词失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        });
         return map;
     }
 
@@ -231,33 +284,17 @@ public class MySQLUtils {
 
     public static Map<String, Set<String>> getAllWordPronunciation(String dictionary, Set<Word> words) {
         Map<String, Set<String>> map = new HashMap<>();
-        String sql = "select word, pronunciation from word_pronunciation where dictionary=?";
-        Connection con = getConnection();
-        if(con == null){
-            return map;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, dictionary);
-            rs = pst.executeQuery();
-            while (rs.next()) {
-                String word = rs.getString(1);
-                String pronunciation = rs.getString(2);
-                if(StringUtils.isNotBlank(word)
-                        && StringUtils.isNotBlank(pronunciation)
-                        && words.contains(new Word(word, ""))) {
-                    for(String item : extractPurePronunciation(pronunciation)){
-                        map.putIfAbsent(item, new HashSet());
-                        map.get(item).add(word);
-                    }
+        DictionaryStore store = DictionaryStore.pronunciations(dictionary);
+        for(Word w : words){
+            String word = w.getWord();
+            String pronunciation = store.get(word);
+            if(StringUtils.isNotBlank(word)
+                    && StringUtils.isNotBlank(pronunciation)) {
+                for(String item : extractPurePronunciation(pronunciation)){
+                    map.putIfAbsent(item, new HashSet());
+                    map.get(item).add(word);
                 }
             }
-        } catch (SQLException e) {
-            LOG.error("查询所有单词音标失败", e);
-        } finally {
-            close(con, pst, rs);
         }
         return map;
     }
@@ -276,30 +313,14 @@ public class MySQLUtils {
 
     public static Map<String, String> getAllWordDefinitionMap(String dictionary, Set<Word> words) {
         Map<String, String> map = new HashMap<>();
-        String sql = "select word, definition from word_definition where dictionary=?";
-        Connection con = getConnection();
-        if(con == null){
-            return map;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, dictionary);
-            rs = pst.executeQuery();
-            while (rs.next()) {
-                String word = rs.getString(1);
-                String definition = rs.getString(2);
-                if(StringUtils.isNotBlank(word)
-                        && StringUtils.isNotBlank(definition)
-                        && words.contains(new Word(word, ""))) {
-                    map.put(word, definition);
-                }
+        DictionaryStore store = DictionaryStore.definitions(dictionary);
+        for(Word w : words){
+            String word = w.getWord();
+            String definition = store.get(word);
+            if(StringUtils.isNotBlank(word)
+                    && StringUtils.isNotBlank(definition)) {
+                map.put(word, definition);
             }
-        } catch (SQLException e) {
-            LOG.error("查询所有单词定义失败", e);
-        } finally {
-            close(con, pst, rs);
         }
         return map;
     }
@@ -328,6 +349,91 @@ public class MySQLUtils {
         return "";
     }
 
+    /**
+     * 批量查询单词定义，一次查询取回所有单词在所有词典中的定义
+     * 每个单词按fallbackOrder的顺序取第一个非空的定义，都没有则为空字符串
+     * @param words 单词
+     * @param fallbackOrder 词典的优先顺序
+     * @return 单词到定义的映射，顺序和words一致
+     */
+    public static Map<String, String> getWordDefinitions(Collection<String> words, List<WordLinker.Dictionary> fallbackOrder) {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        words.forEach(word -> definitions.put(word, ""));
+        if(definitions.isEmpty() || fallbackOrder.isEmpty()){
+            return definitions;
+        }
+        //MySQL默认的排序规则不区分大小写、忽略尾部空格，返回的可能是大小写不同的单词，
+        //按规范化的单词匹配，单词 -> 词典 -> 定义
+        Map<String, Map<String, String>> found = new HashMap<>();
+        //和输入完全相同的单词优先
+        Map<String, Map<String, String>> exact = new HashMap<>();
+        List<String> uniqueWords = new ArrayList<>(definitions.keySet());
+        //限制IN子句的长度
+        int batchSize = 1000;
+        for(int start=0; start<uniqueWords.size(); start+=batchSize){
+            List<String> batch = uniqueWords.subList(start, Math.min(start + batchSize, uniqueWords.size()));
+            String sql = "select word, dictionary, definition from word_definition where dictionary in ("
+                    + placeholders(fallbackOrder.size()) + ") and word in (" + placeholders(batch.size()) + ")";
+            Connection con = getConnection();
+            if(con == null){
+                return definitions;
+            }
+            PreparedStatement pst = null;
+            ResultSet rs = null;
+            try {
+                pst = con.prepareStatement(sql);
+                int index = 1;
+                for(WordLinker.Dictionary dictionary : fallbackOrder){
+                    pst.setString(index++, dictionary.name());
+                }
+                for(String word : batch){
+                    pst.setString(index++, word);
+                }
+                rs = pst.executeQuery();
+                while (rs.next()) {
+                    String word = rs.getString(1);
+                    String dictionary = rs.getString(2);
+                    String definition = rs.getString(3);
+                    if(word == null || StringUtils.isBlank(definition)) {
+                        continue;
+                    }
+                    found.computeIfAbsent(normalize(word), k -> new HashMap<>()).putIfAbsent(dictionary, definition);
+                    if(definitions.containsKey(word)){
+                        exact.computeIfAbsent(word, k -> new HashMap<>()).putIfAbsent(dictionary, definition);
+                    }
+                }
+            } catch (SQLException e) {
+                LOG.error("批量查询单词定义失败", e);
+            } finally {
+                close(con, pst, rs);
+            }
+        }
+        definitions.keySet().forEach(word -> {
+            Map<String, String> exactMap = exact.getOrDefault(word, Collections.emptyMap());
+            Map<String, String> map = word == null ? Collections.emptyMap() : found.getOrDefault(normalize(word), Collections.emptyMap());
+            for(WordLinker.Dictionary dictionary : fallbackOrder){
+                String definition = exactMap.getOrDefault(dictionary.name(), map.get(dictionary.name()));
+                if(definition != null){
+                    definitions.put(word, definition);
+                    break;
+                }
+            }
+        });
+        return definitions;
+    }
+
+    private static String normalize(String word){
+        return StringUtils.stripEnd(word, " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String placeholders(int count){
+        StringBuilder placeholders = new StringBuilder();
+        for(int i=0; i<count; i++){
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
     public static void saveWordDefinition(String word, String dictionary, String definition) {
         String sql = "insert into word_definition (word, dictionary, definition) values (?, ?, ?)";
         Connection con = getConnection();
@@ -342,6 +448,7 @@ public class MySQLUtils {
             pst.setString(2, dictionary);
             pst.setString(3, definition);
             pst.executeUpdate();
+            DictionaryStore.update(DictionaryStore.DEFINITION, dictionary, word, definition);
         } catch (SQLException e) {
             LOG.error("单词定义保存失败", e);
         } finally {
@@ -752,159 +859,51 @@ public class MySQLUtils {
     }
 
     public static void saveUserSimilarWordToDatabase(UserSimilarWord userSimilarWord) {
-        EXECUTOR_SERVICE.execute(()->_saveUserSimilarWordToDatabase(userSimilarWord));
+        USER_SIMILAR_WORD_QUEUE.offer(userSimilarWord);
     }
 
     public static void _saveUserSimilarWordToDatabase(UserSimilarWord userSimilarWord) {
-        String sql = "insert into user_similar_word (user_name, similar_word, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userSimilarWord.getUserName());
-            pst.setString(2, userSimilarWord.getSimilarWord());
-            pst.setString(3, MD5(userSimilarWord.getUserName()+userSimilarWord.getSimilarWord()));
-            pst.setTimestamp(4, new Timestamp(userSimilarWord.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_SIMILAR_WORD_QUEUE.write(userSimilarWord);
     }
 
     public static void saveUserDynamicPrefixToDatabase(UserDynamicPrefix userDynamicPrefix) {
-        EXECUTOR_SERVICE.execute(()->_saveUserDynamicPrefixToDatabase(userDynamicPrefix));
+        USER_DYNAMIC_PREFIX_QUEUE.offer(userDynamicPrefix);
     }
 
     public static void _saveUserDynamicPrefixToDatabase(UserDynamicPrefix userDynamicPrefix) {
-        String sql = "insert into user_dynamic_prefix (user_name, dynamic_prefix, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userDynamicPrefix.getUserName());
-            pst.setString(2, userDynamicPrefix.getDynamicPrefix());
-            pst.setString(3, MD5(userDynamicPrefix.getUserName()+userDynamicPrefix.getDynamicPrefix()));
-            pst.setTimestamp(4, new Timestamp(userDynamicPrefix.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_DYNAMIC_PREFIX_QUEUE.write(userDynamicPrefix);
     }
 
     public static void saveUserDynamicSuffixToDatabase(UserDynamicSuffix userDynamicSuffix) {
-        EXECUTOR_SERVICE.execute(()->_saveUserDynamicSuffixToDatabase(userDynamicSuffix));
+        USER_DYNAMIC_SUFFIX_QUEUE.offer(userDynamicSuffix);
     }
 
     public static void _saveUserDynamicSuffixToDatabase(UserDynamicSuffix userDynamicSuffix) {
-        String sql = "insert into user_dynamic_suffix (user_name, dynamic_suffix, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userDynamicSuffix.getUserName());
-            pst.setString(2, userDynamicSuffix.getDynamicSuffix());
-            pst.setString(3, MD5(userDynamicSuffix.getUserName()+userDynamicSuffix.getDynamicSuffix()));
-            pst.setTimestamp(4, new Timestamp(userDynamicSuffix.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_DYNAMIC_SUFFIX_QUEUE.write(userDynamicSuffix);
     }
 
     public static void saveUserBookToDatabase(UserBook userBook) {
-        EXECUTOR_SERVICE.execute(()->_saveUserBookToDatabase(userBook));
+        USER_BOOK_QUEUE.offer(userBook);
     }
 
     public static void _saveUserBookToDatabase(UserBook userBook) {
-        String sql = "insert into user_book (user_name, book, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userBook.getUserName());
-            pst.setString(2, userBook.getBook());
-            pst.setString(3, MD5(userBook.getUserName()+userBook.getBook()));
-            pst.setTimestamp(4, new Timestamp(userBook.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_BOOK_QUEUE.write(userBook);
     }
 
     public static void saveUserUrlToDatabase(UserUrl userUrl) {
-        EXECUTOR_SERVICE.execute(()->_saveUserUrlToDatabase(userUrl));
+        USER_URL_QUEUE.offer(userUrl);
     }
 
     public static void _saveUserUrlToDatabase(UserUrl userUrl) {
-        String sql = "insert into user_url (user_name, url, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userUrl.getUserName());
-            pst.setString(2, userUrl.getUrl());
-            pst.setString(3, MD5(userUrl.getUserName()+userUrl.getUrl()));
-            pst.setTimestamp(4, new Timestamp(userUrl.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_URL_QUEUE.write(userUrl);
     }
 
     public static void saveUserTextToDatabase(UserText userText) {
-        EXECUTOR_SERVICE.execute(()->_saveUserTextToDatabase(userText));
+        USER_TEXT_QUEUE.offer(userText);
     }
 
     public static void _saveUserTextToDatabase(UserText userText) {
-        String sql = "insert into user_text (user_name, text, md5, date_time) values (?, ?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userText.getUserName());
-            pst.setString(2, userText.getText());
-            pst.setString(3, MD5(userText.getUserName() + userText.getText()));
-            pst.setTimestamp(4, new Timestamp(userText.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        USER_TEXT_QUEUE.write(userText);
     }
 
     /**
@@ -932,53 +931,53 @@ public class MySQLUtils {
     }
 
     public static void saveMyNewWordsToDatabase(MyNewWord myNewWord) {
-        EXECUTOR_SERVICE.execute(()->_saveMyNewWordsToDatabase(myNewWord));
+        MY_NEW_WORDS_QUEUE.offer(myNewWord);
     }
 
     public static void _saveMyNewWordsToDatabase(MyNewWord myNewWord) {
-        String sql = "insert into my_new_words (user_name, word, date_time) values (?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
-        }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, myNewWord.getUserName());
-            pst.setString(2, myNewWord.getWord());
-            pst.setTimestamp(3, new Timestamp(myNewWord.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存我的生词失败", e);
-        } finally {
-            close(con, pst, rs);
-        }
+        MY_NEW_WORDS_QUEUE.write(myNewWord);
     }
 
     public static void saveUserWordToDatabase(UserWord userWord) {
-        EXECUTOR_SERVICE.execute(()->_saveUserWordToDatabase(userWord));
+        USER_WORD_QUEUE.offer(userWord);
     }
 
     public static void _saveUserWordToDatabase(UserWord userWord) {
-        String sql = "insert into user_word (user_name, word, date_time) values (?, ?, ?)";
-        Connection con = getConnection();
-        if(con == null){
-            return ;
+        USER_WORD_QUEUE.write(userWord);
+    }
+
+    /**
+     * 所有延迟批量写入队列，用于查看队列长度和写入耗时
+     * @return 写入队列
+     */
+    public static List<WriteBehindQueue<?>> getWriteBehindQueues() {
+        return WRITE_BEHIND_QUEUES;
+    }
+
+    /**
+     * 停止接收新的历史记录，并写完队列中剩下的记录，
+     * 所有队列同时停止，共用同一个最长等待时间，
+     * 最后把有增量修改的词典存储保存到快照，
+     * 只执行一次，应用主动调用时注销关闭钩子，重新部署时不再持有应用的类加载器
+     */
+    public static void shutdown() {
+        if(!SHUTDOWN.compareAndSet(false, true)){
+            return;
         }
-        PreparedStatement pst = null;
-        ResultSet rs = null;
-        try {
-            pst = con.prepareStatement(sql);
-            pst.setString(1, userWord.getUserName());
-            pst.setString(2, userWord.getWord());
-            pst.setTimestamp(3, new Timestamp(userWord.getDateTime().getTime()));
-            pst.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("保存失败", e);
-        } finally {
-            close(con, pst, rs);
+        if(Thread.currentThread() != SHUTDOWN_HOOK){
+            try {
+                Runtime.getRuntime().removeShutdownHook(SHUTDOWN_HOOK);
+            } catch (IllegalStateException e) {
+                //JVM已经在退出
+            }
         }
+        WRITE_BEHIND_QUEUES.forEach(WriteBehindQueue::shutdown);
+        long deadline = System.currentTimeMillis() + 10000;
+        WRITE_BEHIND_QUEUES.forEach(queue -> {
+            queue.awaitTermination(deadline - System.currentTimeMillis());
+            LOG.info(queue.getTable() + " " + queue.getMetrics());
+        });
+        DictionaryStore.saveSnapshots();
     }
 
     public static Connection getConnection() {
@@ -93,6 +93,20 @@ public class PdfParser {
      */
     public static String parsePdfFileToPlainText(String file) {
         try(InputStream stream = new FileInputStream(file)) {
+            return parsePdfToPlainText(stream);
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    /**
+     * 将PDF输入流解析为文本
+     * @param stream PDF输入流，由调用方负责关闭
+     * @return 提取的文本
+     */
+    public static String parsePdfToPlainText(InputStream stream) {
+        try {
             BodyContentHandler handler = new BodyContentHandler(Integer.MAX_VALUE);
             Metadata metadata = new Metadata();
             PARSER.parse(stream, handler, metadata);
@@ -130,35 +144,32 @@ public class PdfParser {
         }
     }
     public static void parseZip(String zipFile){
-        long start = System.currentTimeMillis();
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/it-software-domain-temp.pdf");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        parseFile(temp.toFile().getAbsolutePath());
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
-        long cost=System.currentTimeMillis()-start;
-        LOGGER.info("解析完毕，耗时："+cost+"毫秒");
+        //直接从ZIP文件中流式读取PDF交给Tika解析，不再拷贝到临时文件，多个PDF并行处理
+        ZipProcessor.getDefault().entries(zipFile, PdfParser::parseEntry, Collectors.toList());
     }
     public static String parseFile(String file) {
         return parseFile(Paths.get(file));
     }
     public static String parseFile(Path file) {
+        try(InputStream stream = new FileInputStream(file.toFile())) {
+            return parse(file, stream);
+        }catch (Exception e){
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    /**
+     * 解析ZIP文件中的一个PDF条目
+     * @param name 条目名称
+     * @param stream 条目内容
+     * @return 生成的文件
+     */
+    public static String parseEntry(String name, InputStream stream) {
+        return parse(Paths.get(name), stream);
+    }
+
+    private static String parse(Path file, InputStream stream) {
         try {
             if(invalid(file)){
                 return null;
@@ -168,7 +179,7 @@ public class PdfParser {
             LOGGER.info("处理文件：" + sourceName);
             LOGGER.info("生成文件：" + targetName);
             //解析文本
-            String text = parsePdfFileToPlainText(sourceName);
+            String text = parsePdfToPlainText(stream);
             //处理文本
             List<String> sentences = toSentence(text);
             //保存文本
@@ -701,10 +712,10 @@ public class PdfParser {
      */
     private static String prepareTarget(Path file){
         try {
-            String fileName = file.toFile().getAbsolutePath();
-            String targetName = "src/main/resources/it"
-                    + fileName.replace(file.getParent().getParent().toFile().getAbsolutePath(), "").replace(".pdf", "")
-                    + ".txt";
+            //保留所在目录和文件名，ZIP条目可能只有一层目录或者没有目录
+            int count = file.getNameCount();
+            Path relative = file.subpath(Math.max(0, count - 2), count);
+            String targetName = Paths.get("src/main/resources/it", relative.toString().replace(".pdf", "") + ".txt").toString();
             Path target = Paths.get(targetName);
             //删除以前生成的文件
             Files.deleteIfExists(target);
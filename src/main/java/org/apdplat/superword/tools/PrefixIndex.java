@@ -0,0 +1,181 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * 前缀索引
+ * 所有的词按小写形式排好序存放在数组中，
+ * 以某个前缀开头的词在数组中是连续的一段，用二分查找就能定位
+ * @author 杨尚川
+ */
+public class PrefixIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefixIndex.class);
+    //前缀匹配的词数超过这个值时缓存排序结果
+    private static final int CACHE_THRESHOLD = 256;
+
+    //小写形式，已排序
+    private final String[] keys;
+    //原始的词，和keys一一对应
+    private final String[] words;
+    //排序权重，越小越靠前
+    private final int[] ranks;
+    private final Map<String, List<String>> topCache = new ConcurrentHashMap<>();
+    private final int topCacheLimit;
+
+    public PrefixIndex(Collection<String> words){
+        this(words, word -> 0, 0);
+    }
+
+    /**
+     * @param words 词
+     * @param rank 词的排序权重，越小越靠前，权重相同的短词在前，长度相同的按字母顺序
+     * @param topCacheLimit top方法缓存的结果数目
+     */
+    public PrefixIndex(Collection<String> words, ToIntFunction<String> rank, int topCacheLimit){
+        long start = System.currentTimeMillis();
+        String[] sorted = words.toArray(new String[words.size()]);
+        Arrays.sort(sorted, (a, b) -> {
+            int c = a.toLowerCase().compareTo(b.toLowerCase());
+            return c != 0 ? c : a.compareTo(b);
+        });
+        this.keys = new String[sorted.length];
+        this.words = sorted;
+        this.ranks = new int[sorted.length];
+        for(int i=0; i<sorted.length; i++){
+            keys[i] = sorted[i].toLowerCase();
+            ranks[i] = rank.applyAsInt(sorted[i]);
+        }
+        this.topCacheLimit = topCacheLimit;
+        LOGGER.info("构建前缀索引，词数：" + sorted.length + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+    }
+
+    public int size(){
+        return words.length;
+    }
+
+    public String get(int index){
+        return words[index];
+    }
+
+    /**
+     * 以prefix开头的词的起始位置（包含）
+     * @param prefix 小写的前缀
+     * @return 位置
+     */
+    public int from(String prefix){
+        int low = 0;
+        int high = keys.length;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if(keys[middle].compareTo(prefix) < 0){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 以prefix开头的词的结束位置（不包含）
+     * @param prefix 小写的前缀
+     * @return 位置
+     */
+    public int to(String prefix){
+        int low = from(prefix);
+        int high = keys.length;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if(keys[middle].startsWith(prefix)){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 以prefix开头的所有词，按字母顺序排列
+     * @param prefix 前缀，不区分大小写
+     * @return 词
+     */
+    public List<String> getWords(String prefix){
+        prefix = prefix.toLowerCase();
+        return Arrays.asList(words).subList(from(prefix), to(prefix));
+    }
+
+    /**
+     * 以prefix开头的词中排序权重最靠前的limit个
+     * @param prefix 前缀，不区分大小写
+     * @param limit 数目
+     * @return 词
+     */
+    public List<String> top(String prefix, int limit){
+        prefix = prefix.toLowerCase();
+        int from = from(prefix);
+        int to = to(prefix);
+        if(to - from > CACHE_THRESHOLD && limit <= topCacheLimit){
+            List<String> top = topCache.get(prefix);
+            if(top == null){
+                top = top(from, to, topCacheLimit);
+                topCache.put(prefix, top);
+            }
+            return top.size() > limit ? top.subList(0, limit) : top;
+        }
+        return top(from, to, limit);
+    }
+
+    private List<String> top(int from, int to, int limit){
+        //堆顶是当前最靠后的
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, limit), (a, b) -> compare(b, a));
+        for(int i=from; i<to; i++){
+            if(heap.size() < limit){
+                heap.add(i);
+            }else if(limit > 0 && compare(i, heap.peek()) < 0){
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        List<Integer> indexes = new ArrayList<>(heap);
+        indexes.sort(this::compare);
+        List<String> result = new ArrayList<>(indexes.size());
+        indexes.forEach(i -> result.add(words[i]));
+        return result;
+    }
+
+    private int compare(int a, int b){
+        int c = Integer.compare(ranks[a], ranks[b]);
+        if(c != 0){
+            return c;
+        }
+        c = Integer.compare(words[a].length(), words[b].length());
+        if(c != 0){
+            return c;
+        }
+        return Integer.compare(a, b);
+    }
+}
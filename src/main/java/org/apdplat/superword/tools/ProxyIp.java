@@ -43,7 +43,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -66,6 +69,13 @@ public class ProxyIp {
     private static final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.10; rv:36.0) Gecko/20100101 Firefox/36.0";
     private static volatile boolean isSwitching = false;
     private static volatile long lastSwitchTime = 0l;
+    //异步更换代理的线程，不占用调用者的线程
+    private static final ExecutorService SWITCH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "proxy-ip-switch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static CompletableFuture<Boolean> switching = null;
     private static final WebClient WEB_CLIENT = new WebClient(BrowserVersion.INTERNET_EXPLORER_11);
     private static final Pattern IP_PATTERN = Pattern.compile("((?:(?:25[0-5]|2[0-4]\\d|((1\\d{2})|([1-9]?\\d)))\\.){3}(?:25[0-5]|2[0-4]\\d|((1\\d{2})|([1-9]?\\d))))");
     //可用代理IP列表
@@ -204,6 +214,20 @@ public class ProxyIp {
         return IPS.get(index);
     }
 
+    /**
+     * 在单独的线程中更换代理，用于异步的抓取流程，
+     * 正在更换时返回同一个结果，不会重复更换
+     * @return 更换结果
+     */
+    public static CompletableFuture<Boolean> toNewIpAsync() {
+        synchronized (SWITCH_EXECUTOR) {
+            if (switching == null || switching.isDone()) {
+                switching = CompletableFuture.supplyAsync(ProxyIp::toNewIp, SWITCH_EXECUTOR);
+            }
+            return switching;
+        }
+    }
+
     public static boolean toNewIp() {
         long requestSwitchTime = System.currentTimeMillis();
         LOGGER.info(Thread.currentThread()+"请求重新更换代理");
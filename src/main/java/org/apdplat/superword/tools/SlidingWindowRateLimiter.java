@@ -0,0 +1,304 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 分段加锁的滑动窗口计数器
+ * 每个客户端一个紧凑的计数窗口：把时间窗口等分为若干个桶，只保存每个桶的计数、
+ * 当前桶的序号和总数，时间推进时清空过期的桶，不需要保存每一次访问的时间，
+ * 客户端按哈希值分散到多个段中，每段一把锁，不同段的访问互不阻塞，
+ * 每段是按访问顺序排列的LinkedHashMap，超过容量时淘汰最久没有访问的客户端，
+ * 内存占用有上限
+ * @author 杨尚川
+ */
+public class SlidingWindowRateLimiter<K> {
+    private final long windowMillis;
+    private final int buckets;
+    private final long bucketMillis;
+    private final Segment<K>[] segments;
+    private final int mask;
+    private final LongSupplier clock;
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param windowMillis 时间窗口的毫秒数
+     * @param buckets 窗口等分的桶数，越多越精确
+     * @param segments 段数，会调整为2的幂
+     * @param maxClients 最多保存的客户端数
+     */
+    public SlidingWindowRateLimiter(long windowMillis, int buckets, int segments, int maxClients){
+        this(windowMillis, buckets, segments, maxClients, System::currentTimeMillis);
+    }
+
+    SlidingWindowRateLimiter(long windowMillis, int buckets, int segments, int maxClients, LongSupplier clock){
+        this.buckets = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1, windowMillis / this.buckets);
+        this.windowMillis = this.bucketMillis * this.buckets;
+        int size = Integer.highestOneBit(Math.max(1, segments - 1)) << 1;
+        this.segments = newSegments(size, Math.max(1, maxClients / size), evictions);
+        this.mask = size - 1;
+        this.clock = clock;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K> Segment<K>[] newSegments(int size, int capacity, AtomicLong evictions){
+        Segment<K>[] segments = new Segment[size];
+        for(int i=0; i<size; i++){
+            segments[i] = new Segment<>(capacity, evictions);
+        }
+        return segments;
+    }
+
+    private Segment<K> segment(K key){
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & mask];
+    }
+
+    /**
+     * 记录一次访问
+     * @param key 客户端
+     * @return 时间窗口内包括这一次在内的访问次数
+     */
+    public int acquire(K key){
+        long now = clock.getAsLong();
+        long bucket = now / bucketMillis;
+        Segment<K> segment = segment(key);
+        synchronized (segment){
+            Window window = segment.get(key);
+            if(window == null){
+                window = new Window(buckets, bucket, now);
+                segment.put(key, window);
+            }
+            return window.increment(bucket, now);
+        }
+    }
+
+    /**
+     * 记录一次访问，并判断是否超过限制
+     * @param key 客户端
+     * @param limit 时间窗口内最多允许的访问次数
+     * @return 没有超过限制返回true
+     */
+    public boolean tryAcquire(K key, int limit){
+        return acquire(key) <= limit;
+    }
+
+    /**
+     * 时间窗口内的访问次数，不记录访问
+     */
+    public int count(K key){
+        long bucket = clock.getAsLong() / bucketMillis;
+        Segment<K> segment = segment(key);
+        synchronized (segment){
+            Window window = segment.get(key);
+            return window == null ? 0 : window.count(bucket);
+        }
+    }
+
+    /**
+     * 删除时间窗口内没有访问的客户端
+     * @return 删除的客户端数
+     */
+    public int evictExpired(){
+        long bucket = clock.getAsLong() / bucketMillis;
+        int count = 0;
+        for(Segment<K> segment : segments){
+            synchronized (segment){
+                Iterator<Window> iterator = segment.values().iterator();
+                while (iterator.hasNext()){
+                    if(iterator.next().count(bucket) == 0){
+                        iterator.remove();
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 逐段复制当前所有客户端的计数，不阻塞其他段的访问
+     * @return 按访问次数从多到少排列
+     */
+    public List<Entry<K>> snapshot(){
+        long bucket = clock.getAsLong() / bucketMillis;
+        List<Entry<K>> entries = new ArrayList<>();
+        for(Segment<K> segment : segments){
+            synchronized (segment){
+                segment.forEach((key, window) -> {
+                    int count = window.count(bucket);
+                    if(count > 0){
+                        entries.add(new Entry<>(key, count, window.firstAccess, window.lastAccess));
+                    }
+                });
+            }
+        }
+        entries.sort((a, b) -> Integer.compare(b.count, a.count));
+        return entries;
+    }
+
+    public int size(){
+        int size = 0;
+        for(Segment<K> segment : segments){
+            synchronized (segment){
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear(){
+        for(Segment<K> segment : segments){
+            synchronized (segment){
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 因为超过容量被淘汰的客户端数
+     */
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    public long getWindowMillis(){
+        return windowMillis;
+    }
+
+    /**
+     * 按访问顺序排列，超过容量时淘汰最久没有访问的客户端
+     */
+    private static class Segment<K> extends LinkedHashMap<K, Window> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        private final AtomicLong evictions;
+
+        private Segment(int capacity, AtomicLong evictions){
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Window> eldest){
+            if(size() > capacity){
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一个客户端的计数窗口，只在所属段的锁内访问
+     */
+    private static class Window {
+        private final int[] counts;
+        //最近一次访问所在的桶的序号
+        private long bucket;
+        private int total;
+        private final long firstAccess;
+        private long lastAccess;
+
+        private Window(int buckets, long bucket, long now){
+            this.counts = new int[buckets];
+            this.bucket = bucket;
+            this.firstAccess = now;
+        }
+
+        private void advance(long current){
+            if(current <= bucket){
+                return;
+            }
+            if(current - bucket >= counts.length){
+                Arrays.fill(counts, 0);
+                total = 0;
+            }else{
+                for(long b=bucket+1; b<=current; b++){
+                    int i = (int) (b % counts.length);
+                    total -= counts[i];
+                    counts[i] = 0;
+                }
+            }
+            bucket = current;
+        }
+
+        private int increment(long current, long now){
+            advance(current);
+            counts[(int) (bucket % counts.length)]++;
+            lastAccess = now;
+            return ++total;
+        }
+
+        private int count(long current){
+            if(current - bucket >= counts.length){
+                return 0;
+            }
+            //不修改窗口，减去已经滑出窗口的桶
+            int count = total;
+            for(long b=bucket+1; b<=current; b++){
+                count -= counts[(int) (b % counts.length)];
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 一个客户端的计数快照
+     */
+    public static class Entry<K> {
+        private final K key;
+        private final int count;
+        private final long firstAccess;
+        private final long lastAccess;
+
+        public Entry(K key, int count, long firstAccess, long lastAccess) {
+            this.key = key;
+            this.count = count;
+            this.firstAccess = firstAccess;
+            this.lastAccess = lastAccess;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getFirstAccess() {
+            return firstAccess;
+        }
+
+        public long getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
@@ -26,7 +26,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
@@ -159,59 +158,13 @@ public class Summary {
      */
     public static Map<String, Map<String, List<String>>> findEvidence(Path dir, List<String> words, int totalLimitForWord, int bookLimitForBook) {
         LOGGER.info("处理目录：" + dir);
-        Map<String, Map<String, List<String>>> data = new LinkedHashMap<>();
-        Map<String, AtomicInteger> wordInOneBookCollectCount = new HashMap<>();
-        Map<String, AtomicInteger> wordInAllBookCollectCount = new HashMap<>();
-        Set<Integer> hashes =new HashSet<>();
+        //通过倒排索引只读取包含这些词的行，结果和逐行扫描所有文件一致
         try {
-            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    String fileName = file.toFile().getAbsolutePath();
-                    if (file.toFile().getName().startsWith(".")) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                    if (!fileName.endsWith(".txt")) {
-                        LOGGER.info("放弃处理非txt文件：" + fileName);
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    LOGGER.info("处理文件：" + fileName);
-                    List<String> lines = Files.readAllLines(file);
-                    String book = file.toFile().getName().replace(".txt", "");
-                    lines.forEach(line -> {
-                        //忽略重复出现的句子
-                        if(hashes.contains(line.hashCode())){
-                            return;
-                        }
-                        final List<String> wordSet = TextAnalyzer.seg(line);
-                        words
-                            .forEach(word -> {
-                                String wordBook = word + "_" + book;
-                                wordInOneBookCollectCount.putIfAbsent(wordBook, new AtomicInteger());
-                                wordInAllBookCollectCount.putIfAbsent(word, new AtomicInteger());
-                                data.putIfAbsent(word, new HashMap<>());
-                                if (wordSet.contains(word)
-                                        && wordInOneBookCollectCount.get(wordBook).get() < bookLimitForBook
-                                        && wordInAllBookCollectCount.get(word).get() < totalLimitForWord) {
-                                    wordInOneBookCollectCount.get(wordBook).incrementAndGet();
-                                    wordInAllBookCollectCount.get(word).incrementAndGet();
-                                    data.get(word).putIfAbsent(book, new ArrayList<>());
-                                    data.get(word).get(book).add(line);
-                                    hashes.add(line.hashCode());
-                                }
-                            });
-                    });
-
-                    return FileVisitResult.CONTINUE;
-                }
-
-            });
+            return EvidenceIndex.get(dir).findEvidence(words, totalLimitForWord, bookLimitForBook);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return data;
+        return new LinkedHashMap<>();
     }
 
     public static String summary() {
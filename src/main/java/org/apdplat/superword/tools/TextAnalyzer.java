@@ -28,9 +28,8 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -41,29 +40,43 @@ import java.util.stream.Collectors;
 public class TextAnalyzer {
     private TextAnalyzer() {
     }
-    private static final Pattern PATTERN = Pattern.compile("\\d+");
-    private static final Pattern UNICODE = Pattern.compile("[uU][0-9a-fA-F]{4}");
     private static final Logger LOGGER = LoggerFactory.getLogger(TextAnalyzer.class);
+    //并行统计词频时每个块的字节数
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
 
     /**
      * @param files 文件相对路径或绝对路径
      * @return 词频统计数据
      */
     public static Map<String, AtomicInteger> frequency(Collection<String> files) {
-        Map<String, AtomicInteger> map = new ConcurrentHashMap<>();
+        return frequencyCounter(files).toMap();
+    }
+
+    /**
+     * 多核并行统计词频
+     * 文件按行边界切分为大小约为CHUNK_SIZE的块，每个块在自己的线程中用WordCounter计数，
+     * 各块的计数结果两两合并（并行流的reduce是树形归约）
+     * @param files 文件相对路径或绝对路径
+     * @return 词频统计数据
+     */
+    public static WordCounter frequencyCounter(Collection<String> files) {
+        long start = System.currentTimeMillis();
+        List<Chunk> chunks = new ArrayList<>();
         files.forEach(file -> {
             LOGGER.info("parse text file: " + file);
-            //统计词频
-            Map<String, AtomicInteger> data = frequency(file);
-            //合并结果
-            data.entrySet().forEach(entry -> {
-                map.putIfAbsent(entry.getKey(), new AtomicInteger());
-                map.get(entry.getKey()).addAndGet(entry.getValue().get());
-            });
-            data.clear();
+            chunks.addAll(chunks(file));
         });
-        LOGGER.info("total unique words count: " + map.size());
-        return map;
+        long bytes = chunks.stream().mapToLong(chunk -> chunk.end - chunk.start).sum();
+        WordCounter counter = chunks
+                .parallelStream()
+                .map(TextAnalyzer::frequency)
+                .reduce(WordCounter::merge)
+                .orElseGet(WordCounter::new);
+        long cost = Math.max(1, System.currentTimeMillis() - start);
+        LOGGER.info("total unique words count: " + counter.size());
+        LOGGER.info("文件数：" + files.size() + "，块数：" + chunks.size() + "，字节数：" + bytes
+                + "，耗时：" + cost + " 毫秒，吞吐量：" + String.format("%.2f", bytes / 1024.0 / 1024.0 / (cost / 1000.0)) + " MB/s");
+        return counter;
     }
 
     public static Map<String, AtomicInteger> frequency(String file) {
@@ -76,29 +89,81 @@ public class TextAnalyzer {
     }
 
     public static Map<String, AtomicInteger> frequency(InputStream inputStream) {
-        Map<String, AtomicInteger> map = new ConcurrentHashMap<>();
-
+        WordCounter counter = new WordCounter();
         try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(
                         new BufferedInputStream(
                                 inputStream)))) {
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                if (StringUtils.isBlank(line)) {
-                    continue;
-                }
-                List<String> words = seg(line);
-                words.forEach(word -> {
-                    map.putIfAbsent(word, new AtomicInteger());
-                    map.get(word).incrementAndGet();
-                });
-                words.clear();
-            }
+            frequency(reader, counter);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
-        LOGGER.info("unique words count: " + map.size());
-        return map;
+        LOGGER.info("unique words count: " + counter.size());
+        return counter.toMap();
+    }
+
+    private static WordCounter frequency(Chunk chunk) {
+        WordCounter counter = new WordCounter();
+        try (RandomAccessFile file = new RandomAccessFile(chunk.file, "r")) {
+            byte[] bytes = new byte[(int) (chunk.end - chunk.start)];
+            file.seek(chunk.start);
+            file.readFully(bytes);
+            frequency(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes))), counter);
+        } catch (IOException ex) {
+            LOGGER.error("统计词频出错：" + chunk.file, ex);
+        }
+        return counter;
+    }
+
+    private static void frequency(BufferedReader reader, WordCounter counter) throws IOException {
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            seg(line, counter::increment);
+        }
+    }
+
+    /**
+     * 把文件切分为大小约为CHUNK_SIZE的块，块的结束位置总是在换行符之后，
+     * 所以不会把一行分到两个块中，也不会切断一个多字节字符
+     * @param file 文件
+     * @return 块
+     */
+    private static List<Chunk> chunks(String file) {
+        List<Chunk> chunks = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            long start = 0;
+            while (start < length) {
+                long end = Math.min(length, start + CHUNK_SIZE);
+                if (end < length) {
+                    raf.seek(end);
+                    int b;
+                    while ((b = raf.read()) != -1 && b != '\n') {
+                    }
+                    end = raf.getFilePointer();
+                }
+                chunks.add(new Chunk(file, start, end));
+                start = end;
+            }
+        } catch (IOException e) {
+            LOGGER.error("读取文件出错：" + file, e);
+        }
+        return chunks;
+    }
+
+    private static class Chunk {
+        private final String file;
+        private final long start;
+        private final long end;
+
+        private Chunk(String file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
     }
 
     /**
@@ -108,83 +173,129 @@ public class TextAnalyzer {
      */
     public static List<String> seg(String sentence) {
         List<String> data = new ArrayList<>();
-        //以非字母字符切分行
-        String[] words = sentence.trim().split("[^a-zA-Z0-9]");
-        StringBuilder log = new StringBuilder();
+        seg(sentence, data::add);
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("句子:" + sentence);
+            LOGGER.debug("分词：" + String.join(" ", data));
         }
-        for (String word : words) {
-            if (StringUtils.isBlank(word) || word.length()<2) {
+        return data;
+    }
+
+    /**
+     * 分词，结果和seg(sentence)一致
+     * 逐个字符扫描一遍，不使用正则表达式，也不创建中间的列表，
+     * 每个词小写后写入同一个缓冲区，只为最终输出的词创建字符串
+     * @param sentence 句子
+     * @param consumer 接收分词结果
+     */
+    public static void seg(String sentence, Consumer<String> consumer) {
+        int length = sentence.length();
+        char[] buffer = null;
+        int i = 0;
+        while (i < length) {
+            //以非字母字符切分行
+            while (i < length && !isAlphanumeric(sentence.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            boolean hasDigit = false;
+            boolean allUpperCase = true;
+            while (i < length) {
+                char c = sentence.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    hasDigit = true;
+                    allUpperCase = false;
+                } else if (c >= 'a' && c <= 'z') {
+                    allUpperCase = false;
+                } else if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                i++;
+            }
+            int end = i;
+            if (end - start < 2) {
                 continue;
             }
-            List<String> list = new ArrayList<>();
+            if (buffer == null) {
+                buffer = new char[length];
+            }
             //转换为全部小写
-            if (word.length() < 6
+            if (end - start < 6
                     //PostgreSQL等
-                    || (Character.isUpperCase(word.charAt(word.length()-1))
-                          && Character.isUpperCase(word.charAt(0)))
+                    || (isUpperCase(sentence.charAt(end - 1)) && isUpperCase(sentence.charAt(start)))
                     //P2P,Neo4j等
-                    || PATTERN.matcher(word).find()
-                    || StringUtils.isAllUpperCase(word)) {
-                word = word.toLowerCase();
+                    || hasDigit
+                    || allUpperCase) {
+                emit(sentence, start, end, buffer, consumer);
+                continue;
             }
             //按照大写字母进行单词拆分
-            int last = 0;
-            for (int i = 1; i < word.length(); i++) {
-                if (Character.isUpperCase(word.charAt(i))
-                        && Character.isLowerCase(word.charAt(i - 1))) {
-                    list.add(word.substring(last, i));
-                    last = i;
+            int last = start;
+            for (int j = start + 1; j < end; j++) {
+                if (isUpperCase(sentence.charAt(j)) && !isUpperCase(sentence.charAt(j - 1))) {
+                    emit(sentence, last, j, buffer, consumer);
+                    last = j;
                 }
             }
-            if (last < word.length()) {
-                list.add(word.substring(last, word.length()));
-            }
-            list.stream()
-                    .map(w -> w.toLowerCase())
-                    .forEach(w -> {
-                        if (w.length() < 2) {
-                            return;
-                        }
-                        w = irregularity(w);
-                        if(StringUtils.isNotBlank(w)) {
-                            data.add(w);
-                            if (LOGGER.isDebugEnabled()) {
-                                log.append(w).append(" ");
-                            }
-                        }
-                    });
+            emit(sentence, last, end, buffer, consumer);
         }
-        LOGGER.debug("分词：" + log);
-        return data;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isUpperCase(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
     }
 
     /**
-     * 处理分词意外，即无规则情况
-     * @param word
-     * @return
+     * 把sentence中[start, end)范围内的词转换为小写后输出
      */
-    private static String irregularity(String word){
-        if(Character.isDigit(word.charAt(0))){
-            LOGGER.debug("词以数字开头，忽略："+word);
-            return null;
+    private static void emit(String sentence, int start, int end, char[] buffer, Consumer<String> consumer) {
+        int length = end - start;
+        if (length < 2) {
+            return;
         }
-        if(word.startsWith("0x")
-                || word.startsWith("0X")){
-            LOGGER.debug("词为16进制，忽略："+word);
-            return null;
+        for (int i = 0; i < length; i++) {
+            char c = sentence.charAt(start + i);
+            buffer[i] = isUpperCase(c) ? (char) (c + ('a' - 'A')) : c;
         }
-        if(word.endsWith("l")
-                && StringUtils.isNumeric(word.substring(0, word.length()-1))){
-            LOGGER.debug("词为long类型数字，忽略："+word);
-            return null;
+        String word = irregularity(buffer, length);
+        if (word != null) {
+            consumer.accept(word);
         }
-        if(UNICODE.matcher(word).find()){
-            LOGGER.debug("词为UNICODE字符编码，忽略："+word);
+    }
+
+    /**
+     * 处理分词意外，即无规则情况
+     * @param word 小写的词
+     * @param length 词的长度
+     * @return 处理后的词，忽略时返回null
+     */
+    private static String irregularity(char[] word, int length){
+        //以数字开头的词，包括16进制和long类型的数字
+        if(word[0] >= '0' && word[0] <= '9'){
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("词以数字开头，忽略：" + new String(word, 0, length));
+            }
             return null;
         }
-        switch (word){
+        for(int i = 0; i + 4 < length; i++){
+            if(word[i] == 'u'
+                    && isHex(word[i+1]) && isHex(word[i+2]) && isHex(word[i+3]) && isHex(word[i+4])){
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("词为UNICODE字符编码，忽略：" + new String(word, 0, length));
+                }
+                return null;
+            }
+        }
+        String w = new String(word, 0, length);
+        switch (w){
             //I’ll do it. You'll see.
             case "ll": return "will";
             //If you’re already building applications using Spring.
@@ -200,7 +311,7 @@ public class TextAnalyzer {
             //<input type="text" name="firstName" /><br/>
             case "br": return null;
         }
-        return word;
+        return w;
     }
 
     /**
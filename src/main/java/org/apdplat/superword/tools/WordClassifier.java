@@ -35,7 +35,9 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -63,40 +65,29 @@ public class WordClassifier {
     private static final Set<String> ORIGIN_HTML = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     private static final AtomicInteger COUNT = new AtomicInteger();
+    private static final int THREADS = 8;
+    private static final double PERMITS_PER_SECOND = 5;
+    private static final Path FRONTIER_PATH = Paths.get("target/crawl-frontier");
 
     public static void classify(Set<Word> words){
         LOGGER.debug("待处理词数目："+words.size());
-        AtomicInteger i = new AtomicInteger();
         Map<String, List<String>> data = new ConcurrentHashMap<>();
-        words.parallelStream().forEach(word -> {
-            if (i.get() % 1000 == 999) {
-                save(data);
-            }
-            showStatus(data, i.incrementAndGet(), words.size(), word.getWord());
-            String html = getContent(word.getWord());
-            //LOGGER.debug("获取到的HTML：" +html);
-            int times = 0;
-            while (StringUtils.isNotBlank(html) && html.contains("非常抱歉，来自您ip的请求异常频繁")) {
-                //使用新的IP地址
-                DynamicIp.toNewIp();
-                html = getContent(word.getWord());
-                if (++times > 2) {
-                    break;
-                }
-            }
-
-            if (StringUtils.isNotBlank(html)) {
-                parse(word.getWord(), html, data);
-                if (!NOT_FOUND_WORDS.contains(word.getWord())) {
-                    ORIGIN_HTML.add(word.getWord() + "杨尚川" + html);
-                }
-            } else {
-                NOT_FOUND_WORDS.add(word.getWord());
-            }
-
-        });
-        //写入磁盘
-        save(data);
+        //爱词霸限速，IP被封锁时统一更换一次IP，每1000个词保存一次结果并记录进度，中断后重新运行从断点继续
+        new CrawlScheduler("word_classifier", THREADS)
+                .defaultRateLimit(PERMITS_PER_SECOND, THREADS)
+                .retry(3, 1000, 60000)
+                .ipRotation(html -> html.contains("非常抱歉，来自您ip的请求异常频繁"), DynamicIp::toNewIp)
+                .onFailure(NOT_FOUND_WORDS::add)
+                .frontier(FRONTIER_PATH)
+                .checkpoint(1000, () -> save(data))
+                .crawl(words.stream().map(Word::getWord).collect(Collectors.toList()),
+                        WordClassifier::getContent,
+                        (word, html) -> {
+                            parse(word, html, data);
+                            if (!NOT_FOUND_WORDS.contains(word)) {
+                                ORIGIN_HTML.add(word + "杨尚川" + html);
+                            }
+                        });
         LOGGER.debug("处理完毕，总词数目："+words.size());
     }
 
@@ -128,27 +119,10 @@ public class WordClassifier {
     }
 
     public static void parseZip(String zipFile){
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifier.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        parseFile(temp.toFile().getAbsolutePath());
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
+        //每个线程的分类结果合并后一次保存
+        Map<String, List<String>> data = ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashMap::new, (Map<String, List<String>> d, String line) -> parse(line, d), WordClassifier::merge));
+        save(data);
     }
 
     public static void parseFile(String file){
@@ -167,6 +141,11 @@ public class WordClassifier {
             LOGGER.error("解析文本出错", e);
         }
     }
+    private static Map<String, List<String>> merge(Map<String, List<String>> data, Map<String, List<String>> other){
+        other.forEach((type, words) -> data.computeIfAbsent(type, k -> new ArrayList<>()).addAll(words));
+        return data;
+    }
+
     public static void parse(String html, Map<String, List<String>> data){
         LOGGER.debug("html:"+html);
         String[] attr = html.split("杨尚川");
@@ -187,8 +166,12 @@ public class WordClassifier {
         });
     }
 
-    public static synchronized void save(Map<String, List<String>> data){
+    /**
+     * @return 是否全部保存成功，失败的词典数据保留在data中，下次再保存
+     */
+    public static synchronized boolean save(Map<String, List<String>> data){
             LOGGER.info("将数据写入磁盘，防止丢失");
+            AtomicBoolean success = new AtomicBoolean(true);
             data.keySet().forEach(key -> {
                 try {
                     String path = "src/main/resources/word_" + (("考 研".equals(key)||"考研".equals(key))?"KY":key) + ".txt";
@@ -225,10 +208,13 @@ public class WordClassifier {
                     allWords.clear();
                     list.clear();
                 }catch (Exception e){
+                    success.set(false);
                     LOGGER.error("保存词典文件失败", e);
                 }
             });
-        data.clear();
+        if(success.get()) {
+            data.clear();
+        }
         try {
             if(!NOT_FOUND_WORDS.isEmpty()) {
                 String path = "src/main/resources/word_not_found.txt";
@@ -251,8 +237,10 @@ public class WordClassifier {
                 ORIGIN_HTML.clear();
             }
         }catch (Exception e){
+            success.set(false);
             LOGGER.error("保存词典文件失败", e);
         }
+        return success.get();
     }
 
     public static String getContent(String word) {
@@ -279,14 +267,22 @@ public class WordClassifier {
     }
 
     public static void parse(String word, String html, Map<String, List<String>> data){
-        Document doc = Jsoup.parse(html);
+        parse(word, Jsoup.parse(html), data);
+    }
+
+    /**
+     * 从已经解析好的网页中提取词的分类
+     * @param word 词
+     * @param doc 网页
+     * @param data 分类 -> 词
+     */
+    public static void parse(String word, Document doc, Map<String, List<String>> data){
         Elements es = doc.select(TYPE_CSS_PATH);
         for(Element e : es){
             String type = e.text();
             LOGGER.debug("获取到的类型："+type);
             if(StringUtils.isNotBlank(type)){
-                data.putIfAbsent(type, new ArrayList<>());
-                data.get(type).add(word);
+                data.computeIfAbsent(type, k -> Collections.synchronizedList(new ArrayList<>())).add(word);
             }
         }
         es = doc.select(UNFOUND_CSS_PATH);
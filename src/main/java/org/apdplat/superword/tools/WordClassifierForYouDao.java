@@ -35,6 +35,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /**
@@ -127,27 +128,10 @@ public class WordClassifierForYouDao {
     }
 
     public static void parseZip(String zipFile){
-        LOGGER.info("开始解析ZIP文件："+zipFile);
-        try (FileSystem fs = FileSystems.newFileSystem(Paths.get(zipFile), WordClassifierForYouDao.class.getClassLoader())) {
-            for(Path path : fs.getRootDirectories()){
-                LOGGER.info("处理目录："+path);
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>(){
-
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        LOGGER.info("处理文件："+file);
-                        // 拷贝到本地文件系统
-                        Path temp = Paths.get("target/origin-html-temp.txt");
-                        Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
-                        parseFile(temp.toFile().getAbsolutePath());
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                });
-            }
-        }catch (Exception e){
-            LOGGER.error("解析文本出错", e);
-        }
+        //每个线程的分类结果合并后一次保存
+        Map<String, List<String>> data = ZipProcessor.getDefault().lines(zipFile,
+                Collector.of(HashMap::new, (Map<String, List<String>> d, String line) -> parse(line, d), WordClassifierForYouDao::merge));
+        save(data);
     }
 
     public static void parseFile(String file){
@@ -166,6 +150,11 @@ public class WordClassifierForYouDao {
             LOGGER.error("解析文本出错", e);
         }
     }
+    private static Map<String, List<String>> merge(Map<String, List<String>> data, Map<String, List<String>> other){
+        other.forEach((type, words) -> data.computeIfAbsent(type, k -> new ArrayList<>()).addAll(words));
+        return data;
+    }
+
     public static void parse(String html, Map<String, List<String>> data){
         LOGGER.debug("html:"+html);
         String[] attr = html.split("杨尚川");
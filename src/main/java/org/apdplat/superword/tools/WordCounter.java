@@ -0,0 +1,140 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 词频计数器
+ * 开放地址法的 {词 : 词频} 表，词频是基本类型int，
+ * 计数时不创建AtomicInteger等包装对象，
+ * 非线程安全，每个线程使用自己的计数器，最后再合并
+ * @author 杨尚川
+ */
+public class WordCounter {
+    private String[] keys;
+    private int[] counts;
+    private int size;
+    private int mask;
+
+    public WordCounter(){
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize 预计的不同词的数目
+     */
+    public WordCounter(int expectedSize){
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize){
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public void increment(String word){
+        add(word, 1);
+    }
+
+    public void add(String word, int count){
+        int slot = slot(word);
+        if(keys[slot] == null){
+            keys[slot] = word;
+            counts[slot] = count;
+            if(++size > keys.length * 3 / 4){
+                resize();
+            }
+            return;
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * @param word 词
+     * @return 词频，词不存在时返回0
+     */
+    public int get(String word){
+        int slot = slot(word);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * 把另一个计数器的结果加到当前计数器中
+     * @param other 另一个计数器
+     * @return 合并后的计数器，总是两者中较大的那个，另一个不再使用
+     */
+    public WordCounter merge(WordCounter other){
+        if(other.size > size){
+            return other.merge(this);
+        }
+        other.forEach(this::add);
+        return this;
+    }
+
+    public void forEach(ObjIntConsumer<String> consumer){
+        for(int i=0; i<keys.length; i++){
+            if(keys[i] != null){
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * 转换为TextAnalyzer.frequency一直以来返回的格式
+     * @return {词 : 词频}
+     */
+    public Map<String, AtomicInteger> toMap(){
+        Map<String, AtomicInteger> map = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+        forEach((word, count) -> map.put(word, new AtomicInteger(count)));
+        return map;
+    }
+
+    private int slot(String word){
+        int h = word.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(word)){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(){
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length << 1];
+        counts = new int[oldKeys.length << 1];
+        mask = keys.length - 1;
+        for(int i=0; i<oldKeys.length; i++){
+            if(oldKeys[i] != null){
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.apdplat.superword.model.Word;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全局的单词编号
+ * 每个不同的单词分配一个从0开始的整数编号，并对应唯一的一个Word对象，
+ * 词汇表可以表示为以编号为下标的BitSet，求并集、交集、差集都是位运算
+ * @author 杨尚川
+ */
+public class WordIds {
+    private WordIds(){}
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile Word[] WORDS = new Word[1024];
+    private static int size = 0;
+
+    /**
+     * 单词的编号，没有编号时分配一个
+     * @param word 单词
+     * @return 编号
+     */
+    public static int intern(String word){
+        Integer id = IDS.get(word);
+        if(id != null){
+            return id;
+        }
+        synchronized (WordIds.class){
+            id = IDS.get(word);
+            if(id != null){
+                return id;
+            }
+            if(size == WORDS.length){
+                WORDS = Arrays.copyOf(WORDS, size * 2);
+            }
+            WORDS[size] = new Word(word, "");
+            id = size++;
+            IDS.put(word, id);
+            return id;
+        }
+    }
+
+    /**
+     * 单词的编号
+     * @param word 单词
+     * @return 编号，没有编号时返回-1
+     */
+    public static int id(String word){
+        Integer id = IDS.get(word);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 编号对应的唯一的Word对象
+     * @param id 编号
+     * @return Word对象
+     */
+    public static Word word(int id){
+        return WORDS[id];
+    }
+
+    public static int size(){
+        return IDS.size();
+    }
+
+    /**
+     * 词汇表对应的BitSet，没有编号的单词会分配编号，
+     * 只用于需要长期保存的词汇表，编号分配后不会回收
+     * @param words 词汇表
+     * @return BitSet
+     */
+    public static BitSet toBits(Collection<Word> words){
+        BitSet bits = new BitSet(size());
+        words.forEach(word -> bits.set(intern(word.getWord())));
+        return bits;
+    }
+
+    /**
+     * 只查找已有的编号，不分配编号，临时的词汇表不会让全局编号表增长
+     * @param words 词汇表
+     * @param unknown 没有编号的单词放入这个集合
+     * @return 有编号的单词对应的BitSet
+     */
+    public static BitSet lookup(Collection<Word> words, Set<String> unknown){
+        BitSet bits = new BitSet(size());
+        for(Word word : words){
+            int id = word.getWord() == null ? -1 : id(word.getWord());
+            if(id < 0){
+                unknown.add(word.getWord());
+            }else{
+                bits.set(id);
+            }
+        }
+        return bits;
+    }
+
+    public static Set<Word> toWords(BitSet bits){
+        Word[] all = WORDS;
+        Set<Word> words = new HashSet<>(bits.cardinality() * 4 / 3 + 1);
+        for(int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)){
+            words.add(all[id]);
+        }
+        return words;
+    }
+}
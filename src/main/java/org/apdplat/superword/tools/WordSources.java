@@ -25,6 +25,7 @@ import org.apdplat.superword.model.Word;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -41,69 +42,53 @@ import java.util.stream.Collectors;
 public class WordSources {
     private WordSources(){}
     private static final Logger LOGGER = LoggerFactory.getLogger(WordSources.class);
-    private static final Map<String, Set<Word>> CACHE = new ConcurrentHashMap<>();
+    //每个词典文件对应的BitSet，下标为WordIds分配的单词编号
+    private static final Map<String, BitSet> CACHE = new ConcurrentHashMap<>();
+    //分级词汇文件及其级别名称
+    private static final Map<String, String> LEVELS = new LinkedHashMap<>();
+    static {
+        LEVELS.put("/word_primary_school.txt", "PrimarySchool");
+        LEVELS.put("/word_junior_school.txt", "JuniorSchool");
+        LEVELS.put("/word_senior_school.txt", "SeniorSchool");
+        LEVELS.put("/word_university.txt", "University");
+        LEVELS.put("/word_new_conception.txt", "NewConception");
+        LEVELS.put("/word_ADULT.txt", "ADULT");
+        LEVELS.put("/word_CET4.txt", "CET4");
+        LEVELS.put("/word_CET6.txt", "CET6");
+        LEVELS.put("/word_TEM4.txt", "TEM4");
+        LEVELS.put("/word_TEM8.txt", "TEM8");
+        LEVELS.put("/word_CATTI.txt", "CATTI");
+        LEVELS.put("/word_GMAT.txt", "GMAT");
+        LEVELS.put("/word_GRE.txt", "GRE");
+        LEVELS.put("/word_SAT.txt", "SAT");
+        LEVELS.put("/word_BEC.txt", "BEC");
+        LEVELS.put("/word_MBA.txt", "MBA");
+        LEVELS.put("/word_IELTS.txt", "IELTS");
+        LEVELS.put("/word_TOEFL.txt", "TOEFL");
+        LEVELS.put("/word_TOEIC.txt", "TOEIC");
+        LEVELS.put("/word_KY.txt", "KY");
+    }
+    private static final String[] SYLLABUS_FILES = LEVELS.keySet().toArray(new String[LEVELS.size()]);
+    private static volatile BitSet[] levelBits = null;
+
     public static List<String> getLevels(String word){
-        Word w = new Word(word, "");
-        List<String> levels = new ArrayList<>();
-        if(get("/word_primary_school.txt").contains(w)){
-            levels.add("PrimarySchool");
-        }
-        if(get("/word_junior_school.txt").contains(w)){
-            levels.add("JuniorSchool");
-        }
-        if(get("/word_senior_school.txt").contains(w)){
-            levels.add("SeniorSchool");
-        }
-        if(get("/word_university.txt").contains(w)){
-            levels.add("University");
-        }
-        if(get("/word_new_conception.txt").contains(w)){
-            levels.add("NewConception");
-        }
-        if(get("/word_ADULT.txt").contains(w)){
-            levels.add("ADULT");
-        }
-        if(get("/word_CET4.txt").contains(w)){
-            levels.add("CET4");
-        }
-        if(get("/word_CET6.txt").contains(w)){
-            levels.add("CET6");
-        }
-        if(get("/word_TEM4.txt").contains(w)){
-            levels.add("TEM4");
-        }
-        if(get("/word_TEM8.txt").contains(w)){
-            levels.add("TEM8");
-        }
-        if(get("/word_CATTI.txt").contains(w)){
-            levels.add("CATTI");
-        }
-        if(get("/word_GMAT.txt").contains(w)){
-            levels.add("GMAT");
-        }
-        if(get("/word_GRE.txt").contains(w)){
-            levels.add("GRE");
-        }
-        if(get("/word_SAT.txt").contains(w)){
-            levels.add("SAT");
-        }
-        if(get("/word_BEC.txt").contains(w)){
-            levels.add("BEC");
-        }
-        if(get("/word_MBA.txt").contains(w)){
-            levels.add("MBA");
-        }
-        if(get("/word_IELTS.txt").contains(w)){
-            levels.add("IELTS");
-        }
-        if(get("/word_TOEFL.txt").contains(w)){
-            levels.add("TOEFL");
+        BitSet[] bits = levelBits;
+        if(bits == null){
+            bits = new BitSet[SYLLABUS_FILES.length];
+            for(int i=0; i<bits.length; i++){
+                bits[i] = getFileBits(1, SYLLABUS_FILES[i]);
+            }
+            levelBits = bits;
         }
-        if(get("/word_TOEIC.txt").contains(w)){
-            levels.add("TOEIC");
+        List<String> levels = new ArrayList<>();
+        int id = WordIds.id(word);
+        if(id < 0){
+            return levels;
         }
-        if(get("/word_KY.txt").contains(w)){
-            levels.add("KY");
+        for(int i=0; i<bits.length; i++){
+            if(bits[i].get(id)){
+                levels.add(LEVELS.get(SYLLABUS_FILES[i]));
+            }
         }
         return levels;
     }
@@ -112,31 +97,12 @@ public class WordSources {
      * @return
      */
     public static Set<Word> getSyllabusVocabulary(){
-        return get("/word_primary_school.txt",
-                "/word_junior_school.txt",
-                "/word_senior_school.txt",
-                "/word_university.txt",
-                "/word_new_conception.txt",
-                "/word_ADULT.txt",
-                "/word_CET4.txt",
-                "/word_CET6.txt",
-                "/word_TEM4.txt",
-                "/word_TEM8.txt",
-                "/word_CATTI.txt",
-                "/word_GMAT.txt",
-                "/word_GRE.txt",
-                "/word_SAT.txt",
-                "/word_BEC.txt",
-                "/word_MBA.txt",
-                "/word_IELTS.txt",
-                "/word_TOEFL.txt",
-                "/word_TOEIC.txt",
-                "/word_KY.txt");
+        return get(SYLLABUS_FILES);
     }
     public static Set<Word> getAll(){
-        Set<Word> data = get("/words.txt", "/word_computer.txt");
-        data.addAll(getSyllabusVocabulary());
-        return data;
+        BitSet bits = getBits("/words.txt", "/word_computer.txt");
+        bits.or(getBits(SYLLABUS_FILES));
+        return WordIds.toWords(bits);
     }
     /**
      * 
@@ -173,23 +139,35 @@ public class WordSources {
     public static Set<Word> intersection(Set<Word> first, Set<Word> second){
         LOGGER.info("求交集词典1："+first.size());
         LOGGER.info("求交集词典2："+second.size());
-        Set<Word> result = first
-                .stream()
-                .filter(w -> second.contains(w))
-                .collect(Collectors.toSet());
+        Set<Word> result = filter(first, second, true);
         LOGGER.info("交集词典："+result.size());
         return result;
     }
     public static Set<Word> minus(Set<Word> minuend, Set<Word> subtrahend){
         LOGGER.info("被减数个数："+minuend.size());
         LOGGER.info("减数个数："+subtrahend.size());
-        Set<Word> result = minuend
-                .stream()
-                .filter(word -> !subtrahend.contains(word))
-                .collect(Collectors.toSet());
+        Set<Word> result = filter(minuend, subtrahend, false);
         LOGGER.info("结果个数：" + result.size());
         return result;
     }
+
+    /**
+     * 保留words中在（contains为true）或者不在（contains为false）others中的单词，
+     * 返回调用者自己的Word对象，释义等信息不会丢失
+     */
+    private static Set<Word> filter(Set<Word> words, Set<Word> others, boolean contains){
+        Set<String> unknown = new HashSet<>();
+        BitSet bits = WordIds.lookup(others, unknown);
+        Set<Word> result = new HashSet<>();
+        for(Word word : words){
+            int id = word.getWord() == null ? -1 : WordIds.id(word.getWord());
+            boolean found = id < 0 ? unknown.contains(word.getWord()) : bits.get(id);
+            if(found == contains){
+                result.add(word);
+            }
+        }
+        return result;
+    }
     public static void save(Set<Word> words, String path){
         try {
             path = "src/main/resources" + path;
@@ -213,42 +191,64 @@ public class WordSources {
      * @return 不重复的单词集合
      */
     public static Set<Word> get(int index, String... files){
-        Set<Word> set = new HashSet<>();
+        Set<Word> set = WordIds.toWords(getBits(index, files));
+        LOGGER.info("unique words count: " + set.size());
+        return set;
+    }
+
+    /**
+     * 多个词典文件的并集
+     * @param files 单词文件类路径，以/开头
+     * @return 以单词编号为下标的BitSet，调用者可以修改
+     */
+    public static BitSet getBits(String... files){
+        return getBits(1, files);
+    }
+
+    public static BitSet getBits(int index, String... files){
+        BitSet bits = new BitSet(WordIds.size());
         for(String file : files){
-            Set<Word> value = CACHE.get(file);
-            if(value != null){
-                LOGGER.info("cache hit word file: " + file);
-                set.addAll(value);
-                continue;
-            }
+            bits.or(getFileBits(index, file));
+        }
+        return bits;
+    }
 
-            URL url = null;
-            if(file.startsWith("/")){
-                url = WordSources.class.getResource(file);
-            }else{
-                try {
-                    url = Paths.get(file).toUri().toURL();
-                }catch (Exception e){
-                    LOGGER.error("构造URL出错", e);
-                }
-            }
-            if(url == null){
-                LOGGER.error("解析词典失败："+file);
-                continue;
+    /**
+     * 单个词典文件，返回的是缓存的BitSet，不能修改
+     */
+    private static BitSet getFileBits(int index, String file){
+        BitSet value = CACHE.get(file);
+        if(value != null){
+            LOGGER.info("cache hit word file: " + file);
+            return value;
+        }
+
+        URL url = null;
+        if(file.startsWith("/")){
+            url = WordSources.class.getResource(file);
+        }else{
+            try {
+                url = Paths.get(file).toUri().toURL();
+            }catch (Exception e){
+                LOGGER.error("构造URL出错", e);
             }
-            LOGGER.info("parse word file: " + url);
-            List<String> words = getExistWords(url);
-            Set<Word> wordSet = words.parallelStream()
-                    .filter(line -> !line.trim().startsWith("#") && !"".equals(line.trim()))
-                    .filter(line -> line.trim().split("\\s+").length >= index+1)
-                    .map(line -> new Word(line.trim().split("\\s+")[index], ""))
-                    .filter(word -> StringUtils.isAlphanumeric(word.getWord()))
-                    .collect(Collectors.toSet());
-            set.addAll(wordSet);
-            CACHE.put(file, wordSet);
         }
-        LOGGER.info("unique words count: " + set.size());
-        return set;
+        if(url == null){
+            LOGGER.error("解析词典失败："+file);
+            return new BitSet();
+        }
+        LOGGER.info("parse word file: " + url);
+        List<String> words = getExistWords(url);
+        List<String> wordList = words.parallelStream()
+                .filter(line -> !line.trim().startsWith("#") && !"".equals(line.trim()))
+                .filter(line -> line.trim().split("\\s+").length >= index+1)
+                .map(line -> line.trim().split("\\s+")[index])
+                .filter(word -> StringUtils.isAlphanumeric(word))
+                .collect(Collectors.toList());
+        BitSet bits = new BitSet();
+        wordList.forEach(word -> bits.set(WordIds.intern(word)));
+        CACHE.put(file, bits);
+        return bits;
     }
     private static List<String> getExistWords(URL url){
         try {
@@ -258,67 +258,76 @@ public class WordSources {
         }
     }
     public static Set<Word> stem(Set<Word> words){
+        LemmaIndex index = LemmaIndex.get(words);
         return words
                 .stream()
                 .filter(word -> word.getWord().length() > 3)
-                .filter(word -> !isPlural(words, word))
+                .filter(word -> !isPlural(index, word, new HashMap<>()))
                 .collect(Collectors.toSet());
     }
     public static Map<String, String> plural(Set<Word> words){
+        LemmaIndex index = LemmaIndex.get(words);
         Map<String, String> data = new HashMap<>();
         words
                 .stream()
                 .filter(word -> word.getWord().length() > 3)
                 .forEach(word -> {
-                    isPlural(words, word, data);
+                    isPlural(index, word, data);
                 });
         return data;
     }
     public static boolean isPlural(Set<Word> words, Word word){
         return isPlural(words, word, new HashMap<>());
     }
+    /**
+     * 循环中对同一个词汇表多次调用时，只有第一次需要计算词汇表对应的索引，
+     * 调用期间词汇表不能修改，否则应该用LemmaIndex.get(words)重新获取索引
+     */
     public static boolean isPlural(Set<Word> words, Word word, Map<String, String> data){
-        String w = word.getWord();
-        //1、以辅音字母+y结尾,变y为i再加es
-        if (w.endsWith("ies")){
-            char c = w.charAt(w.length()-4);
-            if(!(isVowel(c))
-                    && words.contains(new Word(w.substring(0, w.length()-4)+"y", ""))){
-                log(w, "ies");
-                data.put(w, "ies");
-                return true;
-            }
-        }
-        //2、以ce, se, ze结尾, 加s
-        if(w.endsWith("ces")
-                || w.endsWith("ses")
-                || w.endsWith("zes")){
-            if(words.contains(new Word(w.substring(0, w.length()-1), ""))){
-                log(w, "s");
-                data.put(w, "s");
-                return true;
-            }
+        return isPlural(lemmaIndex(words), word, data);
+    }
+
+    //最近一次使用的词汇表（按对象身份比较）及其索引
+    private static volatile LastLemmaIndex lastLemmaIndex = null;
+
+    private static LemmaIndex lemmaIndex(Set<Word> words){
+        LastLemmaIndex last = lastLemmaIndex;
+        if(last != null && last.words.get() == words && last.size == words.size()){
+            return last.index;
         }
-        //3、以s, sh, ch, x结尾, 加es
-        if(w.endsWith("ses")
-                || w.endsWith("shes")
-                || w.endsWith("ches")
-                || w.endsWith("xes")){
-            if(words.contains(new Word(w.substring(0, w.length()-2), ""))){
-                log(w, "es");
-                data.put(w, "es");
-                return true;
-            }
+        LemmaIndex index = LemmaIndex.get(words);
+        lastLemmaIndex = new LastLemmaIndex(words, index);
+        return index;
+    }
+
+    private static class LastLemmaIndex {
+        //不妨碍调用者的词汇表被回收
+        private final WeakReference<Set<Word>> words;
+        private final int size;
+        private final LemmaIndex index;
+
+        private LastLemmaIndex(Set<Word> words, LemmaIndex index){
+            this.words = new WeakReference<>(words);
+            this.size = words.size();
+            this.index = index;
         }
-        //4、一般情况，加s
-        if(w.endsWith("s")){
-            if(words.contains(new Word(w.substring(0, w.length()-1), ""))){
-                log(w, "s");
-                data.put(w, "s");
-                return true;
-            }
+    }
+    /**
+     * 判断是否是复数
+     * @param index 词汇表的屈折变化索引
+     * @param word 词
+     * @param data 保存复数及其后缀
+     * @return 是否是词汇表中某个词的复数
+     */
+    public static boolean isPlural(LemmaIndex index, Word word, Map<String, String> data){
+        String w = word.getWord();
+        String suffix = index.getPluralSuffix(w);
+        if(suffix == null){
+            return false;
         }
-        return false;
+        log(w, suffix);
+        data.put(w, suffix);
+        return true;
     }
     private static void log(String word, String suffix){
         LOGGER.debug("发现复数："+word+"\t"+suffix);
@@ -0,0 +1,366 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 延迟批量写入队列，一个队列对应一张表
+ * 调用方只把记录放入有界的环形队列就返回，
+ * 由该表专用的后台线程取出记录，攒够batchSize条或者等待超过maxDelay毫秒后，
+ * 用一个连接、一条PreparedStatement通过addBatch/executeBatch批量写入，
+ * 队列满时按溢出策略阻塞等待或者丢弃记录，并统计丢弃的条数
+ * @author 杨尚川
+ */
+public class WriteBehindQueue<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        //最多阻塞等待offerTimeout毫秒，仍然没有空位则丢弃新记录
+        BLOCK,
+        //立即丢弃新记录
+        DROP_NEWEST,
+        //丢弃队列中最早的记录，放入新记录
+        DROP_OLDEST
+    }
+
+    /**
+     * 把一条记录绑定到PreparedStatement的参数
+     */
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement pst, T record) throws SQLException;
+    }
+
+    private final String table;
+    private final String sql;
+    private final Binder<T> binder;
+    private final Supplier<Connection> connections;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final long maxDelay;
+    private final OverflowPolicy policy;
+    private final long offerTimeout;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    public WriteBehindQueue(String table, String sql, Binder<T> binder){
+        this(table, sql, binder, 10000, 100, 1000, OverflowPolicy.BLOCK, 100);
+    }
+
+    /**
+     * @param table 表名，用于线程名和日志
+     * @param sql 插入语句
+     * @param binder 参数绑定
+     * @param capacity 队列容量
+     * @param batchSize 每批最多写入的条数
+     * @param maxDelay 记录在队列中最多等待的毫秒数
+     * @param policy 队列满时的处理策略
+     * @param offerTimeout BLOCK策略下最多阻塞的毫秒数
+     */
+    public WriteBehindQueue(String table, String sql, Binder<T> binder,
+                            int capacity, int batchSize, long maxDelay,
+                            OverflowPolicy policy, long offerTimeout){
+        this(table, sql, binder, capacity, batchSize, maxDelay, policy, offerTimeout, MySQLUtils::getConnection);
+    }
+
+    WriteBehindQueue(String table, String sql, Binder<T> binder,
+                     int capacity, int batchSize, long maxDelay,
+                     OverflowPolicy policy, long offerTimeout, Supplier<Connection> connections){
+        this.table = table;
+        this.sql = sql;
+        this.binder = binder;
+        this.connections = connections;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.policy = policy;
+        this.offerTimeout = offerTimeout;
+        this.drainer = new Thread(this::drain, "write-behind-" + table);
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * 放入一条记录，不等待写入数据库
+     * @param record 记录
+     * @return 是否放入队列，队列已关闭或者按策略丢弃时返回false
+     */
+    public boolean offer(T record){
+        offered.incrementAndGet();
+        if(!running){
+            dropped.incrementAndGet();
+            LOG.warn(table + " 写入队列已关闭，丢弃记录");
+            return false;
+        }
+        boolean accepted = false;
+        switch (policy){
+            case BLOCK:
+                try {
+                    accepted = queue.offer(record, offerTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NEWEST:
+                accepted = queue.offer(record);
+                break;
+            case DROP_OLDEST:
+                while (!(accepted = queue.offer(record))){
+                    if(queue.poll() != null){
+                        dropped.incrementAndGet();
+                    }
+                }
+                return true;
+        }
+        if(!accepted){
+            long count = dropped.incrementAndGet();
+            //避免日志淹没，每丢弃1000条记录一次
+            if(count % 1000 == 1){
+                LOG.warn(table + " 写入队列已满，累计丢弃记录：" + count);
+            }
+        }
+        return accepted;
+    }
+
+    private void drain(){
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()){
+            try {
+                T first = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                while (batch.size() < batchSize){
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remain = deadline - System.nanoTime();
+                    if(batch.size() >= batchSize || remain <= 0){
+                        break;
+                    }
+                    T next = queue.poll(remain, TimeUnit.NANOSECONDS);
+                    if(next == null){
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                //被外部中断时停止接收新记录，剩下的记录在循环中继续写入
+                running = false;
+            } catch (Exception e) {
+                //取出后没有写入的记录计入失败
+                failed.addAndGet(batch.size());
+                LOG.error(table + " 批量写入线程异常，条数：" + batch.size(), e);
+                batch.clear();
+            }
+        }
+        //关闭时已取出但还没写入的记录
+        write(batch);
+        LOG.info(table + " 写入队列已停止，" + getMetrics());
+    }
+
+    /**
+     * 在当前线程中立即把记录批量写入数据库
+     * @param records 记录
+     * @return 是否写入成功
+     */
+    public boolean write(List<T> records){
+        if(records.isEmpty()){
+            return true;
+        }
+        long start = System.nanoTime();
+        Connection con = connections.get();
+        if(con == null){
+            failed.addAndGet(records.size());
+            return false;
+        }
+        PreparedStatement pst = null;
+        boolean autoCommit = true;
+        try {
+            autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            pst = con.prepareStatement(sql);
+            for(T record : records){
+                binder.bind(pst, record);
+                pst.addBatch();
+            }
+            pst.executeBatch();
+            con.commit();
+            written.addAndGet(records.size());
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            //绑定参数时的运行时异常也计入失败，整批回滚
+            failed.addAndGet(records.size());
+            LOG.error(table + " 批量保存失败，条数：" + records.size(), e);
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                LOG.error(table + " 回滚失败", ex);
+            }
+        } finally {
+            try {
+                con.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                LOG.error(table + " 恢复自动提交失败", e);
+            }
+            close(con, pst);
+            long nanos = System.nanoTime() - start;
+            lastFlushNanos = nanos;
+            totalFlushNanos.addAndGet(nanos);
+            maxFlushNanos.accumulateAndGet(nanos, Math::max);
+            batches.incrementAndGet();
+        }
+        return false;
+    }
+
+    private void close(Connection con, PreparedStatement pst){
+        try {
+            if(pst != null){
+                pst.close();
+            }
+            con.close();
+        } catch (SQLException e) {
+            LOG.error(table + " 数据库关闭失败", e);
+        }
+    }
+
+    public boolean write(T record){
+        return write(Collections.singletonList(record));
+    }
+
+    /**
+     * 停止接收新记录，写完队列中剩下的记录后返回
+     * @param timeout 最多等待的毫秒数
+     */
+    public void close(long timeout){
+        shutdown();
+        awaitTermination(timeout);
+    }
+
+    /**
+     * 停止接收新记录，后台线程写完队列中剩下的记录后退出，不等待，
+     * 不中断后台线程，正在进行的批量写入不会被打断，空闲的后台线程最多maxDelay毫秒后发现已关闭
+     */
+    public void shutdown(){
+        running = false;
+    }
+
+    /**
+     * 等待后台线程写完剩下的记录
+     * @param timeout 最多等待的毫秒数
+     * @return 是否已经写完
+     */
+    public boolean awaitTermination(long timeout){
+        if(timeout > 0){
+            try {
+                drainer.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(drainer.isAlive() || !queue.isEmpty()){
+            LOG.warn(table + " 关闭时仍有记录未写入：" + queue.size());
+            return false;
+        }
+        return true;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return 队列中等待写入的记录数
+     */
+    public int getDepth(){
+        return queue.size();
+    }
+
+    public long getOffered() {
+        return offered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public double getLastFlushMillis(){
+        return lastFlushNanos / 1000000.0;
+    }
+
+    public double getAvgFlushMillis(){
+        long count = batches.get();
+        return count == 0 ? 0 : totalFlushNanos.get() / 1000000.0 / count;
+    }
+
+    public double getMaxFlushMillis(){
+        return maxFlushNanos.get() / 1000000.0;
+    }
+
+    public String getMetrics(){
+        return "队列长度：" + getDepth()
+                + "，放入：" + getOffered()
+                + "，丢弃：" + getDropped()
+                + "，写入：" + getWritten()
+                + "，失败：" + getFailed()
+                + "，批次：" + getBatches()
+                + "，最近一批耗时：" + getLastFlushMillis() + " 毫秒"
+                + "，平均耗时：" + getAvgFlushMillis() + " 毫秒"
+                + "，最大耗时：" + getMaxFlushMillis() + " 毫秒";
+    }
+}
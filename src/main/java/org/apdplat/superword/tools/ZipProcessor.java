@@ -0,0 +1,358 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.apdplat.superword.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * ZIP文件并行处理器
+ * 直接从ZIP文件中流式读取条目交给解析器，不再拷贝到临时文件后重新打开，
+ * 按行处理时由一个线程解压读取，每batchSize行为一批分发给工作线程，
+ * 同时在处理中的批次有上限，读取速度不会超过解析速度太多，
+ * 每个批次从本次处理的中间结果池中取一个独占使用，不需要加锁，全部处理完后用Collector的combiner合并
+ * 按行处理的方式也适用于不在ZIP文件中的文本
+ * 所有处理共用一个线程数等于CPU核数的工作线程池，多个请求同时处理时不会创建更多的线程，
+ * 每次处理只等待自己提交的任务
+ * @author 杨尚川
+ */
+public class ZipProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipProcessor.class);
+
+    private static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+    //在工作线程中再次调用处理器时直接执行任务，避免工作线程互相等待
+    private static final ThreadLocal<Boolean> IN_WORKER = ThreadLocal.withInitial(() -> false);
+    private static final ExecutorService WORKERS = newWorkers();
+    private static final ZipProcessor DEFAULT = new ZipProcessor(WORKER_THREADS, 32);
+
+    private final int threads;
+    private final int batchSize;
+
+    /**
+     * 解析ZIP文件中的一个条目
+     */
+    @FunctionalInterface
+    public interface EntryParser<T> {
+        /**
+         * @param name 条目名称
+         * @param in 条目内容，由处理器负责关闭
+         * @return 解析结果，返回null表示忽略
+         */
+        T parse(String name, InputStream in) throws IOException;
+    }
+
+    /**
+     * @param threads 一次处理最多同时占用的工作线程数
+     * @param batchSize 按行处理时每批的行数
+     */
+    public ZipProcessor(int threads, int batchSize){
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static ZipProcessor getDefault(){
+        return DEFAULT;
+    }
+
+    /**
+     * 并行处理ZIP文件中所有文本条目的每一行
+     * @param zipFile ZIP文件
+     * @param collector 累加每一行并合并各线程的中间结果
+     * @return 处理结果
+     */
+    public <A, R> R lines(String zipFile, Collector<? super String, A, R> collector){
+        long start = System.currentTimeMillis();
+        LOGGER.info("开始解析ZIP文件：" + zipFile);
+        AtomicLong count = new AtomicLong();
+        Context<String, A> context = new Context<>(collector.supplier(), collector.accumulator());
+        //同时在处理中的批次数，超过时读取线程等待
+        Tasks tasks = new Tasks(threads * 2);
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)))) {
+            ZipEntry entry = null;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                LOGGER.info("处理文件：" + entry.getName());
+                //不关闭reader，关闭会关闭整个ZIP输入流
+                read(new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8)).lines().iterator(), tasks, context, count);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("解析ZIP文件被中断：" + zipFile, e);
+        } catch (Exception e) {
+            LOGGER.error("解析ZIP文件出错：" + zipFile, e);
+        }
+        tasks.await();
+        R result = context.finish(collector);
+        LOGGER.info("解析ZIP文件完毕，行数：" + count.get() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return result;
+    }
+
+    /**
+     * 并行处理文本的每一行，由调用线程读取，按批分发给工作线程，
+     * 同时在内存中的行数有上限，和文本的大小无关
+     * @param reader 文本，由调用者负责关闭
+     * @param collector 累加每一行并合并各线程的中间结果
+     * @return 处理结果
+     */
+    public <A, R> R lines(BufferedReader reader, Collector<? super String, A, R> collector){
+        return lines(reader.lines().iterator(), collector);
+    }
+
+    /**
+     * 并行处理已经在内存中的每一行
+     * @param lines 文本
+     * @param collector 累加每一行并合并各线程的中间结果
+     * @return 处理结果
+     */
+    public <A, R> R lines(Collection<String> lines, Collector<? super String, A, R> collector){
+        return lines(lines.iterator(), collector);
+    }
+
+    private <A, R> R lines(Iterator<String> lines, Collector<? super String, A, R> collector){
+        Context<String, A> context = new Context<>(collector.supplier(), collector.accumulator());
+        Tasks tasks = new Tasks(threads * 2);
+        try {
+            read(lines, tasks, context, new AtomicLong());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("解析文本被中断", e);
+        } catch (Exception e) {
+            LOGGER.error("解析文本出错", e);
+        }
+        tasks.await();
+        return context.finish(collector);
+    }
+
+    /**
+     * 并行处理ZIP文件中所有文本条目的每一行，适用于只有副作用没有结果的处理
+     * @param zipFile ZIP文件
+     * @param consumer 处理一行，会被多个线程同时调用
+     * @return 处理的行数
+     */
+    public long lines(String zipFile, Consumer<String> consumer){
+        return lines(zipFile, Collector.of(() -> new long[1],
+                (long[] count, String line) -> {
+                    consumer.accept(line);
+                    count[0]++;
+                },
+                (a, b) -> {
+                    a[0] += b[0];
+                    return a;
+                },
+                count -> count[0]));
+    }
+
+    /**
+     * 并行处理ZIP文件中的每一个条目，适用于PDF等不能按行拆分的文件
+     * @param zipFile ZIP文件
+     * @param parser 条目解析器
+     * @param collector 累加每个条目的解析结果并合并各线程的中间结果
+     * @return 处理结果
+     */
+    public <T, A, R> R entries(String zipFile, EntryParser<T> parser, Collector<? super T, A, R> collector){
+        long start = System.currentTimeMillis();
+        LOGGER.info("开始解析ZIP文件：" + zipFile);
+        AtomicInteger count = new AtomicInteger();
+        Context<T, A> context = new Context<>(collector.supplier(), collector.accumulator());
+        Tasks tasks = new Tasks(threads);
+        try (ZipFile zip = new ZipFile(zipFile, StandardCharsets.UTF_8)) {
+            try {
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    tasks.submit(() -> {
+                        LOGGER.info("处理文件：" + entry.getName());
+                        //ZipFile可以同时打开多个条目，每个条目独立解压
+                        try (InputStream in = new BufferedInputStream(zip.getInputStream(entry))) {
+                            T t = parser.parse(entry.getName(), in);
+                            if (t != null) {
+                                A container = context.acquire();
+                                try {
+                                    context.accumulate(container, t);
+                                } finally {
+                                    context.release(container);
+                                }
+                            }
+                            count.incrementAndGet();
+                        } catch (Exception e) {
+                            LOGGER.error("解析文件出错：" + entry.getName(), e);
+                        }
+                    });
+                }
+            } finally {
+                //在关闭ZipFile之前等待所有条目处理完毕
+                tasks.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("解析ZIP文件被中断：" + zipFile, e);
+        } catch (Exception e) {
+            LOGGER.error("解析ZIP文件出错：" + zipFile, e);
+        }
+        R result = context.finish(collector);
+        LOGGER.info("解析ZIP文件完毕，条目数：" + count.get() + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+        return result;
+    }
+
+    private static ExecutorService newWorkers(){
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+            Thread thread = new Thread(() -> {
+                IN_WORKER.set(true);
+                r.run();
+            }, "zip-processor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private <A> void read(Iterator<String> lines, Tasks tasks, Context<String, A> context, AtomicLong count) throws InterruptedException {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (lines.hasNext()) {
+            batch.add(lines.next());
+            count.incrementAndGet();
+            if (batch.size() == batchSize) {
+                submit(tasks, context, batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(tasks, context, batch);
+        }
+    }
+
+    private static <A> void submit(Tasks tasks, Context<String, A> context, List<String> batch) throws InterruptedException {
+        tasks.submit(() -> {
+            A container = context.acquire();
+            try {
+                for (String line : batch) {
+                    try {
+                        context.accumulate(container, line);
+                    } catch (Exception e) {
+                        LOGGER.error("解析文本出错", e);
+                    }
+                }
+            } finally {
+                context.release(container);
+            }
+        });
+    }
+
+    /**
+     * 一次处理提交到共用线程池的任务，同时在处理中的任务数有上限
+     */
+    private static class Tasks {
+        private final int limit;
+        private final Semaphore permits;
+
+        private Tasks(int limit){
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+        }
+
+        private void submit(Runnable task) throws InterruptedException {
+            if (IN_WORKER.get()) {
+                task.run();
+                return;
+            }
+            permits.acquire();
+            try {
+                WORKERS.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * 拿到全部许可时本次提交的任务都已经执行完毕
+         */
+        private void await(){
+            permits.acquireUninterruptibly(limit);
+            permits.release(limit);
+        }
+    }
+
+    /**
+     * 一次处理过程中的中间结果，同一时间只被一个任务使用
+     */
+    private static class Context<T, A> {
+        private final Queue<A> containers = new ConcurrentLinkedQueue<>();
+        private final Queue<A> idle = new ConcurrentLinkedQueue<>();
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, ? super T> accumulator;
+
+        private Context(Supplier<A> supplier, BiConsumer<A, ? super T> accumulator){
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+        }
+
+        private A acquire(){
+            A a = idle.poll();
+            if (a == null) {
+                a = supplier.get();
+                containers.add(a);
+            }
+            return a;
+        }
+
+        private void release(A a){
+            idle.add(a);
+        }
+
+        private void accumulate(A a, T t){
+            accumulator.accept(a, t);
+        }
+
+        private <R> R finish(Collector<? super T, A, R> collector){
+            A result = containers.isEmpty() ? collector.supplier().get() : null;
+            for (A a : containers) {
+                result = result == null ? a : collector.combiner().apply(result, a);
+            }
+            return collector.finisher().apply(result);
+        }
+    }
+}
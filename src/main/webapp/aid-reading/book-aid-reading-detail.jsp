@@ -16,13 +16,11 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
-<%@ page import="org.apdplat.jsearch.index.TextIndexer" %>
-<%@ page import="org.apdplat.jsearch.score.WordFrequencyScore" %>
 <%@ page import="org.apdplat.jsearch.search.Doc" %>
 <%@ page import="org.apdplat.jsearch.search.Hits" %>
-<%@ page import="org.apdplat.jsearch.search.SearchMode" %>
-<%@ page import="org.apdplat.jsearch.search.TextSearcher" %>
+<%@ page import="org.apdplat.superword.system.BookIndexManager" %>
 <%@ page import="org.apdplat.superword.tools.WordLinker" %>
+<%@ page import="java.util.concurrent.TimeUnit" %>
 <%@ page import="java.util.concurrent.atomic.AtomicInteger" %>
 <%@ page import="java.net.URLDecoder" %>
 
@@ -39,40 +37,30 @@
     try{
         pageSize = Integer.parseInt(request.getParameter("pageSize"));
     }catch (Exception e){}
-    String key = "TextSearcher_"+book;
-    TextSearcher textSearcher = (TextSearcher)application.getAttribute(key);
-    if(textSearcher == null){
-        String bookPath = request.getServletContext().getRealPath("/WEB-INF/classes"+book);
-        System.out.println("book path: " + bookPath);
-        String index = request.getServletContext().getRealPath("/WEB-INF/data/index/"+book.replace("/", "_"));
-        String indexText = request.getServletContext().getRealPath("/WEB-INF/data/index_text/"+book.replace("/", "_"));
-        int indexLengthLimit = 1000;
-        System.out.println("index path: "+index);
-        System.out.println("indexText path: " + indexText);
-        System.out.println("indexLengthLimit: " + indexLengthLimit);
-        TextIndexer textIndexer = new TextIndexer(index, indexText, indexLengthLimit);
-        textIndexer.indexDir(bookPath);
-        textSearcher = new TextSearcher(index, indexText);
-        application.setAttribute(key, textSearcher);
-    }
-    textSearcher.setPageSize(pageSize);
-    textSearcher.setScore(new WordFrequencyScore());
-    Hits hits = textSearcher.search(word, SearchMode.INTERSECTION);
-    StringBuilder regex = new StringBuilder();
-    for(char c : word.toCharArray()){
-        regex.append("[").append(Character.toUpperCase(c)).append("|").append(Character.toLowerCase(c)).append("]");
-    }
-    AtomicInteger i = new AtomicInteger();
     StringBuilder htmlFragment = new StringBuilder();
-    htmlFragment.append("hit(").append(hits.getHitCount()).append("):<br/>\n");
-    for(Doc doc : hits.getDocs()){
-        htmlFragment.append(i.incrementAndGet())
-                .append(". ")
-                .append(doc.getText().replaceAll(regex.toString(), "<font color=\"red\">"+ WordLinker.toLink(word)+"</font>"))
-                .append("<br/>\n");
-    }
-    if(pageSize > hits.getHitCount() && hits.getHitCount() > 0){
-        pageSize = hits.getHitCount();
+    BookIndexManager bookIndexManager = BookIndexManager.get(application);
+    //同一本书只建立一次索引，并发的请求等待同一个结果
+    Hits hits = null;
+    if(!bookIndexManager.contains(book)){
+        htmlFragment.append("The book is not found.<br/>\n");
+    }else if((hits = bookIndexManager.search(book, word, pageSize, 60, TimeUnit.SECONDS)) == null){
+        htmlFragment.append("The index of the book is not ready, please try again later.<br/>\n");
+    }else{
+        StringBuilder regex = new StringBuilder();
+        for(char c : word.toCharArray()){
+            regex.append("[").append(Character.toUpperCase(c)).append("|").append(Character.toLowerCase(c)).append("]");
+        }
+        AtomicInteger i = new AtomicInteger();
+        htmlFragment.append("hit(").append(hits.getHitCount()).append("):<br/>\n");
+        for(Doc doc : hits.getDocs()){
+            htmlFragment.append(i.incrementAndGet())
+                    .append(". ")
+                    .append(doc.getText().replaceAll(regex.toString(), "<font color=\"red\">"+ WordLinker.toLink(word)+"</font>"))
+                    .append("<br/>\n");
+        }
+        if(pageSize > hits.getHitCount() && hits.getHitCount() > 0){
+            pageSize = hits.getHitCount();
+        }
     }
 %>
 
@@ -16,13 +16,14 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apache.commons.lang.StringUtils" %>
 <%@ page import="org.apdplat.superword.model.CharMap" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
+<%@ page import="org.apdplat.superword.rule.CharTransformIndex" %>
 <%@ page import="org.apdplat.superword.rule.CharTransformRule" %>
 <%@ page import="java.util.List" %>
 <%@ page import="java.util.Map" %>
-<%@ page import="java.util.Set" %>
 
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 
@@ -32,9 +33,9 @@
         return;
     }
 
-    Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
+    CharTransformIndex charTransformIndex = WordsFilter.getCharTransformIndex(application, request.getAttribute("words_type").toString());
 
-    Map<Word, Map<CharMap, List<Word>>> data = CharTransformRule.transforms(words, new Word(word, ""));
+    Map<Word, Map<CharMap, List<Word>>> data = CharTransformRule.transforms(charTransformIndex, new Word(word, ""));
 
     String htmlFragment = CharTransformRule.toHtmlFragmentForWord(data);
 %>
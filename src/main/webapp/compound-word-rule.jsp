@@ -17,13 +17,12 @@
   --%>
 
 <%@ page import="org.apdplat.superword.model.Word" %>
-<%@ page import="org.apdplat.superword.rule.CompoundWord" %>
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.tools.HtmlFormatter" %>
 <%@ page import="org.apdplat.superword.tools.WordLinker" %>
 <%@ page import="java.util.List" %>
 <%@ page import="java.util.Map" %>
 <%@ page import="java.util.HashMap" %>
-<%@ page import="java.util.Set" %>
 
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%
@@ -37,18 +36,9 @@
         return;
     }
     String word_type = request.getAttribute("words_type").toString();
-    Set<Word> words = (Set<Word>)application.getAttribute("words_"+word_type);
-    String key = "compound_"+word_type;
 
-    Map<Word, Map<Integer, List<Word>>> compound = (Map<Word, Map<Integer, List<Word>>>)application.getAttribute(key);
-    if(compound == null){
-        synchronized (this){
-            if(compound == null){
-                compound = CompoundWord.find(words, words);
-                application.setAttribute(key, compound);
-            }
-        }
-    }
+    //复合词在第一次使用时由WordsFilter构建
+    Map<Word, Map<Integer, List<Word>>> compound = WordsFilter.getCompound(application, word_type);
 
     String htmlFragment = "";
     if("true".equals(all)){
@@ -20,6 +20,7 @@
 <%@ page import="java.util.concurrent.atomic.AtomicInteger" %>
 <%@ page import="org.apdplat.superword.system.AntiRobotFilter" %>
 <%@ page import="org.apdplat.superword.tools.IPUtils" %>
+<%@ page import="org.apdplat.superword.tools.HeavyHitters" %>
 
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%
@@ -37,18 +38,21 @@
     }catch (Exception e){}
     html.append("The maximum number of requests is ")
             .append(AntiRobotFilter.limit)
-            .append(" per user per day, invalid request number is ")
-            .append(AntiRobotFilter.invalidCount)
+            .append(" per user in the last 24 hours, invalid request number is ")
+            .append(AntiRobotFilter.invalidCount.get())
+            .append(", total request number today is ")
+            .append(AntiRobotFilter.getTotal())
             .append(".<br/><br/>");
 
     html.append("<table>")
-            .append("<tr><th>No.</th><th>Username</th><th>User IP</th><th>Access Date</th><th>Access Count</th><th>User Location</th><th>User Agent</th></tr>");
+            .append("<tr><th>No.</th><th>Username</th><th>User IP</th><th>Access Count Today</th><th>Max Error</th><th>Access Count In 24 Hours</th><th>User Location</th><th>User Agent</th></tr>");
     AtomicInteger i = new AtomicInteger();
-    for(String item : AntiRobotFilter.getData()){
-        String[] attrs = item.split("-");
+    for(HeavyHitters.Entry<AntiRobotFilter.Client> item : AntiRobotFilter.getData()){
+        AntiRobotFilter.Client client = item.getKey();
+        String userAgent = client.getUserAgent() == null ? "" : client.getUserAgent();
         String pre = "";
         String suf = "";
-        if(attrs[2].contains("Spider") || attrs[2].contains("bot")){
+        if(userAgent.contains("Spider") || userAgent.contains("bot")){
             pre = "<font color=\"red\">";
             suf = "</font>";
         }
@@ -58,27 +62,31 @@
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(attrs[0])
+                .append(client.getUserName())
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(attrs[1])
+                .append(client.getIp())
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(attrs[3])
+                .append(item.getCount())
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(attrs[4])
+                .append(item.getError())
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(IPUtils.getIPLocation(attrs[1]))
+                .append(AntiRobotFilter.getRecentCount(client))
                 .append(suf)
                 .append("</td><td>")
                 .append(pre)
-                .append(attrs[2])
+                .append(IPUtils.getIPLocation(client.getIp()))
+                .append(suf)
+                .append("</td><td>")
+                .append(pre)
+                .append(userAgent)
                 .append(suf)
                 .append("</td></tr>");
     }
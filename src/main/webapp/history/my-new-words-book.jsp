@@ -17,10 +17,9 @@
   --%>
 
 <%@ page import="org.apdplat.superword.tools.MySQLUtils" %>
-<%@ page import="java.util.List" %>
+<%@ page import="java.util.*" %>
 <%@ page import="org.apdplat.superword.model.User" %>
 <%@ page import="org.apdplat.superword.model.QQUser" %>
-<%@ page import="java.util.UUID" %>
 <%@ page import="org.apdplat.superword.model.MyNewWord" %>
 <%@ page import="org.apache.commons.lang.StringUtils" %>
 <%@ page import="org.apdplat.superword.tools.WordLinker.Dictionary" %>
@@ -47,16 +46,16 @@
     htmlFragment.append("<table border=\"1\" ondblclick=\"querySelectionWord();\">");
     htmlFragment.append("<tr><th>No.</th><th>Word</th><th>Chinese Meaning</th><th>English Meaning</th><th>Time</th><th>Delete</th></tr>");
     int i = 1;
+    List<String> newWords = new ArrayList<String>();
+    for (MyNewWord myNewWord : myNewWords) {
+        newWords.add(myNewWord.getWord());
+    }
+    Map<String, String> englishMeanings = MySQLUtils.getWordDefinitions(newWords, Arrays.asList(Dictionary.WEBSTER, Dictionary.OXFORD));
+    Map<String, String> chineseMeanings = MySQLUtils.getWordDefinitions(newWords, Arrays.asList(Dictionary.YOUDAO, Dictionary.ICIBA));
     for (MyNewWord myNewWord : myNewWords) {
         String w = myNewWord.getWord();
-        String englishMeaning = MySQLUtils.getWordDefinition(w, Dictionary.WEBSTER.name());
-        if(StringUtils.isBlank(englishMeaning)){
-            englishMeaning = MySQLUtils.getWordDefinition(w, Dictionary.OXFORD.name());
-        }
-        String chineseMeaning = MySQLUtils.getWordDefinition(w, Dictionary.YOUDAO.name());
-        if(StringUtils.isBlank(chineseMeaning)){
-            chineseMeaning = MySQLUtils.getWordDefinition(w, Dictionary.ICIBA.name());
-        }
+        String englishMeaning = englishMeanings.get(w);
+        String chineseMeaning = chineseMeanings.get(w);
         htmlFragment.append("<tr><td>")
                 .append(i++)
                 .append("</td><td>")
@@ -16,8 +16,9 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
-<%@ page import="java.util.Set" %>
+<%@ page import="org.apdplat.superword.rule.WordPrefixIndex" %>
 <%@ page import="org.apdplat.superword.model.Prefix" %>
 <%@ page import="java.util.List" %>
 <%@ page import="org.apdplat.superword.rule.DynamicPrefixRule" %>
@@ -39,13 +40,13 @@
         userDynamicPrefix.setUserName(user == null ? "anonymity" : user.getUserName());
         MySQLUtils.saveUserDynamicPrefixToDatabase(userDynamicPrefix);
 
-        Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
+        WordPrefixIndex prefixIndex = WordsFilter.getPrefixIndex(application, request.getAttribute("words_type").toString());
 
         List<Prefix> prefixList = new ArrayList<Prefix>();
         for(String prefix : prefixes.trim() .split("-")){
             prefixList.add(new Prefix(prefix, ""));
         }
-        List<Word> data = DynamicPrefixRule.findByPrefix(words, prefixList);
+        List<Word> data = DynamicPrefixRule.findByPrefix(prefixIndex, prefixList);
         if(data.size() > 500){
             data = data.subList(0, 500);
         }
@@ -16,8 +16,9 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
-<%@ page import="java.util.Set" %>
+<%@ page import="org.apdplat.superword.rule.SuffixIndex" %>
 <%@ page import="org.apdplat.superword.model.Suffix" %>
 <%@ page import="java.util.List" %>
 <%@ page import="org.apdplat.superword.rule.DynamicSuffixRule" %>
@@ -43,8 +44,8 @@
         for(String suffix : suffixes.trim() .split("-")){
             suffixList.add(new Suffix(suffix, ""));
         }
-        Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
-        List<Word> data = DynamicSuffixRule.findBySuffix(words, suffixList);
+        SuffixIndex suffixIndex = WordsFilter.getSuffixIndex(application, request.getAttribute("words_type").toString());
+        List<Word> data = DynamicSuffixRule.findBySuffix(suffixIndex, suffixList);
         if(data.size() > 500){
             data = data.subList(0, 500);
         }
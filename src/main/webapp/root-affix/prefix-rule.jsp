@@ -16,9 +16,11 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.model.Prefix" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
 <%@ page import="org.apdplat.superword.rule.PrefixRule" %>
+<%@ page import="org.apdplat.superword.rule.WordPrefixIndex" %>
 <%@ page import="org.apdplat.superword.tools.HtmlFormatter" %>
 <%@ page import="java.util.*" %>
 <%@ page import="java.util.concurrent.ConcurrentHashMap" %>
@@ -41,8 +43,8 @@
         for(String prefix : prefixes.trim().split(",")){
             prefixList.add(new Prefix(prefix, map.get(prefix.replace("-", ""))==null?"":map.get(prefix.replace("-", "")).getDes()));
         }
-        Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
-        TreeMap<Prefix, List<Word>> data = PrefixRule.findByPrefix(words, prefixList, "N".equalsIgnoreCase(request.getParameter("strict")) ? false : true);
+        WordPrefixIndex prefixIndex = WordsFilter.getPrefixIndex(application, request.getAttribute("words_type").toString());
+        TreeMap<Prefix, List<Word>> data = PrefixRule.findByPrefix(prefixIndex, prefixList, "N".equalsIgnoreCase(request.getParameter("strict")) ? false : true);
         for(Map.Entry<Prefix, List<Word>> entry : data.entrySet()){
             if(entry.getValue().size() > 500) {
                 entry.setValue(entry.getValue().subList(0, 500));
@@ -16,8 +16,10 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.model.Suffix" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
+<%@ page import="org.apdplat.superword.rule.SuffixIndex" %>
 <%@ page import="org.apdplat.superword.rule.SuffixRule" %>
 <%@ page import="org.apdplat.superword.tools.HtmlFormatter" %>
 <%@ page import="java.util.*" %>
@@ -41,8 +43,8 @@
         for(String suffix : suffixes.trim().split(",")){
             suffixList.add(new Suffix(suffix, map.get(suffix.replace("-", ""))==null?"":map.get(suffix.replace("-", "")).getDes()));
         }
-        Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
-        TreeMap<Suffix, List<Word>> data = SuffixRule.findBySuffix(words, suffixList, "N".equalsIgnoreCase(request.getParameter("strict")) ? false : true);
+        SuffixIndex suffixIndex = WordsFilter.getSuffixIndex(application, request.getAttribute("words_type").toString());
+        TreeMap<Suffix, List<Word>> data = SuffixRule.findBySuffix(suffixIndex, suffixList, "N".equalsIgnoreCase(request.getParameter("strict")) ? false : true);
         for(Map.Entry<Suffix, List<Word>> entry : data.entrySet()){
             if(entry.getValue().size() > 500) {
                 entry.setValue(entry.getValue().subList(0, 500));
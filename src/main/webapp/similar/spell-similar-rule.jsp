@@ -16,19 +16,17 @@
   ~  along with this program.  If not, see <http://www.gnu.org/licenses/>.
   --%>
 
+<%@ page import="org.apdplat.superword.system.WordsFilter" %>
 <%@ page import="org.apdplat.superword.model.Word" %>
 <%@ page import="org.apdplat.superword.tools.WordLinker" %>
 <%@ page import="org.apdplat.superword.tools.WordLinker.Dictionary" %>
 <%@ page import="org.apdplat.word.analysis.Hit" %>
 <%@ page import="org.apdplat.word.analysis.Hits" %>
-<%@ page import="org.apdplat.word.analysis.EditDistanceTextSimilarity" %>
-<%@ page import="org.apdplat.word.analysis.TextSimilarity" %>
-<%@ page import="org.apdplat.word.segmentation.SegmentationAlgorithm" %>
+<%@ page import="org.apdplat.superword.rule.EditDistanceIndex" %>
 <%@ page import="java.util.*" %>
 <%@ page import="org.apdplat.superword.tools.MySQLUtils" %>
 <%@ page import="org.apdplat.superword.model.UserSimilarWord" %>
 <%@ page import="org.apdplat.superword.model.User" %>
-<%@ page import="org.apache.commons.lang.StringUtils" %>
 
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%
@@ -51,30 +49,23 @@
         userSimilarWord.setUserName(user == null ? "anonymity" : user.getUserName());
         MySQLUtils.saveUserSimilarWordToDatabase(userSimilarWord);
 
-        Set<Word> words = (Set<Word>)application.getAttribute("words_"+request.getAttribute("words_type"));
-
-        TextSimilarity textSimilarity = new EditDistanceTextSimilarity();
-        textSimilarity.setSegmentationAlgorithm(SegmentationAlgorithm.PureEnglish);
-        List<String> target = new ArrayList<String>();
-        for(Word w : words){
-            target.add(w.getWord());
-        }
-        Hits result = textSimilarity.rank(word, target, count);
+        EditDistanceIndex editDistanceIndex = WordsFilter.getEditDistanceIndex(application, request.getAttribute("words_type").toString());
+        Hits result = editDistanceIndex.rank(word, count);
 
         StringBuilder temp = new StringBuilder();
         int i=1;
         temp.append("<table border=\"1\" ondblclick=\"querySelectionWord();\">");
         temp.append("<tr><th>No.</th><th>Word</th><th>Similar Score</th><th>Chinese Meaning</th><th>English Meaning</th><th>Similar Word</th></tr>");
+        List<String> hitWords = new ArrayList<String>();
+        for(Hit hit : result.getHits()){
+            hitWords.add(hit.getText());
+        }
+        Map<String, String> englishMeanings = MySQLUtils.getWordDefinitions(hitWords, Arrays.asList(Dictionary.WEBSTER, Dictionary.OXFORD));
+        Map<String, String> chineseMeanings = MySQLUtils.getWordDefinitions(hitWords, Arrays.asList(Dictionary.YOUDAO, Dictionary.ICIBA));
         for(Hit hit : result.getHits()){
             String w = hit.getText();
-            String englishMeaning = MySQLUtils.getWordDefinition(w, Dictionary.WEBSTER.name());
-            if(StringUtils.isBlank(englishMeaning)){
-                englishMeaning = MySQLUtils.getWordDefinition(w, Dictionary.OXFORD.name());
-            }
-            String chineseMeaning = MySQLUtils.getWordDefinition(w, Dictionary.YOUDAO.name());
-            if(StringUtils.isBlank(chineseMeaning)){
-                chineseMeaning = MySQLUtils.getWordDefinition(w, Dictionary.ICIBA.name());
-            }
+            String englishMeaning = englishMeanings.get(w);
+            String chineseMeaning = chineseMeanings.get(w);
             temp.append("<tr>");
             temp.append("<td> ").append(i++)
                     .append(". </td><td> ")
@@ -0,0 +1,65 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.benchmark;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.tools.AidReading;
+import org.apdplat.superword.tools.FileUtils;
+import org.apdplat.superword.tools.WordLinker;
+import org.apdplat.superword.tools.WordSources;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 辅助阅读的性能基准测试
+ * @author 杨尚川
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class AidReadingBenchmark {
+    private Set<Word> words;
+    private List<String> text;
+
+    @Setup
+    public void setup() {
+        WordLinker.serverRedirect = null;
+        words = WordSources.get("/word_CET4.txt");
+        text = FileUtils.readResource("/it/movie/kungfupanda.txt");
+    }
+
+    @Benchmark
+    public String analyse() {
+        return AidReading.analyse(words, WordLinker.Dictionary.ICIBA, 6, false, null, text);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(AidReadingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.benchmark;
+
+import org.apdplat.superword.model.Prefix;
+import org.apdplat.superword.model.Suffix;
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.rule.*;
+import org.apdplat.superword.tools.WordSources;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构词规则的性能基准测试
+ * 词表为考试大纲词汇以及 words.txt 中的所有词
+ * @author 杨尚川
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RuleBenchmark {
+    private Set<Word> syllabusVocabulary;
+    private Set<Word> all;
+    private List<Prefix> prefixes;
+    private List<Suffix> suffixes;
+    private List<Word> roots;
+    private Word target;
+    private List<Prefix> dynamicPrefixes;
+    private List<Suffix> dynamicSuffixes;
+
+    @Setup
+    public void setup() {
+        syllabusVocabulary = WordSources.getSyllabusVocabulary();
+        all = WordSources.getAll();
+        prefixes = PrefixRule.getAllPrefixes();
+        suffixes = SuffixRule.getAllSuffixes();
+        roots = RootRule.getAllRoots();
+        target = new Word("dominate", "");
+        dynamicPrefixes = Arrays.asList(new Prefix("in", ""), new Prefix("un", ""));
+        dynamicSuffixes = Arrays.asList(new Suffix("or", ""), new Suffix("our", ""));
+    }
+
+    @Benchmark
+    public Object charTransformRule() {
+        return CharTransformRule.transforms(syllabusVocabulary, target);
+    }
+
+    @Benchmark
+    public Object prefixRule() {
+        return PrefixRule.findByPrefix(syllabusVocabulary, prefixes, false);
+    }
+
+    @Benchmark
+    public Object prefixRuleStrict() {
+        return PrefixRule.findByPrefix(syllabusVocabulary, prefixes, true);
+    }
+
+    @Benchmark
+    public Object suffixRule() {
+        return SuffixRule.findBySuffix(syllabusVocabulary, suffixes, false);
+    }
+
+    @Benchmark
+    public Object suffixRuleStrict() {
+        return SuffixRule.findBySuffix(syllabusVocabulary, suffixes, true);
+    }
+
+    @Benchmark
+    public Object rootRule() {
+        return RootRule.findByRoot(syllabusVocabulary, roots);
+    }
+
+    @Benchmark
+    public Object compoundWord() {
+        return CompoundWord.find(syllabusVocabulary);
+    }
+
+    @Benchmark
+    public Object dynamicPrefixRule() {
+        return DynamicPrefixRule.findByPrefix(all, dynamicPrefixes);
+    }
+
+    @Benchmark
+    public Object dynamicSuffixRule() {
+        return DynamicSuffixRule.findBySuffix(all, dynamicSuffixes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RuleBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.benchmark;
+
+import org.apdplat.superword.model.Word;
+import org.apdplat.superword.rule.EditDistanceIndex;
+import org.apdplat.superword.rule.SimilarWord;
+import org.apdplat.superword.rule.WordVector;
+import org.apdplat.superword.tools.WordSources;
+import org.apdplat.word.analysis.EditDistanceTextSimilarity;
+import org.apdplat.word.analysis.Hits;
+import org.apdplat.word.analysis.JaroWinklerDistanceTextSimilarity;
+import org.apdplat.word.analysis.TextSimilarity;
+import org.apdplat.word.segmentation.SegmentationAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相似词计算的性能基准测试
+ * 词表为 words.txt 和 word_computer.txt 中的所有词
+ * @author 杨尚川
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityBenchmark {
+    @Param({"love", "computer", "internationalization"})
+    private String word;
+
+    private List<String> words;
+    private List<WordVector> wordVectors;
+    private SimilarWord similarWord;
+    private EditDistanceIndex editDistanceIndex;
+    private TextSimilarity editDistance;
+    private TextSimilarity jaroWinkler;
+    private WordVector wordVector;
+
+    @Setup
+    public void setup() {
+        Set<Word> all = WordSources.getAll();
+        words = new ArrayList<>(all.size());
+        wordVectors = new ArrayList<>(all.size());
+        for (Word w : all) {
+            words.add(w.getWord());
+            WordVector vector = WordVector.of(w.getWord());
+            if (vector != null) {
+                wordVectors.add(vector);
+            }
+        }
+        similarWord = new SimilarWord();
+        editDistanceIndex = new EditDistanceIndex(words);
+        editDistance = new EditDistanceTextSimilarity();
+        editDistance.setSegmentationAlgorithm(SegmentationAlgorithm.PureEnglish);
+        jaroWinkler = new JaroWinklerDistanceTextSimilarity();
+        jaroWinkler.setSegmentationAlgorithm(SegmentationAlgorithm.PureEnglish);
+        wordVector = WordVector.of(word);
+    }
+
+    @Benchmark
+    public Hits similarWordWithEditDistanceIndex() {
+        return similarWord.compute(word, editDistanceIndex, 45);
+    }
+
+    @Benchmark
+    public Hits similarWordWithJaroWinkler() {
+        return similarWord.compute(word, jaroWinkler, words, 45);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Hits editDistanceTextSimilarity() {
+        return editDistance.rank(word, words, 45);
+    }
+
+    @Benchmark
+    public void wordVectorScore(Blackhole blackhole) {
+        for (WordVector vector : wordVectors) {
+            blackhole.consume(wordVector.score(vector));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SimilarityBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
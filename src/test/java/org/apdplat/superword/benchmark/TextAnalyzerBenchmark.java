@@ -0,0 +1,140 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.apdplat.superword.tools.TextAnalyzer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 分词性能基准测试
+ * 对比逐字符扫描的 TextAnalyzer.seg 和之前基于正则表达式的实现
+ * @author 杨尚川
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextAnalyzerBenchmark {
+    private static final Pattern PATTERN = Pattern.compile("\\d+");
+    private static final Pattern UNICODE = Pattern.compile("[uU][0-9a-fA-F]{4}");
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() throws Exception {
+        lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("src/main/resources/it/spring/Pro Spring MVC.txt"), StandardCharsets.UTF_8)) {
+            if (StringUtils.isNotBlank(line)) {
+                lines.add(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void seg(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(TextAnalyzer.seg(line));
+        }
+    }
+
+    @Benchmark
+    public void segWithConsumer(Blackhole blackhole) {
+        for (String line : lines) {
+            TextAnalyzer.seg(line, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void segWithRegex(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(segWithRegex(line));
+        }
+    }
+
+    /**
+     * 之前基于正则表达式的分词实现，作为对比的基准
+     */
+    private static List<String> segWithRegex(String sentence) {
+        List<String> data = new ArrayList<>();
+        for (String word : sentence.trim().split("[^a-zA-Z0-9]")) {
+            if (StringUtils.isBlank(word) || word.length() < 2) {
+                continue;
+            }
+            List<String> list = new ArrayList<>();
+            if (word.length() < 6
+                    || (Character.isUpperCase(word.charAt(word.length()-1))
+                          && Character.isUpperCase(word.charAt(0)))
+                    || PATTERN.matcher(word).find()
+                    || StringUtils.isAllUpperCase(word)) {
+                word = word.toLowerCase();
+            }
+            int last = 0;
+            for (int i = 1; i < word.length(); i++) {
+                if (Character.isUpperCase(word.charAt(i))
+                        && Character.isLowerCase(word.charAt(i - 1))) {
+                    list.add(word.substring(last, i));
+                    last = i;
+                }
+            }
+            if (last < word.length()) {
+                list.add(word.substring(last, word.length()));
+            }
+            list.stream()
+                    .map(w -> w.toLowerCase())
+                    .forEach(w -> {
+                        if (w.length() < 2
+                                || Character.isDigit(w.charAt(0))
+                                || UNICODE.matcher(w).find()) {
+                            return;
+                        }
+                        switch (w) {
+                            case "ll": w = "will"; break;
+                            case "re": w = "are"; break;
+                            case "ch": w = "chapter"; break;
+                            case "ve": w = "have"; break;
+                            case "doesn": w = "does"; break;
+                            case "isn": w = "is"; break;
+                            case "br": return;
+                        }
+                        data.add(w);
+                    });
+        }
+        return data;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TextAnalyzerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
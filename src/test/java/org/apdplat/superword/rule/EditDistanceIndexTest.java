@@ -0,0 +1,51 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.rule;
+
+import org.apdplat.word.analysis.EditDistanceTextSimilarity;
+import org.apdplat.word.analysis.TextSimilarity;
+import org.apdplat.word.segmentation.SegmentationAlgorithm;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author 杨尚川
+ */
+public class EditDistanceIndexTest {
+    @Test
+    public void testRank(){
+        List<String> words = Arrays.asList("word", "world", "sword", "words", "ward", "computer", "commuter",
+                "compute", "love", "glove", "lover", "dove", "a", "skylight", "daylight", "light");
+        EditDistanceIndex editDistanceIndex = new EditDistanceIndex(words);
+        TextSimilarity textSimilarity = new EditDistanceTextSimilarity();
+        textSimilarity.setSegmentationAlgorithm(SegmentationAlgorithm.PureEnglish);
+        for(String word : Arrays.asList("word", "computer", "love", "light", "x", "")){
+            for(int limit : new int[]{1, 3, 5, 100}){
+                assertEquals("rank is error: "+word+" "+limit,
+                        textSimilarity.rank(word, words, limit).getHits().toString(),
+                        editDistanceIndex.rank(word, limit).getHits().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在小语料上比较倒排索引和逐行扫描的结果
+ * @author 杨尚川
+ */
+public class EvidenceIndexTest {
+    private static final List<String> WORDS = Arrays.asList("data", "index", "Java", "the", "missing", "data", "reaction");
+    private static final int[][] LIMITS = {{10, 1}, {100, 10}, {3, 2}, {Integer.MAX_VALUE, Integer.MAX_VALUE}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Path corpus;
+    private Path indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        corpus = folder.newFolder("corpus").toPath();
+        indexFile = folder.getRoot().toPath().resolve("index/corpus.idx");
+        write("java/data.txt", "The data is indexed.\r\nJava data structures, index and data.\n\nthe same line\nthe same line\n数据 data 结构\r\nno match here");
+        write("java/index.txt", "An index maps data to lines.\rthe same line\nJava index reaction\nindex index index\n");
+        write("db/reaction.txt", "reaction of the data\nreaction of the data\nthe Java reaction, the index, the data\nlast line without newline");
+        write("db/.hidden.txt", "data index Java the");
+        write("db/notes.md", "data index Java the");
+    }
+
+    private void write(String path, String text) throws IOException {
+        write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(String path, byte[] bytes) throws IOException {
+        Path file = corpus.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+    }
+
+    @Test
+    public void testSameAsScan() throws IOException {
+        EvidenceIndex index = EvidenceIndex.get(corpus, indexFile);
+        assertTrue(Files.exists(indexFile));
+        assertEquals(15, index.getLineCount());
+        for(int[] limits : LIMITS){
+            assertEvidence(scan(corpus, WORDS, limits[0], limits[1]), index.findEvidence(WORDS, limits[0], limits[1]));
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        EvidenceIndex built = EvidenceIndex.get(corpus, indexFile);
+        //换一个索引文件名，只能从文件中读取
+        Path copy = folder.getRoot().toPath().resolve("copy.idx");
+        Files.copy(indexFile, copy);
+        //重建时会替换索引文件，修改时间会变化
+        Files.setLastModifiedTime(copy, FileTime.fromMillis(1000));
+        EvidenceIndex loaded = EvidenceIndex.get(corpus, copy);
+        assertNotSame(built, loaded);
+        assertEquals(1000, Files.getLastModifiedTime(copy).toMillis());
+        assertEquals(built.getTermCount(), loaded.getTermCount());
+        assertEquals(built.getLineCount(), loaded.getLineCount());
+        for(String word : WORDS){
+            assertArrayEquals(built.postings(word), loaded.postings(word));
+        }
+        for(int[] limits : LIMITS){
+            assertEvidence(scan(corpus, WORDS, limits[0], limits[1]), loaded.findEvidence(WORDS, limits[0], limits[1]));
+        }
+    }
+
+    @Test
+    public void testRebuildWhenChanged() throws IOException {
+        EvidenceIndex.get(corpus, indexFile);
+        Path file = corpus.resolve("java/index.txt");
+        Files.write(file, "\nnew data line".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        EvidenceIndex index = EvidenceIndex.get(corpus, indexFile);
+        for(int[] limits : LIMITS){
+            assertEvidence(scan(corpus, WORDS, limits[0], limits[1]), index.findEvidence(WORDS, limits[0], limits[1]));
+        }
+    }
+
+    @Test
+    public void testSkipNonUtf8() throws IOException {
+        write("db/latin1.txt", "café data".getBytes(StandardCharsets.ISO_8859_1));
+        EvidenceIndex index = EvidenceIndex.get(corpus, indexFile);
+        Map<String, Map<String, List<String>>> data = index.findEvidence(Collections.singletonList("data"), Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertFalse(data.get("data").containsKey("latin1"));
+        assertTrue(data.get("data").containsKey("reaction"));
+    }
+
+    private static void assertEvidence(Map<String, Map<String, List<String>>> expected, Map<String, Map<String, List<String>>> actual){
+        assertEquals(expected, actual);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+    }
+
+    /**
+     * 逐行扫描所有文件，即建立索引之前的做法
+     */
+    private static Map<String, Map<String, List<String>>> scan(Path dir, List<String> words, int totalLimitForWord, int bookLimitForBook) throws IOException {
+        Map<String, Map<String, List<String>>> data = new LinkedHashMap<>();
+        Map<String, Integer> wordInOneBookCollectCount = new HashMap<>();
+        Map<String, Integer> wordInAllBookCollectCount = new HashMap<>();
+        Set<Integer> hashes = new HashSet<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.toFile().getName();
+                if (name.startsWith(".") || !name.endsWith(".txt")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String book = name.replace(".txt", "");
+                for(String line : Files.readAllLines(file)){
+                    if(hashes.contains(line.hashCode())){
+                        continue;
+                    }
+                    List<String> wordSet = TextAnalyzer.seg(line);
+                    for(String word : words){
+                        String wordBook = word + "_" + book;
+                        data.putIfAbsent(word, new HashMap<>());
+                        if (wordSet.contains(word)
+                                && wordInOneBookCollectCount.getOrDefault(wordBook, 0) < bookLimitForBook
+                                && wordInAllBookCollectCount.getOrDefault(word, 0) < totalLimitForWord) {
+                            wordInOneBookCollectCount.merge(wordBook, 1, Integer::sum);
+                            wordInAllBookCollectCount.merge(word, 1, Integer::sum);
+                            data.get(word).computeIfAbsent(book, k -> new ArrayList<>()).add(line);
+                            hashes.add(line.hashCode());
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return data;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用偏斜的访问流测试访问统计的误差保证
+ * @author 杨尚川
+ */
+public class HeavyHittersTest {
+    private static final HeavyHitters.Codec<String> CODEC = new HeavyHitters.Codec<String>() {
+        @Override
+        public void write(DataOutput out, String key) throws IOException {
+            out.writeUTF(key);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    private static Map<String, Long> feed(HeavyHitters<String> heavyHitters){
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for(int i=0; i<200000; i++){
+            //10个爬虫占一半的访问，其余是大量的普通客户端
+            String key = random.nextBoolean() ? "robot-" + random.nextInt(10) : "user-" + random.nextInt(50000);
+            heavyHitters.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+        return exact;
+    }
+
+    @Test
+    public void testEstimate() {
+        HeavyHitters<String> heavyHitters = new HeavyHitters<>(1 << 12, 4, 100);
+        Map<String, Long> exact = feed(heavyHitters);
+        assertEquals(200000, heavyHitters.getTotal());
+        long bound = (long) Math.ceil(Math.E / heavyHitters.getWidth() * heavyHitters.getTotal());
+        int exceeded = 0;
+        for(Map.Entry<String, Long> entry : exact.entrySet()){
+            long estimate = heavyHitters.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if(estimate - entry.getValue() > bound){
+                exceeded++;
+            }
+        }
+        assertTrue(exceeded < exact.size() / 100);
+    }
+
+    @Test
+    public void testTop() throws IOException {
+        HeavyHitters<String> heavyHitters = new HeavyHitters<>(1 << 12, 4, 100);
+        Map<String, Long> exact = feed(heavyHitters);
+        List<HeavyHitters.Entry<String>> top = heavyHitters.top(10);
+        assertEquals(10, top.size());
+        for(HeavyHitters.Entry<String> entry : top){
+            assertTrue(entry.getKey().startsWith("robot-"));
+            long count = exact.get(entry.getKey());
+            assertTrue(entry.getCount() >= count);
+            assertTrue(entry.getCount() - entry.getError() <= count);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        heavyHitters.write(new DataOutputStream(bytes), CODEC);
+        HeavyHitters<String> restored = HeavyHitters.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), CODEC);
+        assertEquals(heavyHitters.getTotal(), restored.getTotal());
+        for(String key : exact.keySet()){
+            assertEquals(heavyHitters.estimate(key), restored.estimate(key));
+        }
+        Map<String, Long> expected = new HashMap<>();
+        heavyHitters.top().forEach(entry -> expected.put(entry.getKey(), entry.getCount()));
+        Map<String, Long> actual = new HashMap<>();
+        restored.top().forEach(entry -> actual.put(entry.getKey(), entry.getCount()));
+        assertEquals(expected, actual);
+        //恢复后继续计数
+        restored.add("robot-0");
+        assertEquals(heavyHitters.estimate("robot-0") + 1, restored.estimate("robot-0"));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用本地的HTTP桩服务器测试异步网页抓取
+ * @author 杨尚川
+ */
+public class HttpFetcherTest {
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final Set<Integer> ports = new ConcurrentSkipListSet<>();
+    //放行/gate的响应
+    private final CountDownLatch gate = new CountDownLatch(1);
+    //测试结束前/hang一直不响应
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/word", exchange -> {
+            ports.add(exchange.getRemoteAddress().getPort());
+            respond(exchange, "text/html; charset=utf-8", "<html><body>单词 word</body></html>".getBytes(StandardCharsets.UTF_8), false);
+        });
+        server.createContext("/gzip", exchange ->
+            respond(exchange, "text/html; charset=utf-8", "<p>gzip</p>".getBytes(StandardCharsets.UTF_8), true));
+        server.createContext("/slow", exchange -> {
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            respond(exchange, "text/plain", "slow".getBytes(StandardCharsets.UTF_8), false);
+        });
+        server.createContext("/gate", exchange -> {
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "text/plain", "open".getBytes(StandardCharsets.UTF_8), false);
+        });
+        server.createContext("/hang", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "text/plain", "late".getBytes(StandardCharsets.UTF_8), false);
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown(){
+        gate.countDown();
+        release.countDown();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body, boolean gzip) throws IOException {
+        if(gzip){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try(GZIPOutputStream zip = new GZIPOutputStream(out)){
+                zip.write(body);
+            }
+            body = out.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(body);
+        }
+    }
+
+    @Test
+    public void testCompleteWhenBytesArrive() throws Exception {
+        HttpFetcher fetcher = new HttpFetcher(1000, 5000, 4, 4);
+        CompletableFuture<HttpFetcher.Response> future = fetcher.get(base + "/gate", Collections.emptyMap());
+        //服务器还没有响应，调用者没有被阻塞，结果也没有完成
+        assertFalse(future.isDone());
+        gate.countDown();
+        assertEquals("open", future.get(5, TimeUnit.SECONDS).getText());
+
+        HttpFetcher.Response response = fetcher.post(base + "/word", Collections.emptyMap()).get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getText().contains("单词 word"));
+
+        response = fetcher.get(base + "/gzip", HttpFetcher.headers("Accept-Encoding", "gzip")).get(5, TimeUnit.SECONDS);
+        assertEquals("<p>gzip</p>", response.getText());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        HttpFetcher fetcher = new HttpFetcher(1000, 300, 4, 4);
+        //服务器在测试结束前不会响应，结果只能因为读取超时而完成
+        try {
+            fetcher.get(base + "/hang", Collections.emptyMap()).get(5, TimeUnit.SECONDS);
+            fail("read timeout expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testMaxPerHost() throws Exception {
+        HttpFetcher fetcher = new HttpFetcher(5000, 5000, 2, 8);
+        List<CompletableFuture<HttpFetcher.Response>> futures = new ArrayList<>();
+        for(int i=0; i<8; i++){
+            futures.add(fetcher.get(base + "/slow", Collections.emptyMap()));
+        }
+        for(CompletableFuture<HttpFetcher.Response> future : futures){
+            assertEquals("slow", future.get(10, TimeUnit.SECONDS).getText());
+        }
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000, 1, 1);
+        for(int i=0; i<5; i++){
+            assertEquals(200, fetcher.get(base + "/word", Collections.emptyMap()).get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(1, ports.size());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用可控的时钟测试滑动窗口计数器
+ * @author 杨尚川
+ */
+public class SlidingWindowRateLimiterTest {
+
+    @Test
+    public void testSlidingWindow() {
+        AtomicLong now = new AtomicLong(1000000);
+        SlidingWindowRateLimiter<String> limiter = new SlidingWindowRateLimiter<>(1000, 10, 4, 100, now::get);
+        for(int i=0; i<5; i++){
+            assertTrue(limiter.tryAcquire("a", 8));
+        }
+        now.addAndGet(500);
+        for(int i=0; i<3; i++){
+            assertTrue(limiter.tryAcquire("a", 8));
+        }
+        assertFalse(limiter.tryAcquire("a", 8));
+        assertEquals(9, limiter.count("a"));
+        //前5次访问滑出窗口
+        now.addAndGet(600);
+        assertEquals(4, limiter.count("a"));
+        assertTrue(limiter.tryAcquire("a", 8));
+        //整个窗口都过期
+        now.addAndGet(2000);
+        assertEquals(0, limiter.count("a"));
+        assertEquals(1, limiter.evictExpired());
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    public void testBoundedMemory() {
+        AtomicLong now = new AtomicLong();
+        SlidingWindowRateLimiter<Integer> limiter = new SlidingWindowRateLimiter<>(1000, 10, 4, 40, now::get);
+        for(int i=0; i<1000; i++){
+            limiter.acquire(i);
+        }
+        assertTrue(limiter.size() <= 40);
+        assertEquals(1000 - limiter.size(), limiter.getEvictions());
+        //最近访问的客户端保留下来
+        assertEquals(1, limiter.count(999));
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        SlidingWindowRateLimiter<String> limiter = new SlidingWindowRateLimiter<>(60000, 60, 16, 1000);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<8; t++){
+            Thread thread = new Thread(() -> {
+                for(int i=0; i<10000; i++){
+                    limiter.acquire("client-" + (i % 10));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        List<SlidingWindowRateLimiter.Entry<String>> snapshot = limiter.snapshot();
+        assertEquals(10, snapshot.size());
+        snapshot.forEach(entry -> assertEquals(8000, entry.getCount()));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * APDPlat - Application Product Development Platform
+ * Copyright (c) 2013, 杨尚川, yang-shangchuan@qq.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.apdplat.superword.tools;
+
+import org.apdplat.superword.tools.WriteBehindQueue.OverflowPolicy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用内存中的假连接测试延迟批量写入队列
+ * @author 杨尚川
+ */
+public class WriteBehindQueueTest {
+    //已经提交的记录
+    private final List<Integer> rows = new CopyOnWriteArrayList<>();
+    //放行executeBatch
+    private final CountDownLatch gate = new CountDownLatch(1);
+    //后台线程每进入一次executeBatch释放一个许可
+    private final Semaphore entered = new Semaphore(0);
+    private final List<WriteBehindQueue<Integer>> queues = new ArrayList<>();
+
+    @After
+    public void tearDown(){
+        gate.countDown();
+        queues.forEach(queue -> queue.close(5000));
+    }
+
+    private WriteBehindQueue<Integer> queue(int capacity, int batchSize, OverflowPolicy policy){
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", "insert into test (value) values (?)",
+                (pst, value) -> {
+                    if(value < 0){
+                        throw new IllegalArgumentException("bad value: " + value);
+                    }
+                    pst.setInt(1, value);
+                },
+                capacity, batchSize, 10, policy, 50, this::connection);
+        queues.add(queue);
+        return queue;
+    }
+
+    private Connection connection(){
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()){
+                        case "getAutoCommit": return true;
+                        case "prepareStatement": return statement();
+                        default: return null;
+                    }
+                });
+    }
+
+    private PreparedStatement statement(){
+        List<Integer> batch = new ArrayList<>();
+        Integer[] current = new Integer[1];
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()){
+                        case "setInt":
+                            current[0] = (Integer) args[1];
+                            return null;
+                        case "addBatch":
+                            batch.add(current[0]);
+                            return null;
+                        case "executeBatch":
+                            entered.release();
+                            assertTrue(gate.await(10, TimeUnit.SECONDS));
+                            rows.addAll(batch);
+                            return new int[batch.size()];
+                        default: return null;
+                    }
+                });
+    }
+
+    private static void assertAccounted(WriteBehindQueue<?> queue){
+        assertEquals(queue.getOffered(), queue.getWritten() + queue.getFailed() + queue.getDropped());
+    }
+
+    @Test
+    public void testDrainOnShutdown() {
+        gate.countDown();
+        WriteBehindQueue<Integer> queue = queue(100, 10, OverflowPolicy.BLOCK);
+        for(int i=0; i<35; i++){
+            assertTrue(queue.offer(i));
+        }
+        queue.close(5000);
+        List<Integer> expected = new ArrayList<>();
+        for(int i=0; i<35; i++){
+            expected.add(i);
+        }
+        assertEquals(expected, rows);
+        assertEquals(35, queue.getWritten());
+        assertEquals(0, queue.getDepth());
+        assertAccounted(queue);
+        //关闭后拒绝新记录
+        assertFalse(queue.offer(35));
+        assertEquals(1, queue.getDropped());
+        assertAccounted(queue);
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        WriteBehindQueue<Integer> queue = queue(4, 1, OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer(0));
+        //后台线程已经取出0，阻塞在写入上
+        assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+        for(int i=1; i<=4; i++){
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(5));
+        assertFalse(queue.offer(6));
+        gate.countDown();
+        queue.close(5000);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), rows);
+        assertEquals(2, queue.getDropped());
+        assertAccounted(queue);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        WriteBehindQueue<Integer> queue = queue(4, 1, OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(0));
+        assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+        for(int i=1; i<=6; i++){
+            assertTrue(queue.offer(i));
+        }
+        gate.countDown();
+        queue.close(5000);
+        //1和2被挤出队列
+        assertEquals(Arrays.asList(0, 3, 4, 5, 6), rows);
+        assertEquals(2, queue.getDropped());
+        assertAccounted(queue);
+    }
+
+    @Test
+    public void testBlockThenDrop() throws Exception {
+        WriteBehindQueue<Integer> queue = queue(2, 1, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(0));
+        assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        //等待offerTimeout后仍然没有空位
+        assertFalse(queue.offer(3));
+        gate.countDown();
+        queue.close(5000);
+        assertEquals(Arrays.asList(0, 1, 2), rows);
+        assertEquals(1, queue.getDropped());
+        assertAccounted(queue);
+    }
+
+    @Test
+    public void testFailedBatch() {
+        gate.countDown();
+        WriteBehindQueue<Integer> queue = queue(100, 1, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(-1));
+        assertTrue(queue.offer(2));
+        queue.close(5000);
+        assertEquals(Arrays.asList(1, 2), rows);
+        assertEquals(2, queue.getWritten());
+        assertEquals(1, queue.getFailed());
+        assertAccounted(queue);
+        //在调用者线程中直接写入
+        assertFalse(queue.write(-2));
+        assertTrue(queue.write(3));
+        assertEquals(Arrays.asList(1, 2, 3), rows);
+    }
+}